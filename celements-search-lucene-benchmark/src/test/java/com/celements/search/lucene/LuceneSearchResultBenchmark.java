@@ -0,0 +1,85 @@
+package com.celements.search.lucene;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.model.reference.EntityReference;
+
+import com.celements.search.lucene.query.LuceneQuery;
+import com.celements.search.lucene.query.QueryRestriction;
+import com.xpn.xwiki.plugin.lucene.SearchIndexState;
+
+/**
+ * Measures paging through a {@link LuceneSearchResult}, the way listings and script services
+ * consume search results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LuceneSearchResultBenchmark {
+
+  @Param({ "0", "500" })
+  public int offset;
+
+  @Param({ "20" })
+  public int limit;
+
+  @Param({ "true", "false" })
+  public boolean skipChecks;
+
+  private String queryString;
+
+  private LuceneSearchResult newResult(SearchIndexState state) {
+    if (queryString == null) {
+      LuceneQuery query = new LuceneQuery();
+      query.add(new QueryRestriction("ft", "lorem"));
+      queryString = query.getQueryString();
+    }
+    LuceneSearchResult result = new LuceneSearchResult(queryString, List.of("title_s"),
+        List.of("default"), skipChecks);
+    result.lucenePlugin = state.getPlugin();
+    return result;
+  }
+
+  @Benchmark
+  public List<EntityReference> page(SearchIndexState state) throws Exception {
+    try {
+      return newResult(state).getResults(offset, limit);
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+  @Benchmark
+  public int size(SearchIndexState state) throws Exception {
+    try {
+      return newResult(state).getSize();
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+  @Benchmark
+  public int pageAndSize(SearchIndexState state) throws Exception {
+    try {
+      LuceneSearchResult result = newResult(state);
+      return result.getResults(offset, limit).size() + result.getSize();
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+}
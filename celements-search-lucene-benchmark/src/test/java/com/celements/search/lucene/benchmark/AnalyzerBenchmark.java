@@ -0,0 +1,65 @@
+package com.celements.search.lucene.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+import com.xpn.xwiki.plugin.lucene.IndexFields;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+
+/**
+ * Measures the token stream throughput of {@link CelementsSimpleAnalyzer} on fulltext sized
+ * input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+  @Param({ "50", "1000", "10000" })
+  public int wordCount;
+
+  private Analyzer analyzer;
+
+  private String text;
+
+  @Setup
+  public void setUp() {
+    analyzer = new CelementsSimpleAnalyzer(LucenePlugin.VERSION);
+    text = new SyntheticWiki().createText(wordCount);
+  }
+
+  @Benchmark
+  public void tokenStream(Blackhole bh) throws IOException {
+    TokenStream stream = analyzer.reusableTokenStream(IndexFields.FULLTEXT,
+        new StringReader(text));
+    CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+    stream.reset();
+    while (stream.incrementToken()) {
+      bh.consume(term.length());
+    }
+    stream.end();
+    stream.close();
+  }
+
+}
@@ -0,0 +1,102 @@
+package com.celements.search.lucene.benchmark;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.model.access.IModelAccessFacade;
+import com.celements.rights.access.EAccessLevel;
+import com.celements.rights.access.IRightsAccessFacadeRole;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.web.XWikiServletContext;
+
+/**
+ * Boots the same component environment the unit tests run in, outside of JUnit. The JUnit
+ * lifecycle methods of {@link AbstractComponentTest} are invoked reflectively so benchmarks
+ * don't depend on their names.
+ */
+public class BenchmarkEnvironment extends AbstractComponentTest {
+
+  public void setUp() throws Exception {
+    invokeLifecycle(Before.class);
+  }
+
+  public void tearDown() throws Exception {
+    invokeLifecycle(After.class);
+  }
+
+  private void invokeLifecycle(Class<? extends Annotation> annotation) throws Exception {
+    for (FrameworkMethod method : new TestClass(getClass()).getAnnotatedMethods(annotation)) {
+      try {
+        method.invokeExplosively(this);
+      } catch (Exception | Error exc) {
+        throw exc;
+      } catch (Throwable thr) {
+        throw new IllegalStateException(thr);
+      }
+    }
+  }
+
+  /**
+   * Registers the synthetic documents and their classes on the mocked store, needs to be called
+   * before {@link #replay()}.
+   */
+  public void registerDocuments(Map<DocumentReference, XWikiDocument> docs,
+      Map<DocumentReference, BaseClass> classes) throws Exception {
+    IModelAccessFacade modelAccessMock = registerComponentMock(IModelAccessFacade.class);
+    for (XWikiDocument doc : docs.values()) {
+      expect(modelAccessMock.getDocument(eq(doc.getDocumentReference()), anyObject(String.class)))
+          .andReturn(doc).anyTimes();
+    }
+    expect(getWikiMock().getXClass(anyObject(DocumentReference.class), anyObject(
+        XWikiContext.class))).andAnswer(() -> classes.get(getCurrentArguments()[0])).anyTimes();
+    ServletContext servletContextMock = createDefaultMock(ServletContext.class);
+    getContext().setEngineContext(new XWikiServletContext(servletContextMock));
+    expect(servletContextMock.getAttribute(eq("javax.servlet.context.tempdir")))
+        .andReturn(new File(System.getProperty("java.io.tmpdir"))).anyTimes();
+    expect(servletContextMock.getMimeType(anyObject(String.class)))
+        .andReturn("text/plain").anyTimes();
+  }
+
+  /**
+   * Stubs the configuration with its defaults and lets every document exist and be viewable,
+   * needs to be called before {@link #replay()}.
+   */
+  public void registerSearchStubs() throws Exception {
+    expect(getWikiMock().Param(eq(LucenePlugin.PROP_ANALYZER), anyObject(String.class)))
+        .andReturn(CelementsSimpleAnalyzer.class.getName()).anyTimes();
+    expect(getWikiMock().Param(anyObject(String.class), anyObject(String.class)))
+        .andAnswer(() -> (String) getCurrentArguments()[1]).anyTimes();
+    expect(getWikiMock().exists(anyObject(DocumentReference.class), anyObject(
+        XWikiContext.class))).andReturn(true).anyTimes();
+    IRightsAccessFacadeRole rightsAccessMock = registerComponentMock(
+        IRightsAccessFacadeRole.class);
+    expect(rightsAccessMock.hasAccessLevel(anyObject(DocumentReference.class),
+        eq(EAccessLevel.VIEW))).andReturn(true).anyTimes();
+  }
+
+  public XWikiContext getXWikiContext() {
+    return getContext();
+  }
+
+  public void replay() {
+    replayDefault();
+  }
+
+}
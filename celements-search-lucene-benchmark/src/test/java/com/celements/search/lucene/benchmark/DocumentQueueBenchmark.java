@@ -0,0 +1,77 @@
+package com.celements.search.lucene.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections.BufferUnderflowException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xpn.xwiki.plugin.lucene.AbstractIndexData;
+import com.xpn.xwiki.plugin.lucene.DeleteData;
+import com.xpn.xwiki.plugin.lucene.XWikiDocumentQueue;
+
+/**
+ * Measures {@link XWikiDocumentQueue} under contention: several producer threads (document
+ * saves) add while one consumer (the IndexUpdater) removes.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentQueueBenchmark {
+
+  /**
+   * number of distinct ids, a small key space provokes the replace-in-queue path
+   */
+  @Param({ "100", "100000" })
+  public int keySpace;
+
+  private final AtomicLong counter = new AtomicLong();
+
+  private XWikiDocumentQueue queue;
+
+  private AbstractIndexData[] data;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    queue = new XWikiDocumentQueue();
+    data = new AbstractIndexData[keySpace];
+    for (int i = 0; i < keySpace; i++) {
+      data[i] = new DeleteData("benchwiki:Space.Doc" + i + ".default");
+    }
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(3)
+  public void add() {
+    queue.add(data[(int) (counter.getAndIncrement() % keySpace)]);
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(1)
+  public AbstractIndexData remove() {
+    try {
+      return queue.isEmpty() ? null : queue.remove();
+    } catch (BufferUnderflowException exc) {
+      return null;
+    }
+  }
+
+}
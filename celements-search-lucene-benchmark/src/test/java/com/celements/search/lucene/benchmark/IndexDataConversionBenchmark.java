@@ -0,0 +1,92 @@
+package com.celements.search.lucene.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.lucene.AttachmentData;
+import com.xpn.xwiki.plugin.lucene.DocumentData;
+
+/**
+ * Measures the conversion of {@link DocumentData} and {@link AttachmentData} into lucene
+ * {@link Document}s, i.e. the work the IndexUpdater does per queue entry before writing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexDataConversionBenchmark {
+
+  @Param({ "0", "5", "25" })
+  public int objectCount;
+
+  @Param({ "0", "3" })
+  public int attachmentCount;
+
+  private final BenchmarkEnvironment env = new BenchmarkEnvironment();
+
+  private DocumentData documentData;
+
+  private List<AttachmentData> attachmentData;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    env.setUp();
+    SyntheticWiki wiki = new SyntheticWiki();
+    XWikiDocument doc = wiki.createDocument(0, objectCount, attachmentCount);
+    Map<DocumentReference, XWikiDocument> docs = ImmutableMap.of(doc.getDocumentReference(),
+        doc);
+    env.registerDocuments(docs, wiki.getClasses());
+    env.replay();
+    documentData = new DocumentData(doc, false);
+    attachmentData = new ArrayList<>();
+    for (XWikiAttachment att : doc.getAttachmentList()) {
+      attachmentData.add(new AttachmentData(att, false));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    env.tearDown();
+  }
+
+  @Benchmark
+  public Document documentData() throws Exception {
+    Document luceneDoc = new Document();
+    documentData.addDataToLuceneDocument(luceneDoc);
+    return luceneDoc;
+  }
+
+  @Benchmark
+  public void attachmentData(Blackhole bh) throws Exception {
+    for (AttachmentData data : attachmentData) {
+      Document luceneDoc = new Document();
+      data.addDataToLuceneDocument(luceneDoc);
+      bh.consume(luceneDoc);
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package com.celements.search.lucene.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+import com.xpn.xwiki.plugin.lucene.IndexFields;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+
+/**
+ * Measures {@link IndexWriter#updateDocument(Term, Document)} followed by a commit, the cycle
+ * the IndexUpdater runs for every queue batch, on a {@link RAMDirectory} and a temporary
+ * {@link FSDirectory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexWriterBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  @Param({ "ram", "fs" })
+  public String directoryType;
+
+  /**
+   * number of distinct documents, updates beyond that replace existing documents
+   */
+  @Param({ "10000" })
+  public int docCount;
+
+  private File tempDir;
+
+  private Directory directory;
+
+  private IndexWriter writer;
+
+  private Document[] docs;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    SyntheticWiki wiki = new SyntheticWiki();
+    docs = new Document[docCount];
+    for (int i = 0; i < docCount; i++) {
+      docs[i] = wiki.createLuceneDocument(i);
+    }
+    if ("fs".equals(directoryType)) {
+      tempDir = Files.createTempDirectory("lucene-bench").toFile();
+      directory = FSDirectory.open(tempDir);
+    } else {
+      directory = new RAMDirectory();
+    }
+    writer = new IndexWriter(directory, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    writer.close();
+    directory.close();
+    if (tempDir != null) {
+      FileUtils.deleteDirectory(tempDir);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void updateAndCommit() throws IOException {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      Document doc = docs[next];
+      writer.updateDocument(new Term(IndexFields.DOCUMENT_ID, doc.get(IndexFields.DOCUMENT_ID)),
+          doc);
+      next = (next + 1) % docCount;
+    }
+    writer.commit();
+  }
+
+}
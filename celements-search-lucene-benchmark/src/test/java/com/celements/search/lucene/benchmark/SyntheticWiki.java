@@ -0,0 +1,177 @@
+package com.celements.search.lucene.benchmark;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.syntax.Syntax;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.plugin.lucene.IndexFields;
+
+/**
+ * Generates reproducible wiki documents for the benchmarks. All content is derived from the
+ * given seed, so two runs with the same parameters index exactly the same data.
+ */
+public class SyntheticWiki {
+
+  public static final long DEFAULT_SEED = 20140913L;
+
+  public static final String WIKI = "benchwiki";
+
+  public static final int CLASS_COUNT = 5;
+
+  private static final String[] WORDS = { "lorem", "ipsum", "dolor", "sit", "amet",
+      "consectetur", "adipisicing", "elit", "sed", "eiusmod", "tempor", "incididunt", "labore",
+      "dolore", "magna", "aliqua", "veniam", "quis", "nostrud", "exercitation", "ullamco",
+      "laboris", "nisi", "aliquip", "commodo", "consequat", "bücher", "Zürich", "straße",
+      "über", "café", "naïve", "der", "die", "das", "und", "the", "and", "with" };
+
+  private static final int PROPERTY_COUNT = 8;
+
+  private final Random random;
+
+  private final Map<DocumentReference, BaseClass> classes = new LinkedHashMap<>();
+
+  public SyntheticWiki() {
+    this(DEFAULT_SEED);
+  }
+
+  public SyntheticWiki(long seed) {
+    this.random = new Random(seed);
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      BaseClass bClass = new BaseClass();
+      bClass.setDocumentReference(new DocumentReference(WIKI, "BenchClasses", "Class" + i));
+      for (int p = 0; p < PROPERTY_COUNT; p++) {
+        bClass.addTextField("text" + p, "text" + p, 30);
+      }
+      bClass.addDateField("date", "date");
+      classes.put(bClass.getDocumentReference(), bClass);
+    }
+  }
+
+  public Map<DocumentReference, BaseClass> getClasses() {
+    return classes;
+  }
+
+  public DocumentReference getDocRef(int index) {
+    return new DocumentReference(WIKI, "Space" + (index % 100), "Doc" + index);
+  }
+
+  public XWikiDocument createDocument(int index, int objectCount, int attachmentCount)
+      throws IOException {
+    XWikiDocument doc = new SyntheticXWikiDocument(getDocRef(index));
+    doc.setSyntax(Syntax.XWIKI_1_0);
+    doc.setTitle(createText(4));
+    doc.setContent("<p>" + createText(300) + "</p><p>" + createText(200) + "</p>");
+    doc.setAuthor("XWiki.Author" + random.nextInt(20));
+    doc.setCreator("XWiki.Creator" + random.nextInt(20));
+    doc.setDate(new Date(1_500_000_000_000L + random.nextInt(Integer.MAX_VALUE)));
+    doc.setCreationDate(new Date(1_400_000_000_000L + random.nextInt(Integer.MAX_VALUE)));
+    for (int i = 0; i < objectCount; i++) {
+      doc.addXObject(createObject(doc.getDocumentReference(), i));
+    }
+    for (int i = 0; i < attachmentCount; i++) {
+      XWikiAttachment att = new XWikiAttachment(doc, "file" + i + ".txt");
+      att.setContent(new ByteArrayInputStream(createText(500).getBytes(UTF_8)));
+      att.setAuthor(doc.getAuthor());
+      att.setDate(doc.getDate());
+      doc.getAttachmentList().add(att);
+    }
+    return doc;
+  }
+
+  private BaseObject createObject(DocumentReference docRef, int index) {
+    BaseObject obj = new BaseObject();
+    obj.setDocumentReference(docRef);
+    obj.setXClassReference(new DocumentReference(WIKI, "BenchClasses", "Class"
+        + (index % CLASS_COUNT)));
+    obj.setNumber(index / CLASS_COUNT);
+    for (int p = 0; p < PROPERTY_COUNT; p++) {
+      obj.setStringValue("text" + p, createText(1 + random.nextInt(10)));
+    }
+    obj.setDateValue("date", new Date(1_500_000_000_000L + random.nextInt(Integer.MAX_VALUE)));
+    return obj;
+  }
+
+  /**
+   * Creates a lucene document with the same field layout {@code DocumentData} produces, but
+   * without needing any component, used for benchmarking the writer in isolation.
+   */
+  public Document createLuceneDocument(int index) {
+    DocumentReference docRef = getDocRef(index);
+    String fullName = docRef.getLastSpaceReference().getName() + "." + docRef.getName();
+    String title = createText(4);
+    Document luceneDoc = new Document();
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_ID, WIKI + ":" + fullName + ".default");
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_LANGUAGE, "default");
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_WIKI, WIKI);
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_TYPE, "wikipage");
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_AUTHOR, "XWiki.Author" + random.nextInt(20));
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_DATE, IndexFields.dateToString(new Date(
+        1_500_000_000_000L + random.nextInt(Integer.MAX_VALUE))));
+    addText(luceneDoc, IndexFields.DOCUMENT_TITLE, title);
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_TITLE_SORT, title);
+    addText(luceneDoc, IndexFields.DOCUMENT_NAME, docRef.getName());
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_NAME_S, docRef.getName());
+    addText(luceneDoc, IndexFields.DOCUMENT_SPACE, docRef.getLastSpaceReference().getName());
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_SPACE_S, docRef.getLastSpaceReference().getName());
+    addKeyword(luceneDoc, IndexFields.DOCUMENT_FULLNAME, fullName);
+    addKeyword(luceneDoc, IndexFields.OBJECT, "benchclasses.class" + (index % CLASS_COUNT));
+    luceneDoc.add(new Field(IndexFields.FULLTEXT, createText(500), Field.Store.NO,
+        Field.Index.ANALYZED));
+    return luceneDoc;
+  }
+
+  private void addKeyword(Document luceneDoc, String name, String value) {
+    luceneDoc.add(new Field(name, value, Field.Store.YES, Field.Index.NOT_ANALYZED));
+  }
+
+  private void addText(Document luceneDoc, String name, String value) {
+    luceneDoc.add(new Field(name, value, Field.Store.YES, Field.Index.ANALYZED));
+  }
+
+  public String createText(int wordCount) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < wordCount; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * avoids the rendering engine, the rendered title is the raw title
+   */
+  private static class SyntheticXWikiDocument extends XWikiDocument {
+
+    SyntheticXWikiDocument(DocumentReference docRef) {
+      super(docRef);
+    }
+
+    @Override
+    public XWikiDocument getTranslatedDocument(String language, XWikiContext context) {
+      return this;
+    }
+
+    @Override
+    public String getRenderedTitle(Syntax outputSyntax, XWikiContext context) {
+      return getTitle();
+    }
+  }
+
+}
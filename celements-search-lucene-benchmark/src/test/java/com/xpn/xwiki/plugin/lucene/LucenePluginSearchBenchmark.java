@@ -0,0 +1,87 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.celements.search.lucene.benchmark.SyntheticWiki;
+
+/**
+ * Measures the search path of {@link LucenePlugin}: query parsing, the collector run with and
+ * without sort and the materialisation of {@link SearchResult}s in {@link SearchResults}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LucenePluginSearchBenchmark {
+
+  private static final String WIKI = SyntheticWiki.WIKI;
+
+  private static final String LANG = "default";
+
+  private static final String[] SORT = { "title_s", "-date" };
+
+  @Param({ "lorem", "(+lorem* +ipsum*) AND type:(+\"wikipage\")",
+      "ft:(+dolor +magna) OR title:(amet~0.7)" })
+  public String query;
+
+  @Benchmark
+  public Query buildQuery(SearchIndexState state) throws Exception {
+    return state.getPlugin().buildQuery(query, WIKI, LANG);
+  }
+
+  @Benchmark
+  public int search(SearchIndexState state) throws Exception {
+    try {
+      return state.getPlugin().getSearchResultsWithoutChecks(query, null, WIKI, LANG,
+          state.getContext()).getTotalHitcount();
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+  @Benchmark
+  public int searchSorted(SearchIndexState state) throws Exception {
+    try {
+      return state.getPlugin().getSearchResultsWithoutChecks(query, SORT, WIKI, LANG,
+          state.getContext()).getTotalHitcount();
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+  @Benchmark
+  public int materialiseWithoutChecks(SearchIndexState state) throws Exception {
+    try {
+      return state.getPlugin().getSearchResultsWithoutChecks(query, SORT, WIKI, LANG,
+          state.getContext()).getResults(1, state.getPlugin().getResultLimit(false,
+              state.getContext())).size();
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+  @Benchmark
+  public int materialiseWithChecks(SearchIndexState state) throws Exception {
+    try {
+      return state.getPlugin().getSearchResults(query, SORT, WIKI, LANG,
+          state.getContext()).getResults().size();
+    } finally {
+      state.releaseThread();
+    }
+  }
+
+}
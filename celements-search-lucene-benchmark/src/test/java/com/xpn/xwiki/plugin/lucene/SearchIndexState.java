@@ -0,0 +1,104 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.celements.search.lucene.benchmark.BenchmarkEnvironment;
+import com.celements.search.lucene.benchmark.SyntheticWiki;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.ISearcherProviderRole;
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Provides a {@link LucenePlugin} searching a locally generated index of {@link #docCount}
+ * synthetic documents. Rights and existence checks are stubbed to always pass, so only the
+ * engine cost is measured. Generated indexes are kept in {@code target/bench-index-<docCount>}
+ * and reused by subsequent runs, since building the larger ones takes a while.
+ */
+@State(Scope.Benchmark)
+public class SearchIndexState {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexState.class);
+
+  @Param({ "10000", "100000" })
+  public int docCount;
+
+  private final BenchmarkEnvironment env = new BenchmarkEnvironment();
+
+  private Directory directory;
+
+  private LucenePlugin plugin;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    directory = FSDirectory.open(new File("target", "bench-index-" + docCount));
+    ensureIndex();
+    env.setUp();
+    env.registerSearchStubs();
+    env.replay();
+    plugin = new LucenePlugin("lucene", LucenePlugin.class.getName(), getContext());
+    plugin.indexDirs = List.of(directory);
+  }
+
+  private void ensureIndex() throws IOException {
+    if (IndexReader.indexExists(directory)) {
+      try (IndexReader reader = IndexReader.open(directory, true)) {
+        if (reader.numDocs() == docCount) {
+          LOGGER.info("reusing index with {} docs", docCount);
+          return;
+        }
+      }
+    }
+    LOGGER.info("generating index with {} docs", docCount);
+    IndexWriterConfig cfg = new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)).setOpenMode(OpenMode.CREATE);
+    SyntheticWiki wiki = new SyntheticWiki();
+    try (IndexWriter writer = new IndexWriter(directory, cfg)) {
+      for (int i = 0; i < docCount; i++) {
+        writer.addDocument(wiki.createLuceneDocument(i));
+      }
+      writer.optimize();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    plugin.shutdown();
+    env.tearDown();
+    directory.close();
+  }
+
+  /**
+   * releases the searcher provider connections of the current thread, as done after each
+   * request by the SearcherProviderManager listener
+   */
+  public void releaseThread() {
+    Utils.getComponent(ISearcherProviderRole.class).closeAllForCurrentThread();
+  }
+
+  public LucenePlugin getPlugin() {
+    return plugin;
+  }
+
+  public XWikiContext getContext() {
+    return env.getXWikiContext();
+  }
+
+}
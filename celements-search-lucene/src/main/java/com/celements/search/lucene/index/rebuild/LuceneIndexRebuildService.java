@@ -34,6 +34,15 @@ public interface LuceneIndexRebuildService {
   @NotNull
   IndexRebuildFuture startIndexRebuild(@NotNull EntityReference filterRef);
 
+  /**
+   * @param changedSince
+   *          if set, only documents changed since then are reindexed, inexistent ones are
+   *          removed from the index nonetheless. Null for a full rebuild.
+   */
+  @NotNull
+  IndexRebuildFuture startIndexRebuild(@NotNull EntityReference filterRef,
+      @Nullable Instant changedSince);
+
   void pause(@Nullable Duration duration);
 
   Optional<Instant> isPaused();
@@ -43,9 +52,15 @@ public interface LuceneIndexRebuildService {
   public class IndexRebuildFuture extends CompletableFuture<Long> {
 
     private final EntityReference ref;
+    private final Instant changedSince;
 
     public IndexRebuildFuture(EntityReference ref) {
+      this(ref, null);
+    }
+
+    public IndexRebuildFuture(EntityReference ref, @Nullable Instant changedSince) {
       this.ref = checkNotNull(ref);
+      this.changedSince = changedSince;
     }
 
     @NotNull
@@ -53,10 +68,27 @@ public interface LuceneIndexRebuildService {
       return References.cloneRef(ref);
     }
 
+    /**
+     * @return empty for a full rebuild
+     */
+    @NotNull
+    public Optional<Instant> getChangedSince() {
+      return Optional.ofNullable(changedSince);
+    }
+
+    /**
+     * @return true if this rebuild reindexes at least everything the requested one would
+     */
+    public boolean covers(@NotNull EntityReference filterRef, @Nullable Instant changedSince) {
+      return ref.equals(filterRef) && ((this.changedSince == null)
+          || ((changedSince != null) && !this.changedSince.isAfter(changedSince)));
+    }
+
     @Override
     public String toString() {
       String str = super.toString();
-      return str.substring(str.indexOf('$') + 1) + ", ref = [" + ref + "]";
+      return str.substring(str.indexOf('$') + 1) + ", ref = [" + ref + "]"
+          + ((changedSince != null) ? ", changedSince = [" + changedSince + "]" : "");
     }
   }
 
@@ -112,15 +112,17 @@ public abstract class AbstractDocumentData extends AbstractIndexData {
   }
 
   @Override
-  public void addDataToLuceneDocument(Document luceneDoc) throws DocumentNotExistsException {
+  public void addDataToLuceneDocument(Document luceneDoc, IndexSchema schema)
+      throws DocumentNotExistsException {
     XWikiDocument doc = getModelAccess().getDocument(getDocumentReference(), getLanguage());
-    addDocumentData(luceneDoc, doc);
-    addAdditionalData(luceneDoc, doc);
+    addDocumentData(luceneDoc, doc, schema);
+    addAdditionalData(luceneDoc, doc, schema);
   }
 
-  protected abstract void addAdditionalData(Document luceneDoc, XWikiDocument doc);
+  protected abstract void addAdditionalData(Document luceneDoc, XWikiDocument doc,
+      IndexSchema schema);
 
-  private void addDocumentData(Document luceneDoc, XWikiDocument doc) {
+  private void addDocumentData(Document luceneDoc, XWikiDocument doc, IndexSchema schema) {
     LOGGER.trace("addDocumentDataToLuceneDocument: id [{}], lang [{}], wiki [{}], author [{}], "
         + "creator [{}], type [{}], date [{}], creationDate [{}], title [{}], name [{}], "
         + "space [{}], fullname [{}], hidden [{}].", getId(), getLanguage(), getWiki(), author,
@@ -154,34 +156,41 @@ public abstract class AbstractDocumentData extends AbstractIndexData {
     if (this.modificationDate != null) {
       addFieldToDocument(IndexFields.DOCUMENT_DATE, IndexFields.dateToString(this.modificationDate),
           Field.Store.YES, Field.Index.NOT_ANALYZED, DATE_BOOST, luceneDoc);
+      luceneDoc.add(IndexFields.createNumericField(IndexFields.DOCUMENT_DATE,
+          IndexFields.dateToLong(this.modificationDate)));
     }
     if (this.creationDate != null) {
       addFieldToDocument(IndexFields.DOCUMENT_CREATIONDATE, IndexFields.dateToString(
           this.creationDate), Field.Store.YES, Field.Index.NOT_ANALYZED, CREATION_DATE_BOOST,
           luceneDoc);
+      luceneDoc.add(IndexFields.createNumericField(IndexFields.DOCUMENT_CREATIONDATE,
+          IndexFields.dateToLong(this.creationDate)));
     }
 
     // Short text fields: tokenized and indexed, stored in the index
     if (StringUtils.isNotBlank(this.documentTitle)) {
       addFieldToDocument(IndexFields.DOCUMENT_TITLE, this.documentTitle, Field.Store.YES,
           Field.Index.ANALYZED, TITLE_BOOST, luceneDoc);
-      addFieldToDocument(IndexFields.DOCUMENT_TITLE_SORT, this.documentTitle, Field.Store.YES,
-          Field.Index.NOT_ANALYZED, 0.1f, luceneDoc);
+      addFieldToDocument(IndexFields.DOCUMENT_TITLE_SORT, this.documentTitle,
+          schema.store(IndexFields.DOCUMENT_TITLE_SORT), Field.Index.NOT_ANALYZED, 0.1f,
+          luceneDoc);
     }
     addFieldToDocument(IndexFields.DOCUMENT_NAME, getDocumentName(), Field.Store.YES,
         Field.Index.ANALYZED, NAME_BOOST, luceneDoc);
-    addFieldToDocument(IndexFields.DOCUMENT_NAME_S, getDocumentName(), Field.Store.YES,
-        Field.Index.NOT_ANALYZED, NAME_BOOST, luceneDoc);
+    addFieldToDocument(IndexFields.DOCUMENT_NAME_S, getDocumentName(),
+        schema.store(IndexFields.DOCUMENT_NAME_S), Field.Index.NOT_ANALYZED, NAME_BOOST,
+        luceneDoc);
 
     addFieldToDocument(IndexFields.DOCUMENT_SPACE, getDocumentSpace(), Field.Store.YES,
         Field.Index.ANALYZED, SPACE_BOOST, luceneDoc);
-    addFieldToDocument(IndexFields.DOCUMENT_SPACE_S, getDocumentSpace(), Field.Store.YES,
-        Field.Index.NOT_ANALYZED, SPACE_BOOST, luceneDoc);
+    addFieldToDocument(IndexFields.DOCUMENT_SPACE_S, getDocumentSpace(),
+        schema.store(IndexFields.DOCUMENT_SPACE_S), Field.Index.NOT_ANALYZED, SPACE_BOOST,
+        luceneDoc);
 
     // Old alias for the Space, reduce the importance so that a space hit
     // doesn't score double
-    addFieldToDocument(IndexFields.DOCUMENT_WEB, getDocumentSpace(), Field.Store.YES,
-        Field.Index.NOT_ANALYZED, 0.1f, luceneDoc);
+    addFieldToDocument(IndexFields.DOCUMENT_WEB, getDocumentSpace(),
+        schema.store(IndexFields.DOCUMENT_WEB), Field.Index.NOT_ANALYZED, 0.1f, luceneDoc);
 
     addFieldToDocument(IndexFields.DOCUMENT_FULLNAME, getDocumentFullName(), Field.Store.YES,
         Field.Index.NOT_ANALYZED, FULL_NAME_BOOST, luceneDoc);
@@ -88,6 +88,16 @@ public abstract class AbstractIndexData {
    *          indexed. If null, the content in the default language will be used.
    */
   public void addDataToLuceneDocument(Document luceneDoc)
+      throws DocumentNotExistsException {
+    addDataToLuceneDocument(luceneDoc, IndexSchema.DEFAULT);
+  }
+
+  /**
+   * @param schema
+   *          decides which of the added fields are stored in the index
+   * @see #addDataToLuceneDocument(Document)
+   */
+  public void addDataToLuceneDocument(Document luceneDoc, IndexSchema schema)
       throws DocumentNotExistsException {}
 
   /**
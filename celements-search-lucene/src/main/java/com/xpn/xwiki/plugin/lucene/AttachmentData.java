@@ -105,7 +105,7 @@ public class AttachmentData extends AbstractDocumentData {
   }
 
   @Override
-  protected void addAdditionalData(Document luceneDoc, XWikiDocument doc) {
+  protected void addAdditionalData(Document luceneDoc, XWikiDocument doc, IndexSchema schema) {
     // Lower the importance of the fields inherited from the document
     List<Fieldable> existingFields = luceneDoc.getFields();
     for (Fieldable f : existingFields) {
@@ -116,8 +116,8 @@ public class AttachmentData extends AbstractDocumentData {
     if (this.filename != null) {
       addFieldToDocument(IndexFields.FILENAME, this.filename, Field.Store.YES, Field.Index.ANALYZED,
           FILENAME_BOOST, luceneDoc);
-      addFieldToDocument(IndexFields.MIMETYPE, this.mimetype, Field.Store.YES, Field.Index.ANALYZED,
-          MIMETYPE_BOOST, luceneDoc);
+      addFieldToDocument(IndexFields.MIMETYPE, this.mimetype, schema.store(IndexFields.MIMETYPE),
+          Field.Index.ANALYZED, MIMETYPE_BOOST, luceneDoc);
     }
     // Decrease the global score of attachments
     luceneDoc.setBoost(ATTACHMENT_GLOBAL_BOOST);
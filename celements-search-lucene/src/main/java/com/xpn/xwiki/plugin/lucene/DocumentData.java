@@ -83,10 +83,10 @@ public class DocumentData extends AbstractDocumentData {
   }
 
   @Override
-  protected void addAdditionalData(Document luceneDoc, XWikiDocument doc) {
+  protected void addAdditionalData(Document luceneDoc, XWikiDocument doc, IndexSchema schema) {
     addFieldToDocument(IndexFields.DOCUMENT_PARENT, Optional.ofNullable(doc.getParentReference())
         .map(getModelUtils()::serializeRef).orElse(""),
-        Field.Store.YES, Field.Index.NOT_ANALYZED, 0.01f, luceneDoc);
+        schema.store(IndexFields.DOCUMENT_PARENT), Field.Index.NOT_ANALYZED, 0.01f, luceneDoc);
     for (List<BaseObject> objects : doc.getXObjects().values()) {
       for (BaseObject obj : objects) {
         if (obj != null) {
@@ -95,14 +95,15 @@ public class DocumentData extends AbstractDocumentData {
               CLASSNAME_BOOST, luceneDoc);
           Object[] propertyNames = obj.getPropertyNames();
           for (Object propertyName : propertyNames) {
-            indexProperty(luceneDoc, obj, (String) propertyName);
+            indexProperty(luceneDoc, obj, (String) propertyName, schema);
           }
         }
       }
     }
   }
 
-  private void indexProperty(Document luceneDoc, BaseObject baseObject, String propertyName) {
+  private void indexProperty(Document luceneDoc, BaseObject baseObject, String propertyName,
+      IndexSchema schema) {
     String fieldFullName = baseObject.getClassName() + "." + propertyName;
     BaseClass bClass = baseObject.getXClass(getContext().getXWikiContext());
     PropertyInterface prop = bClass.getField(propertyName);
@@ -110,18 +111,23 @@ public class DocumentData extends AbstractDocumentData {
     if (prop instanceof PasswordClass) {
       // Do not index passwords
     } else if ((prop instanceof StaticListClass) && ((StaticListClass) prop).isMultiSelect()) {
-      indexStaticList(luceneDoc, baseObject, (StaticListClass) prop, propertyName);
+      indexStaticList(luceneDoc, baseObject, (StaticListClass) prop, propertyName, schema);
     } else if (prop instanceof DateClass) {
       // Date properties are indexed the same as document dates: formatted
       // through IndexFields.dateToString() and
-      // untokenized, to be able to sort by their values.
-      luceneDoc.add(new Field(fieldFullName, getContentAsDate(baseObject, propertyName),
-          Field.Store.YES, Field.Index.NOT_ANALYZED));
+      // untokenized, to be able to sort by their values, plus the numeric
+      // twin for range queries.
+      String date = getContentAsDate(baseObject, propertyName);
+      luceneDoc.add(new Field(fieldFullName, date, schema.store(fieldFullName),
+          Field.Index.NOT_ANALYZED));
+      if (!date.isEmpty()) {
+        luceneDoc.add(IndexFields.createNumericField(fieldFullName, Long.parseLong(date)));
+      }
     } else {
       StringBuilder sb = new StringBuilder();
       getObjectContentAsText(sb, baseObject, propertyName);
-      addFieldToDocument(fieldFullName, sb.toString(), Field.Store.YES, Field.Index.ANALYZED,
-          OBJECT_PROPERTY_BOOST, luceneDoc);
+      addFieldToDocument(fieldFullName, sb.toString(), schema.store(fieldFullName),
+          Field.Index.ANALYZED, OBJECT_PROPERTY_BOOST, luceneDoc);
     }
   }
 
@@ -138,7 +144,7 @@ public class DocumentData extends AbstractDocumentData {
   }
 
   private void indexStaticList(Document luceneDoc, BaseObject baseObject, StaticListClass prop,
-      String propertyName) {
+      String propertyName, IndexSchema schema) {
     Map<String, ListItem> possibleValues = prop.getMap(getContext().getXWikiContext());
     String fieldFullName = baseObject.getClassName() + "." + propertyName;
 
@@ -147,24 +153,24 @@ public class DocumentData extends AbstractDocumentData {
       if (item != null) {
         // We index the key of the list
         String fieldName = fieldFullName + ".key";
-        addFieldToDocument(fieldName, item.getId(), Field.Store.YES, Field.Index.ANALYZED,
-            OBJECT_PROPERTY_BOOST, luceneDoc);
+        addFieldToDocument(fieldName, item.getId(), schema.store(fieldName),
+            Field.Index.ANALYZED, OBJECT_PROPERTY_BOOST, luceneDoc);
         // We index the value
         fieldName = fieldFullName + ".value";
-        addFieldToDocument(fieldName, item.getValue(), Field.Store.YES, Field.Index.ANALYZED,
-            OBJECT_PROPERTY_BOOST, luceneDoc);
+        addFieldToDocument(fieldName, item.getValue(), schema.store(fieldName),
+            Field.Index.ANALYZED, OBJECT_PROPERTY_BOOST, luceneDoc);
 
         // If the key and value are not the same, we index both
         // The key is always indexed outside the if block, so here we just index
         // the value
         if (!item.getId().equals(item.getValue())) {
-          addFieldToDocument(fieldFullName, item.getValue(), Field.Store.YES, Field.Index.ANALYZED,
-              OBJECT_PROPERTY_BOOST, luceneDoc);
+          addFieldToDocument(fieldFullName, item.getValue(), schema.store(fieldFullName),
+              Field.Index.ANALYZED, OBJECT_PROPERTY_BOOST, luceneDoc);
         }
       }
 
-      addFieldToDocument(fieldFullName, value, Field.Store.YES, Field.Index.ANALYZED,
-          OBJECT_PROPERTY_BOOST, luceneDoc);
+      addFieldToDocument(fieldFullName, value, schema.store(fieldFullName),
+          Field.Index.ANALYZED, OBJECT_PROPERTY_BOOST, luceneDoc);
     }
   }
 }
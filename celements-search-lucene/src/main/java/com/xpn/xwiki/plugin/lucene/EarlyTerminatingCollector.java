@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+
+/**
+ * Counts hits up to a maximum and terminates the search once it is reached, e.g. to check if
+ * anything matches at all. Lucene 3 offers collectors no way to stop a search, so it is aborted
+ * with an exception caught by {@link #search(IndexSearcher, Query, int)}.
+ */
+final class EarlyTerminatingCollector extends Collector {
+
+  private final int maxHits;
+  private int hits;
+
+  private EarlyTerminatingCollector(int maxHits) {
+    checkArgument(maxHits > 0, "maxHits must be positive");
+    this.maxHits = maxHits;
+  }
+
+  /**
+   * @return number of hits, at most <code>maxHits</code>
+   */
+  static int search(IndexSearcher searcher, Query query, int maxHits) throws IOException {
+    EarlyTerminatingCollector collector = new EarlyTerminatingCollector(maxHits);
+    try {
+      searcher.search(query, collector);
+    } catch (TerminatedException exc) {
+      // expected once maxHits are reached
+    }
+    return collector.hits;
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) {
+    // hits aren't scored
+  }
+
+  @Override
+  public void collect(int doc) {
+    if (++hits >= maxHits) {
+      throw new TerminatedException();
+    }
+  }
+
+  @Override
+  public void setNextReader(IndexReader reader, int docBase) {
+    // doc ids aren't needed
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return true;
+  }
+
+  private static final class TerminatedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    TerminatedException() {
+      // thrown as control flow only, a stack trace isn't needed
+      super(null, null, false, false);
+    }
+  }
+
+}
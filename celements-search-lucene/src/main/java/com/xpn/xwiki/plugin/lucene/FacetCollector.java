@@ -0,0 +1,121 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Counts the terms of the matching documents for a number of keyword fields in a single pass, e.g.
+ * hits per space, document type, object class or tag. Terms are read from the
+ * {@link UninvertedField}s of each segment, so nothing is loaded per hit.
+ */
+final class FacetCollector extends Collector {
+
+  private final List<String> fields;
+  private final Map<String, Map<String, Integer>> counts = new HashMap<>();
+  private UninvertedField[] segmentFields;
+  private int[][] segmentCounts;
+
+  FacetCollector(Collection<String> fields) {
+    this.fields = ImmutableSet.copyOf(fields).asList();
+    this.fields.forEach(field -> counts.put(field, new HashMap<>()));
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) {
+    // hits aren't scored
+  }
+
+  @Override
+  public void collect(int doc) {
+    for (int i = 0; i < segmentFields.length; i++) {
+      UninvertedField field = segmentFields[i];
+      int[] fieldCounts = segmentCounts[i];
+      for (int j = field.docStarts[doc]; j < field.docStarts[doc + 1]; j++) {
+        fieldCounts[field.ords[j]]++;
+      }
+    }
+  }
+
+  @Override
+  public void setNextReader(IndexReader reader, int docBase) throws IOException {
+    mergeSegmentCounts();
+    segmentFields = new UninvertedField[fields.size()];
+    segmentCounts = new int[fields.size()][];
+    for (int i = 0; i < fields.size(); i++) {
+      segmentFields[i] = UninvertedField.get(reader, fields.get(i));
+      segmentCounts[i] = new int[segmentFields[i].terms.length];
+    }
+  }
+
+  /**
+   * ordinals differ between segments, so the counts are merged by term
+   */
+  private void mergeSegmentCounts() {
+    if (segmentFields != null) {
+      for (int i = 0; i < segmentFields.length; i++) {
+        Map<String, Integer> fieldCounts = counts.get(fields.get(i));
+        for (int ord = 0; ord < segmentCounts[i].length; ord++) {
+          if (segmentCounts[i][ord] > 0) {
+            fieldCounts.merge(segmentFields[i].terms[ord], segmentCounts[i][ord], Integer::sum);
+          }
+        }
+      }
+      segmentFields = null;
+      segmentCounts = null;
+    }
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return true;
+  }
+
+  /**
+   * @return term counts per field in the requested order, each ordered by descending count and
+   *         term
+   */
+  Map<String, Map<String, Integer>> getFacetCounts() {
+    mergeSegmentCounts();
+    Map<String, Map<String, Integer>> ret = new LinkedHashMap<>();
+    for (String field : fields) {
+      ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+      counts.get(field).entrySet().stream()
+          .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+              .thenComparing(Map.Entry.comparingByKey()))
+          .forEach(builder::put);
+      ret.put(field, builder.build());
+    }
+    return ImmutableMap.copyOf(ret);
+  }
+
+}
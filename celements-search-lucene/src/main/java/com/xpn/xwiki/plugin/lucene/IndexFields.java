@@ -27,6 +27,9 @@ import java.util.Date;
 import java.util.function.Function;
 
 import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.util.NumericUtils;
 
 import com.celements.common.date.DateFormat;
 
@@ -42,6 +45,15 @@ public class IndexFields {
 
   public static final String SUFFIX_SORT = "_s";
 
+  /**
+   * Suffix of the trie encoded twin of date and number fields, queried with
+   * {@link org.apache.lucene.search.NumericRangeQuery}. Dates are encoded as the number
+   * {@link #DATE_FORMAT} yields, so the string and numeric values coincide.
+   */
+  public static final String SUFFIX_NUMERIC = "_n";
+
+  public static final int NUMERIC_PRECISION_STEP = NumericUtils.PRECISION_STEP_DEFAULT;
+
   /**
    * Keyword field, holds a string uniquely identifying a document across the index. this
    * is used for finding old versions of a document to be indexed.
@@ -179,6 +191,30 @@ public class IndexFields {
     return null;
   }
 
+  public static final long dateToLong(Date date) {
+    return Long.parseLong(dateToString(date));
+  }
+
+  public static final long dateToLong(Temporal date) {
+    return Long.parseLong(DATE_FORMATTER.apply(date));
+  }
+
+  public static final String numericField(String fieldName) {
+    return fieldName + SUFFIX_NUMERIC;
+  }
+
+  public static final boolean isNumericField(String fieldName) {
+    return fieldName.endsWith(SUFFIX_NUMERIC);
+  }
+
+  /**
+   * @return an indexed only, trie encoded field named {@link #numericField(String)}
+   */
+  public static final NumericField createNumericField(String fieldName, long value) {
+    return new NumericField(numericField(fieldName), NUMERIC_PRECISION_STEP, Field.Store.NO, true)
+        .setLongValue(value);
+  }
+
   public static final boolean stringToBoolean(String booleanValue) {
     return Boolean.parseBoolean(booleanValue);
   }
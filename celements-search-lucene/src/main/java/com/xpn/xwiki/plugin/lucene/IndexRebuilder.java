@@ -27,8 +27,10 @@ import static com.google.common.base.Predicates.*;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -39,6 +41,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.apache.lucene.index.Term;
@@ -74,6 +77,7 @@ import com.celements.store.MetaDataStoreExtension;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.store.XWikiCacheStoreInterface;
@@ -188,19 +192,28 @@ public class IndexRebuilder implements LuceneIndexRebuildService {
   }
 
   @Override
-  public synchronized IndexRebuildFuture startIndexRebuild(final EntityReference filterRef) {
+  public IndexRebuildFuture startIndexRebuild(EntityReference filterRef) {
+    return startIndexRebuild(filterRef, null);
+  }
+
+  @Override
+  public synchronized IndexRebuildFuture startIndexRebuild(final EntityReference filterRef,
+      @Nullable final Instant changedSince) {
     rebuildQueue.removeIf(CompletableFuture::isDone);
-    return getQueuedRebuild(filterRef).orElseGet(() -> {
-      IndexRebuildFuture newFuture = new IndexRebuildFuture(filterRef);
-      rebuildQueue.add(newFuture);
-      try {
-        rebuildIndexAsync(newFuture);
-      } catch (Exception exc) {
-        LOGGER.error("[{}] - failed to run rebuild async", filterRef, exc);
-        newFuture.completeExceptionally(exc);
-      }
-      return newFuture;
-    });
+    return rebuildQueue.stream()
+        .filter(queued -> queued.covers(filterRef, changedSince))
+        .findFirst()
+        .orElseGet(() -> {
+          IndexRebuildFuture newFuture = new IndexRebuildFuture(filterRef, changedSince);
+          rebuildQueue.add(newFuture);
+          try {
+            rebuildIndexAsync(newFuture);
+          } catch (Exception exc) {
+            LOGGER.error("[{}] - failed to run rebuild async", filterRef, exc);
+            newFuture.completeExceptionally(exc);
+          }
+          return newFuture;
+        });
   }
 
   protected void rebuildIndexAsync(final IndexRebuildFuture future) {
@@ -213,7 +226,7 @@ public class IndexRebuilder implements LuceneIndexRebuildService {
       protected void runInternal() {
         LOGGER.info("[{}] - started", logRef(filterRef));
         try (IndexSearcher searcher = new IndexSearcher(directory, true)) {
-          long count = rebuildIndex(searcher, filterRef);
+          long count = rebuildIndex(searcher, filterRef, future.getChangedSince());
           LOGGER.info("[{}] - finished: {}", logRef(filterRef), count);
           future.complete(count);
         } catch (InterruptedException exc) {
@@ -228,19 +241,25 @@ public class IndexRebuilder implements LuceneIndexRebuildService {
     }, rebuildExecutor);
   }
 
-  private long rebuildIndex(IndexSearcher searcher, EntityReference filterRef)
-      throws IOException, InterruptedException {
+  private long rebuildIndex(IndexSearcher searcher, EntityReference filterRef,
+      Optional<Instant> changedSince) throws IOException, InterruptedException, XWikiException {
     long ret = 0;
     long count = 0;
     Set<DocumentMetaData> docsToIndex = getAllDocMetaData(filterRef);
     Set<String> docsDangling = getAllIndexedDocs(filterRef, searcher);
+    Optional<Set<DocumentReference>> docsChanged = changedSince.isPresent()
+        ? Optional.of(getChangedDocRefs(changedSince.get()))
+        : Optional.empty();
     int toIndexCount = docsToIndex.size();
-    LOGGER.info("[{}] - indexing {} docs with {} dangling",
-        logRef(filterRef), toIndexCount, docsDangling.size());
+    LOGGER.info("[{}] - indexing {} docs ({} changed) with {} dangling",
+        logRef(filterRef), toIndexCount, docsChanged.map(Set::size).map(Object::toString)
+            .orElse("all"), docsDangling.size());
     for (Iterator<DocumentMetaData> iter = docsToIndex.iterator(); iter.hasNext();) {
       DocumentMetaData metaData = iter.next();
       String docId = getDocId(metaData);
-      ret += queueDocument(metaData);
+      if (docsChanged.map(changed -> changed.contains(metaData.getDocRef())).orElse(true)) {
+        ret += queueDocument(metaData);
+      }
       LOGGER.trace("indexed {}", docId);
       iter.remove();
       docsDangling.remove(docId);
@@ -266,6 +285,17 @@ public class IndexRebuilder implements LuceneIndexRebuildService {
     return new TLinkedHashSet<>(store.listDocumentMetaData(ref));
   }
 
+  /**
+   * @return the documents of the current wiki changed since the given time, translations
+   *         included
+   */
+  private Set<DocumentReference> getChangedDocRefs(Instant since) throws XWikiException {
+    List<DocumentReference> docRefs = getXContext().getWiki().getStore()
+        .searchDocumentReferences("where doc.date >= ?", List.of(Date.from(since)),
+            getXContext());
+    return new THashSet<>(docRefs);
+  }
+
   private Set<String> getAllIndexedDocs(@NotNull EntityReference ref,
       @NotNull IndexSearcher searcher) throws IOException {
     Set<String> ret = new THashSet<>();
@@ -0,0 +1,259 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexFileNameFilter;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Ships commit points from the single node owning the {@link org.apache.lucene.index.IndexWriter}
+ * (primary) to the other nodes of a cluster (replicas) through a directory shared by all nodes.
+ * Since Lucene never modifies written index files, only files this instance already copied
+ * completely are skipped, the segments file is copied last under a temporary name and renamed so
+ * the commit becomes visible once it's complete. The files of the previous commit are kept until
+ * the next one is shipped, a replica finding them removed while copying retries with the latest
+ * commit.
+ */
+class IndexReplication {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexReplication.class);
+
+  /**
+   * <tt>primary</tt> or <tt>replica</tt>, any other value disables replication
+   */
+  static final String PROP_ROLE = "xwiki.plugins.lucene.replication.role";
+
+  /**
+   * directory shared by the primary and all replicas
+   */
+  static final String PROP_DIR = "xwiki.plugins.lucene.replication.dir";
+
+  /**
+   * seconds between a replica's checks for new commits
+   */
+  static final String PROP_POLL_INTERVAL = "xwiki.plugins.lucene.replication.pollinterval";
+
+  /**
+   * prefix of the segments file while it's copied, not recognised as commit point by Lucene
+   */
+  static final String PENDING_PREFIX = "pending_";
+
+  static final int PULL_ATTEMPTS = 3;
+
+  enum Role {
+
+    PRIMARY, REPLICA;
+
+    static Role parse(String value) {
+      for (Role role : values()) {
+        if (role.name().equalsIgnoreCase(value.trim())) {
+          return role;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final Role role;
+
+  private final Directory sharedDir;
+
+  private long shippedGeneration = -1;
+
+  private Set<String> previousFiles = ImmutableSet.of();
+
+  /**
+   * files completely copied to the target directory by this instance with their lengths. Empty
+   * before the first shipment, so files left by earlier runs are never trusted.
+   */
+  private final Map<String, Long> targetFiles = new HashMap<>();
+
+  IndexReplication(@NotNull Role role, @NotNull Directory sharedDir) {
+    this.role = checkNotNull(role);
+    this.sharedDir = checkNotNull(sharedDir);
+  }
+
+  public Role getRole() {
+    return role;
+  }
+
+  public boolean isPrimary() {
+    return role == Role.PRIMARY;
+  }
+
+  public boolean isReplica() {
+    return role == Role.REPLICA;
+  }
+
+  /**
+   * Primary only, ships the given commit point of the source directory to the shared directory.
+   */
+  public synchronized void publish(@NotNull IndexCommit commit, @NotNull Directory source)
+      throws IOException {
+    checkState(isPrimary(), "only the primary publishes commits");
+    if (commit.getGeneration() > shippedGeneration) {
+      ship(commit, source, sharedDir);
+      LOGGER.info("publish: shipped generation {}", commit.getGeneration());
+    }
+  }
+
+  /**
+   * Replica only, copies the latest commit point from the shared directory into the local one.
+   *
+   * @return true if a new commit point has been copied and searchers should be reopened
+   */
+  public synchronized boolean pull(@NotNull Directory localDir) throws IOException {
+    checkState(isReplica(), "only replicas pull commits");
+    if (!IndexReader.indexExists(sharedDir)) {
+      LOGGER.debug("pull: nothing published yet");
+      return false;
+    }
+    for (int attempt = 1;; attempt++) {
+      List<IndexCommit> commits = IndexReader.listCommits(sharedDir);
+      IndexCommit commit = commits.get(commits.size() - 1);
+      if (commit.getGeneration() <= shippedGeneration) {
+        return false;
+      }
+      try {
+        ship(commit, sharedDir, localDir);
+        LOGGER.info("pull: received generation {}", commit.getGeneration());
+        return true;
+      } catch (FileNotFoundException | NoSuchFileException exc) {
+        // the primary removed the commit while copying it, a newer one has been published
+        if (attempt >= PULL_ATTEMPTS) {
+          throw exc;
+        }
+        LOGGER.info("pull: generation {} removed while copying, retrying",
+            commit.getGeneration(), exc);
+      }
+    }
+  }
+
+  private void ship(IndexCommit commit, Directory source, Directory target) throws IOException {
+    Set<String> files = ImmutableSet.copyOf(commit.getFileNames());
+    copyCommit(commit, source, target, targetFiles);
+    Set<String> referenced = new HashSet<>(files);
+    referenced.addAll(previousFiles);
+    deleteUnreferenced(target, referenced);
+    targetFiles.keySet().retainAll(referenced);
+    previousFiles = files;
+    shippedGeneration = commit.getGeneration();
+  }
+
+  /**
+   * Copies all files of the commit point to the target directory, the segments file last.
+   */
+  static void copyCommit(@NotNull IndexCommit commit, @NotNull Directory source,
+      @NotNull Directory target) throws IOException {
+    copyCommit(commit, source, target, new HashMap<>());
+  }
+
+  /**
+   * Copies the files of the commit point not yet in the given copied files, the segments file
+   * last. Each file is added to the copied files once it's synced.
+   */
+  private static void copyCommit(IndexCommit commit, Directory source, Directory target,
+      Map<String, Long> copied) throws IOException {
+    String segmentsFile = commit.getSegmentsFileName();
+    int count = 0;
+    for (String fileName : commit.getFileNames()) {
+      if (!fileName.equals(segmentsFile) && !isPresent(fileName, source, target, copied)) {
+        copied.remove(fileName);
+        source.copy(target, fileName, fileName);
+        target.sync(ImmutableSet.of(fileName));
+        copied.put(fileName, target.fileLength(fileName));
+        count++;
+      }
+    }
+    // the segments file references all others, only publish it once they are in place
+    copySegmentsFile(segmentsFile, source, target);
+    copied.put(segmentsFile, target.fileLength(segmentsFile));
+    LOGGER.debug("copyCommit: copied {} files for [{}]", count + 1, segmentsFile);
+  }
+
+  private static boolean isPresent(String fileName, Directory source, Directory target,
+      Map<String, Long> copied) throws IOException {
+    Long length = copied.get(fileName);
+    return (length != null) && target.fileExists(fileName)
+        && (target.fileLength(fileName) == length)
+        && (source.fileLength(fileName) == length);
+  }
+
+  /**
+   * Copies the segments file under a temporary name and renames it once synced, so a partially
+   * written commit point is never visible in a file system directory.
+   */
+  private static void copySegmentsFile(String segmentsFile, Directory source, Directory target)
+      throws IOException {
+    if (target instanceof FSDirectory) {
+      String pendingFile = PENDING_PREFIX + segmentsFile;
+      source.copy(target, segmentsFile, pendingFile);
+      target.sync(ImmutableSet.of(pendingFile));
+      Path dir = ((FSDirectory) target).getDirectory().toPath();
+      Files.move(dir.resolve(pendingFile), dir.resolve(segmentsFile),
+          StandardCopyOption.ATOMIC_MOVE);
+    } else {
+      source.copy(target, segmentsFile, segmentsFile);
+      target.sync(ImmutableSet.of(segmentsFile));
+    }
+  }
+
+  private static void deleteUnreferenced(Directory dir, Collection<String> referenced)
+      throws IOException {
+    for (String fileName : dir.listAll()) {
+      if (!referenced.contains(fileName) && !IndexFileNames.SEGMENTS_GEN.equals(fileName)
+          && (IndexFileNameFilter.getFilter().accept(null, fileName)
+              || fileName.startsWith(PENDING_PREFIX))) {
+        try {
+          dir.deleteFile(fileName);
+        } catch (IOException exc) {
+          // may still be open on some platforms, retried with the next commit
+          LOGGER.debug("deleteUnreferenced: failed for [{}]", fileName, exc);
+        }
+      }
+    }
+  }
+
+}
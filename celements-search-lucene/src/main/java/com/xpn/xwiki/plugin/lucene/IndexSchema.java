@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+import static com.google.common.base.Strings.*;
+
+import java.util.Collection;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.document.Field;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.xpn.xwiki.XWikiConfigSource;
+
+/**
+ * Decides which fields are stored in the index. The full schema stores every field, the lean
+ * schema stores each value once: the sort and keyword variants of stored fields and the fields
+ * never read from search results are only indexed, object properties are only stored if
+ * configured with {@link #PROP_STORED_PROPERTIES}. Searching and sorting only use the indexed
+ * terms and aren't affected.
+ */
+public final class IndexSchema {
+
+  /**
+   * <tt>lean</tt> enables the lean schema. Documents indexed before keep their stored fields
+   * until reindexed, see {@link #PROP_MIGRATE}.
+   */
+  static final String PROP_SCHEMA = "xwiki.plugins.lucene.schema";
+
+  /**
+   * comma separated class names (<tt>Space.Class</tt>) or property names
+   * (<tt>Space.Class.property</tt>) whose values remain stored with the lean schema
+   */
+  static final String PROP_STORED_PROPERTIES = "xwiki.plugins.lucene.schema.storedProperties";
+
+  /**
+   * if set to true, a full rebuild of all wikis is started on startup if the schema of the last
+   * commit differs from the configured one
+   */
+  static final String PROP_MIGRATE = "xwiki.plugins.lucene.schema.migrate";
+
+  /**
+   * commit user data key holding the name of the schema new documents are written with
+   */
+  static final String COMMIT_SCHEMA = "schema";
+
+  public static final String FULL = "full";
+
+  public static final String LEAN = "lean";
+
+  public static final IndexSchema DEFAULT = new IndexSchema(false, ImmutableSet.of());
+
+  /**
+   * stored fields duplicating the value of another stored field or never read from search results
+   */
+  static final ImmutableSet<String> REDUNDANT_FIELDS = ImmutableSet.of(
+      IndexFields.DOCUMENT_TITLE_SORT, IndexFields.DOCUMENT_NAME_S, IndexFields.DOCUMENT_SPACE_S,
+      IndexFields.DOCUMENT_WEB, IndexFields.DOCUMENT_PARENT, IndexFields.MIMETYPE);
+
+  private final boolean lean;
+
+  private final ImmutableSet<String> storedProperties;
+
+  IndexSchema(boolean lean, @NotNull Collection<String> storedProperties) {
+    this.lean = lean;
+    this.storedProperties = ImmutableSet.copyOf(checkNotNull(storedProperties));
+  }
+
+  @NotNull
+  static IndexSchema fromConfig(@NotNull XWikiConfigSource cfg) {
+    boolean lean = LEAN.equalsIgnoreCase(nullToEmpty(cfg.getProperty(PROP_SCHEMA)).trim());
+    return new IndexSchema(lean, Splitter.on(',').trimResults().omitEmptyStrings()
+        .splitToList(nullToEmpty(cfg.getProperty(PROP_STORED_PROPERTIES))));
+  }
+
+  public boolean isLean() {
+    return lean;
+  }
+
+  @NotNull
+  public String getName() {
+    return lean ? LEAN : FULL;
+  }
+
+  /**
+   * @return this schema's lean variant, storing the same object properties
+   */
+  @NotNull
+  public IndexSchema toLean() {
+    return lean ? this : new IndexSchema(true, storedProperties);
+  }
+
+  public boolean isStored(@NotNull String fieldName) {
+    return !lean || !(REDUNDANT_FIELDS.contains(fieldName)
+        || (isPropertyField(fieldName) && !isStoredProperty(fieldName)));
+  }
+
+  @NotNull
+  public Field.Store store(@NotNull String fieldName) {
+    return isStored(fieldName) ? Field.Store.YES : Field.Store.NO;
+  }
+
+  /**
+   * object property fields are named <tt>Space.Class.property</tt>, optionally suffixed by
+   * <tt>.key</tt> or <tt>.value</tt> for static lists
+   */
+  private static boolean isPropertyField(String fieldName) {
+    return fieldName.indexOf('.') > 0;
+  }
+
+  private boolean isStoredProperty(String fieldName) {
+    return storedProperties.stream().anyMatch(name -> fieldName.equals(name)
+        || fieldName.startsWith(name + "."));
+  }
+
+  @Override
+  public String toString() {
+    return "IndexSchema [" + getName() + ", storedProperties=" + storedProperties + "]";
+  }
+
+}
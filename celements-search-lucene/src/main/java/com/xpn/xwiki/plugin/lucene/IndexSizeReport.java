@@ -0,0 +1,175 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexReader;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Compares the stored field sizes of an index to the ones it would have with the lean
+ * {@link IndexSchema}. Stored sizes are estimated from the UTF-8 encoded values of a sample of
+ * documents, extrapolated to all documents.
+ */
+public final class IndexSizeReport {
+
+  private final String schemaName;
+  private final long numDocs;
+  private final long sampledDocs;
+  private final long indexBytes;
+  private final ImmutableMap<String, Long> storedBytesByField;
+  private final long leanStoredBytes;
+
+  private IndexSizeReport(String schemaName, long numDocs, long sampledDocs, long indexBytes,
+      Map<String, Long> storedBytesByField, long leanStoredBytes) {
+    this.schemaName = schemaName;
+    this.numDocs = numDocs;
+    this.sampledDocs = sampledDocs;
+    this.indexBytes = indexBytes;
+    this.storedBytesByField = ImmutableMap.copyOf(storedBytesByField);
+    this.leanStoredBytes = leanStoredBytes;
+  }
+
+  /**
+   * @param schemaName
+   *          name of the schema the index has been written with
+   * @param indexBytes
+   *          size of all index files on disk
+   * @param leanSchema
+   *          the schema to project the stored sizes to
+   * @param sampleSize
+   *          maximum number of documents loaded per reader
+   */
+  @NotNull
+  static IndexSizeReport create(@NotNull Collection<IndexReader> readers,
+      @NotNull String schemaName, long indexBytes, @NotNull IndexSchema leanSchema,
+      int sampleSize) throws IOException {
+    checkArgument(sampleSize > 0, "sampleSize must be positive");
+    long numDocs = 0;
+    long sampledDocs = 0;
+    Map<String, Long> storedBytesByField = new HashMap<>();
+    for (IndexReader reader : readers) {
+      numDocs += reader.numDocs();
+      Map<String, Long> readerBytes = new HashMap<>();
+      long readerSampled = 0;
+      int step = Math.max(1, reader.maxDoc() / sampleSize);
+      for (int docId = 0; docId < reader.maxDoc(); docId += step) {
+        if (!reader.isDeleted(docId)) {
+          addStoredBytes(reader.document(docId), readerBytes);
+          readerSampled++;
+        }
+      }
+      double scale = (readerSampled > 0) ? ((double) reader.numDocs() / readerSampled) : 0;
+      readerBytes.forEach((field, bytes) -> storedBytesByField.merge(field,
+          Math.round(bytes * scale), Long::sum));
+      sampledDocs += readerSampled;
+    }
+    long leanStoredBytes = storedBytesByField.entrySet().stream()
+        .filter(entry -> leanSchema.isStored(entry.getKey()))
+        .mapToLong(Map.Entry::getValue)
+        .sum();
+    return new IndexSizeReport(schemaName, numDocs, sampledDocs, indexBytes, storedBytesByField,
+        leanStoredBytes);
+  }
+
+  private static void addStoredBytes(Document doc, Map<String, Long> bytesByField) {
+    for (Fieldable field : doc.getFields()) {
+      if (field.isStored() && (field.stringValue() != null)) {
+        bytesByField.merge(field.name(), (long) field.stringValue().getBytes(UTF_8).length,
+            Long::sum);
+      }
+    }
+  }
+
+  /**
+   * @return name of the schema the index has been written with since the last commit
+   */
+  public String getSchemaName() {
+    return schemaName;
+  }
+
+  public long getNumDocs() {
+    return numDocs;
+  }
+
+  public long getSampledDocs() {
+    return sampledDocs;
+  }
+
+  /**
+   * @return size of all index files on disk
+   */
+  public long getIndexBytes() {
+    return indexBytes;
+  }
+
+  /**
+   * @return estimated stored bytes per field name
+   */
+  public ImmutableMap<String, Long> getStoredBytesByField() {
+    return storedBytesByField;
+  }
+
+  public long getStoredBytes() {
+    return storedBytesByField.values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  /**
+   * @return estimated stored bytes if all documents were written with the lean schema
+   */
+  public long getLeanStoredBytes() {
+    return leanStoredBytes;
+  }
+
+  public long getSavedBytes() {
+    return getStoredBytes() - leanStoredBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("IndexSizeReport [schema=").append(schemaName)
+        .append(", docs=").append(numDocs)
+        .append(", sampled=").append(sampledDocs)
+        .append(", indexBytes=").append(indexBytes)
+        .append(", storedBytes=").append(getStoredBytes())
+        .append(", leanStoredBytes=").append(leanStoredBytes)
+        .append(", savedBytes=").append(getSavedBytes()).append("]");
+    storedBytesByField.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+        .forEach(entry -> sb.append("\n  ").append(entry.getKey()).append(": ")
+            .append(entry.getValue()));
+    return sb.toString();
+  }
+
+}
@@ -19,26 +19,41 @@
  */
 package com.xpn.xwiki.plugin.lucene;
 
+import static com.celements.execution.XWikiExecutionProp.*;
 import static com.google.common.collect.ImmutableMap.*;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import javax.validation.constraints.NotNull;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexDeletionPolicy;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.store.Directory;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 
 import com.celements.common.observation.event.AbstractEntityEvent;
 import com.celements.model.access.exception.DocumentNotExistsException;
@@ -46,9 +61,12 @@ import com.celements.model.context.ModelContext;
 import com.celements.model.util.ModelUtils;
 import com.celements.model.util.References;
 import com.celements.search.lucene.index.queue.IndexQueuePriority;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.xpn.xwiki.XWikiConfigSource;
 import com.xpn.xwiki.XWikiConstant;
 import com.xpn.xwiki.plugin.lucene.indexExtension.ILuceneIndexExtensionServiceRole;
@@ -56,6 +74,8 @@ import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentDeletedEvent;
 import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentDeletingEvent;
 import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentIndexedEvent;
 import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentIndexingEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentsDeletedEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentsIndexedEvent;
 import com.xpn.xwiki.util.AbstractXWikiRunnable;
 import com.xpn.xwiki.web.Utils;
 
@@ -68,6 +88,19 @@ public class IndexUpdater extends AbstractXWikiRunnable {
 
   static final String PROP_COMMIT_INTERVAL = "xwiki.plugins.lucene.commitinterval";
 
+  /**
+   * if set to true, observation events are notified on a separate thread in the order they
+   * occurred instead of on the writer thread. Listeners then can't rely on the index state at the
+   * time they are notified.
+   */
+  static final String PROP_NOTIFY_ASYNC = "xwiki.plugins.lucene.notifyasync";
+
+  /**
+   * commit user data key holding the epoch millis up to which all queued changes are contained in
+   * the commit
+   */
+  static final String COMMIT_INDEXED_UNTIL = "indexedUntil";
+
   /**
    * The maximum number of milliseconds we have to wait before this thread is safely
    * closed.
@@ -91,6 +124,25 @@ public class IndexUpdater extends AbstractXWikiRunnable {
 
   private final long commitInterval;
 
+  private final IndexSchema schema;
+
+  private final boolean notifyAsync;
+
+  /**
+   * present while running if observation events are notified asynchronously, see
+   * {@link #PROP_NOTIFY_ASYNC}
+   */
+  private volatile Optional<ExecutorService> notifyExecutor = Optional.empty();
+
+  private final Supplier<ObservationManager> observationManager = Suppliers
+      .memoize(() -> Utils.getComponent(ObservationManager.class));
+
+  /**
+   * references written since the last commit, only accessed by the writer thread
+   */
+  private final List<EntityReference> uncommittedIndexed = new ArrayList<>();
+  private final List<EntityReference> uncommittedDeleted = new ArrayList<>();
+
   private final ImmutableMap<IndexQueuePriority, XWikiDocumentQueue> queues = Stream
       .of(IndexQueuePriority.values())
       .sorted(Ordering.natural().reversed())
@@ -106,6 +158,8 @@ public class IndexUpdater extends AbstractXWikiRunnable {
         .getProperty(PROP_INDEXING_INTERVAL))).orElse(30L);
     this.commitInterval = Optional.ofNullable(Longs.tryParse(getXWikiCfg()
         .getProperty(PROP_COMMIT_INTERVAL))).orElse(5000L);
+    this.notifyAsync = Boolean.parseBoolean(getXWikiCfg().getProperty(PROP_NOTIFY_ASYNC));
+    this.schema = IndexSchema.fromConfig(getXWikiCfg());
     this.writer = writer;
   }
 
@@ -141,16 +195,43 @@ public class IndexUpdater extends AbstractXWikiRunnable {
   @Override
   protected void runInternal() {
     logger.info("IndexUpdater started");
+    if (notifyAsync) {
+      notifyExecutor = Optional.of(Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("IndexUpdater-notify-%d").build()));
+    }
     try {
       getContext().setWikiRef(XWikiConstant.MAIN_WIKI);
       runMainLoop();
     } catch (Throwable exc) {
       logger.error("Unexpected error occured", exc);
       throw exc;
+    } finally {
+      shutdownNotifyExecutor();
     }
     logger.info("IndexUpdater finished");
   }
 
+  /**
+   * delivers the pending observation events before the updater finishes, later events are
+   * notified synchronously
+   */
+  private void shutdownNotifyExecutor() {
+    Optional<ExecutorService> executor = notifyExecutor;
+    notifyExecutor = Optional.empty();
+    if (executor.isPresent()) {
+      executor.get().shutdown();
+      try {
+        if (!executor.get().awaitTermination(EXIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+          logger.warn("shutdownNotifyExecutor: pending notifications dropped");
+          executor.get().shutdownNow();
+        }
+      } catch (InterruptedException exc) {
+        executor.get().shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /**
    * Main loop. Polls the queue for documents to be indexed.
    */
@@ -259,11 +340,14 @@ public class IndexUpdater extends AbstractXWikiRunnable {
     EntityReference ref = data.getEntityReference();
     notify(data, new LuceneDocumentIndexingEvent(ref));
     Document luceneDoc = new Document();
-    data.addDataToLuceneDocument(luceneDoc);
+    data.addDataToLuceneDocument(luceneDoc, schema);
     getLuceneExtensionService().extend(data, luceneDoc);
     collectFields(luceneDoc);
     writer.updateDocument(data.getTerm(), luceneDoc);
     notify(data, new LuceneDocumentIndexedEvent(ref));
+    if (data.notifyObservationEvents()) {
+      uncommittedIndexed.add(ref);
+    }
     logger.trace("addToIndex: [{}] - {}", data.getTerm(), luceneDoc);
   }
 
@@ -286,13 +370,127 @@ public class IndexUpdater extends AbstractXWikiRunnable {
     writer.deleteDocuments(data.getTerm());
     if (ref != null) {
       notify(data, new LuceneDocumentDeletedEvent(ref));
+      if (data.notifyObservationEvents()) {
+        uncommittedDeleted.add(ref);
+      }
     }
   }
 
   public void commitIndex() throws IOException {
     logger.debug("commitIndex");
-    writer.commit();
+    // changes still queued aren't contained in this commit
+    Instant indexedUntil = queues()
+        .map(XWikiDocumentQueue::getOldestQueueTime)
+        .flatMap(Optional::stream)
+        .min(Comparator.naturalOrder())
+        .orElseGet(Instant::now);
+    writer.commit(ImmutableMap.of(
+        COMMIT_INDEXED_UNTIL, Long.toString(indexedUntil.toEpochMilli()),
+        IndexSchema.COMMIT_SCHEMA, schema.getName()));
     plugin.closeSearcherProvider();
+    publishCommit();
+    notifyCommitted();
+  }
+
+  /**
+   * notifies the batch events for all references written with the last commit, has to be called
+   * from the writer thread
+   */
+  private void notifyCommitted() {
+    if (!uncommittedIndexed.isEmpty()) {
+      ImmutableList<EntityReference> refs = ImmutableList.copyOf(uncommittedIndexed);
+      uncommittedIndexed.clear();
+      notify(new LuceneDocumentsIndexedEvent(refs), refs);
+    }
+    if (!uncommittedDeleted.isEmpty()) {
+      ImmutableList<EntityReference> refs = ImmutableList.copyOf(uncommittedDeleted);
+      uncommittedDeleted.clear();
+      notify(new LuceneDocumentsDeletedEvent(refs), refs);
+    }
+  }
+
+  /**
+   * Copies the last commit point of the index into the empty target directory. Indexing isn't
+   * interrupted, the files of the commit point are retained by the {@link SnapshotDeletionPolicy}
+   * until the copy is finished.
+   *
+   * @return the time up to which all queued changes are contained in the backup
+   */
+  public Instant backupIndex(@NotNull Directory target) throws IOException {
+    if (target.listAll().length > 0) {
+      throw new IllegalArgumentException("backup target directory not empty: " + target);
+    }
+    return onSnapshot(commit -> {
+      logger.info("backupIndex: copying commit [{}] to [{}]", commit.getSegmentsFileName(),
+          target);
+      IndexReplication.copyCommit(commit, getDirectory(), target);
+      Optional<Instant> indexedUntil = getIndexedUntil(commit);
+      return indexedUntil.isPresent() ? indexedUntil.get()
+          : Instant.ofEpochMilli(commit.getTimestamp());
+    });
+  }
+
+  /**
+   * ships the last commit to the replicas if this node is the replication primary. Failures are
+   * only logged, the next commit is shipped with all files missing on the replicas.
+   */
+  private void publishCommit() {
+    plugin.getReplication().filter(IndexReplication::isPrimary).ifPresent(replication -> {
+      try {
+        onSnapshot(commit -> {
+          replication.publish(commit, getDirectory());
+          return null;
+        });
+      } catch (IOException | RuntimeException exc) {
+        logger.error("failed to publish commit to replicas", exc);
+      }
+    });
+  }
+
+  private interface SnapshotAction<T> {
+
+    T apply(IndexCommit commit) throws IOException;
+  }
+
+  /**
+   * runs the action on the last commit point, whose files are retained during the action
+   */
+  private <T> T onSnapshot(SnapshotAction<T> action) throws IOException {
+    SnapshotDeletionPolicy snapshotter = getSnapshotDeletionPolicy();
+    String snapshotId = "snapshot-" + UUID.randomUUID();
+    IndexCommit commit = snapshotter.snapshot(snapshotId);
+    try {
+      return action.apply(commit);
+    } finally {
+      snapshotter.release(snapshotId);
+      writer.deleteUnusedFiles();
+    }
+  }
+
+  private SnapshotDeletionPolicy getSnapshotDeletionPolicy() {
+    IndexDeletionPolicy policy = writer.getConfig().getIndexDeletionPolicy();
+    if (policy instanceof SnapshotDeletionPolicy) {
+      return (SnapshotDeletionPolicy) policy;
+    }
+    throw new IllegalStateException("index writer not snapshotting commits: " + policy);
+  }
+
+  static Optional<Instant> getIndexedUntil(IndexCommit commit) throws IOException {
+    return Optional.ofNullable(commit.getUserData().get(COMMIT_INDEXED_UNTIL))
+        .map(Longs::tryParse)
+        .map(Instant::ofEpochMilli);
+  }
+
+  /**
+   * @return the name of the schema the documents were written with since the commit, see
+   *         {@link IndexSchema#getName()}
+   */
+  static Optional<String> getSchemaName(IndexCommit commit) throws IOException {
+    return Optional.ofNullable(commit.getUserData().get(IndexSchema.COMMIT_SCHEMA));
+  }
+
+  public IndexSchema getSchema() {
+    return schema;
   }
 
   public void queue(AbstractIndexData data) {
@@ -342,13 +540,42 @@ public class IndexUpdater extends AbstractXWikiRunnable {
 
   private void notify(AbstractIndexData data, AbstractEntityEvent event) {
     if (data.notifyObservationEvents()) {
-      Utils.getComponent(ObservationManager.class).notify(event, event.getReference(),
-          getContext().getXWikiContext());
+      notify(event, event.getReference());
     } else {
       logger.debug("skip notify '{}' for '{}'", event, data);
     }
   }
 
+  private void notify(Event event, Object source) {
+    Optional<ExecutorService> executor = notifyExecutor;
+    if (executor.isPresent()) {
+      WikiReference wikiRef = getContext().getWikiRef();
+      CompletableFuture.runAsync(new AbstractXWikiRunnable(WIKI.getName(), wikiRef) {
+
+        @Override
+        protected void runInternal() {
+          notifyNow(event, source);
+        }
+      }, executor.get()).exceptionally(exc -> {
+        logger.warn("failed to notify '{}' async", event, exc);
+        return null;
+      });
+    } else {
+      notifyNow(event, source);
+    }
+  }
+
+  /**
+   * a failing listener mustn't prevent the indexing or stop the writer thread
+   */
+  private void notifyNow(Event event, Object source) {
+    try {
+      observationManager.get().notify(event, source, getContext().getXWikiContext());
+    } catch (RuntimeException exc) {
+      logger.warn("failed to notify '{}'", event, exc);
+    }
+  }
+
   private ILuceneIndexExtensionServiceRole getLuceneExtensionService() {
     return Utils.getComponent(ILuceneIndexExtensionServiceRole.class);
   }
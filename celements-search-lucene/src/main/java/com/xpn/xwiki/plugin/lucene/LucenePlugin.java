@@ -19,44 +19,72 @@
  */
 package com.xpn.xwiki.plugin.lucene;
 
-import static com.celements.logging.LogUtils.*;
 import static com.google.common.base.Preconditions.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.MultiFieldQueryParser;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.CachingWrapperFilter.DeletesMode;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.MultiSearcher;
+import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
@@ -64,19 +92,30 @@ import org.apache.lucene.util.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.context.Execution;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
 
+import com.celements.model.util.ModelUtils;
 import com.celements.search.lucene.LuceneDocType;
 import com.celements.search.lucene.index.queue.IndexQueuePriority;
 import com.celements.search.lucene.index.rebuild.LuceneIndexRebuildService;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.xpn.xwiki.XWikiConfigSource;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.api.Api;
 import com.xpn.xwiki.api.XWiki;
 import com.xpn.xwiki.plugin.XWikiDefaultPlugin;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
 import com.xpn.xwiki.plugin.lucene.searcherProvider.ISearcherProviderRole;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
 import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherProvider;
 import com.xpn.xwiki.web.Utils;
 
@@ -98,6 +137,12 @@ public class LucenePlugin extends XWikiDefaultPlugin {
 
   public static final String SORT_FIELD_SCORE = "score";
 
+  /**
+   * fields searched by queries not specifying a field
+   */
+  public static final List<String> DEFAULT_SEARCH_FIELDS = ImmutableList.of(IndexFields.FULLTEXT,
+      IndexFields.DOCUMENT_TITLE, IndexFields.DOCUMENT_NAME, IndexFields.FILENAME);
+
   @Deprecated
   public static final String DOCTYPE_WIKIPAGE = LuceneDocType.wikipage.name();
 
@@ -120,6 +165,64 @@ public class LucenePlugin extends XWikiDefaultPlugin {
 
   static final String PROP_WRITER_BUFFER_SIZE = "xwiki.plugins.lucene.writerBufferSize";
 
+  /**
+   * directory of a backup created with {@link #backupIndex(File)}, restored on startup if the
+   * write directory doesn't contain any documents yet
+   */
+  static final String PROP_RESTORE_DIR = "xwiki.plugins.lucene.restoreDir";
+
+  /**
+   * maximum number of parsed queries cached by {@link #buildQuery}, 0 disables the cache
+   */
+  static final String PROP_QUERY_CACHE_SIZE = "xwiki.plugins.lucene.queryCacheSize";
+
+  static final int DEFAULT_QUERY_CACHE_SIZE = 1000;
+
+  /**
+   * maximum number of cached filters, see {@link #getCachedFilter(Query)}. Each keeps a bitset of
+   * all documents per index segment, 0 disables the cache.
+   */
+  static final String PROP_FILTER_CACHE_SIZE = "xwiki.plugins.lucene.filterCacheSize";
+
+  static final int DEFAULT_FILTER_CACHE_SIZE = 100;
+
+  /**
+   * maximum number of hits cached by {@link #search}, 0 (default) disables the result cache
+   */
+  static final String PROP_RESULT_CACHE_SIZE = "xwiki.plugins.lucene.resultCacheSize";
+
+  /**
+   * number of threads searching the segments of the index in parallel for searches with a result
+   * limit above {@link #PROP_RESULT_LIMIT}, e.g. without checks. 0 (default) disables parallel
+   * search, a negative number uses all available processors.
+   */
+  static final String PROP_SEARCH_THREADS = "xwiki.plugins.lucene.search.threads";
+
+  /**
+   * default time budget in milliseconds for collecting the hits of a search, 0 (default) disables
+   * it. Searches exceeding it return the hits collected so far, see
+   * {@link SearchResults#isTimedOut()}.
+   */
+  static final String PROP_SEARCH_TIMEOUT = "xwiki.plugins.lucene.search.timeout";
+
+  /**
+   * semicolon separated queries run against new searchers before they are published, e.g.
+   * <tt>type:wikipage;object:xwiki.xwikiusers</tt>
+   */
+  static final String PROP_WARM_QUERIES = "xwiki.plugins.lucene.warm.queries";
+
+  /**
+   * comma separated sort fields loaded into the field caches of new searchers before they are
+   * published, e.g. <tt>title_s,date</tt>
+   */
+  static final String PROP_WARM_SORTS = "xwiki.plugins.lucene.warm.sorts";
+
+  /**
+   * documents changed this long before the time a restored backup is complete for are reindexed
+   * as well, covering changes which reached the queue delayed
+   */
+  private static final Duration RESTORE_REPLAY_MARGIN = Duration.ofMinutes(5);
+
   /**
    * Lucene index updater. Listens for changes and indexes wiki documents in a separate
    * thread.
@@ -137,6 +240,60 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    */
   private final ExecutorService indexUpdaterExecutor;
 
+  /**
+   * Shuts the plugin down when the JVM exits, registered in {@link #init(XWikiContext)}.
+   */
+  private final Thread shutdownHook = new Thread(this::shutdownOnExit, "LucenePlugin-shutdown");
+
+  /**
+   * Present if this node takes part in index replication, see {@link IndexReplication}.
+   */
+  private volatile Optional<IndexReplication> replication = Optional.empty();
+
+  /**
+   * Run against new searchers before they are published, see {@link #PROP_WARM_QUERIES} and
+   * {@link #PROP_WARM_SORTS}. Warming is disabled if both are empty.
+   */
+  private volatile List<Query> warmQueries = ImmutableList.of();
+  private volatile List<Sort> warmSorts = ImmutableList.of();
+
+  /**
+   * Parsed queries by query string, analyzer, wiki names and languages, see
+   * {@link #PROP_QUERY_CACHE_SIZE}.
+   */
+  private volatile Cache<List<String>, Query> queryCache = createQueryCache(
+      DEFAULT_QUERY_CACHE_SIZE);
+
+  /**
+   * Filters by the query they match, see {@link #PROP_FILTER_CACHE_SIZE}.
+   */
+  private volatile Cache<Query, Filter> filterCache = createFilterCache(
+      DEFAULT_FILTER_CACHE_SIZE);
+
+  /**
+   * Raw top docs by searcher generation, query string, sort, wiki names, languages, result limit
+   * and skipped checks, see {@link #PROP_RESULT_CACHE_SIZE}. Access rights are checked per search
+   * on top.
+   */
+  private volatile Cache<List<Object>, TopDocs> resultCache = createResultCache(0);
+
+  private volatile boolean resultCacheEnabled = false;
+
+  /**
+   * Default time budget of searches in milliseconds, see {@link #PROP_SEARCH_TIMEOUT}.
+   */
+  private volatile long searchTimeout = 0;
+
+  /**
+   * Searches the segments in parallel, see {@link #PROP_SEARCH_THREADS}. Null if disabled.
+   */
+  private ExecutorService searchExecutor;
+
+  /**
+   * Polls for new commits if this node is a replication replica.
+   */
+  private ScheduledExecutorService replicaPoller;
+
   /**
    * The current searchers provider.
    */
@@ -148,7 +305,7 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    * ( <tt>xwiki.plugins.lucene.indexdir</tt>). If no directory is configured, then a subdirectory
    * <tt>lucene</tt> in the application's work directory is used.
    */
-  private volatile List<Directory> indexDirs;
+  volatile List<Directory> indexDirs;
 
   public LucenePlugin(String name, String className, XWikiContext context) {
     super(name, className, context);
@@ -166,13 +323,47 @@ public class LucenePlugin extends XWikiDefaultPlugin {
     return new LucenePluginApi((LucenePlugin) plugin, context);
   }
 
-  @Override
-  protected void finalize() throws Throwable {
-    LOGGER.error("Lucene plugin will exit!");
+  /**
+   * Stops the index updater and the plugin's threads and releases the current searchers, which are
+   * closed once all handles on them are released. Called by a shutdown hook when the JVM exits, the
+   * plugin stays reachable from its running index updater and is never finalized.
+   */
+  public void shutdown() throws IOException {
+    LOGGER.warn("Lucene plugin will exit!");
+    if (Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException exc) {
+        LOGGER.debug("shutdown: JVM already shutting down", exc);
+      }
+    }
     if (this.indexUpdater != null) {
       this.indexUpdater.doExit();
     }
-    super.finalize();
+    indexUpdaterExecutor.shutdown();
+    if (replicaPoller != null) {
+      replicaPoller.shutdownNow();
+    }
+    if (searchExecutor != null) {
+      searchExecutor.shutdown();
+    }
+    replaceSearcherProvider(null);
+  }
+
+  private void registerShutdownHook() {
+    try {
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+    } catch (IllegalArgumentException exc) {
+      LOGGER.debug("registerShutdownHook: already registered");
+    }
+  }
+
+  private void shutdownOnExit() {
+    try {
+      shutdown();
+    } catch (IOException | RuntimeException exc) {
+      LOGGER.error("shutdownOnExit: failed", exc);
+    }
   }
 
   /**
@@ -200,8 +391,9 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    */
   public SearchResults getSearchResults(String query, String sortField, String virtualWikiNames,
       String languages, XWikiContext context) throws IOException, ParseException {
-    try (SearcherProvider searchProvider = getConnectedSearcherProvider()) {
-      return search(query, sortField, virtualWikiNames, languages, searchProvider, false, context);
+    try (SearcherHandle handle = acquireSearcher()) {
+      return search(query, sortField, virtualWikiNames, languages, handle, false, null,
+          context);
     }
   }
 
@@ -230,8 +422,207 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    */
   public SearchResults getSearchResults(String query, String[] sortField, String virtualWikiNames,
       String languages, XWikiContext context) throws IOException, ParseException {
-    try (SearcherProvider searchProvider = getConnectedSearcherProvider()) {
-      return search(query, sortField, virtualWikiNames, languages, searchProvider, false, context);
+    try (SearcherHandle handle = acquireSearcher()) {
+      return search(query, sortField, virtualWikiNames, languages, handle, false, null,
+          context);
+    }
+  }
+
+  /**
+   * Searches all Indexes as described by the request, the single entry point for searches with
+   * an already built query, a time budget, facets, given searchers or cursor paging. Pages of a
+   * cursor search collect only the hits of the page, so deep pages need as little memory as the
+   * first one. The cursor for the following page is provided by
+   * {@link SearchResults#getNextCursor()}, a timed out page has none.
+   *
+   * @throws IllegalArgumentException
+   *           if the cursor is invalid or doesn't match the sort fields
+   * @throws ParseException
+   *           if the query string is invalid
+   */
+  public SearchResults getSearchResults(@NotNull SearchRequest request, XWikiContext context)
+      throws IOException, ParseException {
+    if (request.getHandle().isPresent()) {
+      return search(request, request.getHandle().get(), context);
+    }
+    try (SearcherHandle handle = acquireSearcher()) {
+      return search(request, handle, context);
+    }
+  }
+
+  private SearchResults search(SearchRequest request, SearcherHandle handle,
+      XWikiContext context) throws IOException, ParseException {
+    Query q = request.getQuery().isPresent()
+        ? buildQuery(request.getQuery().get(), request.getVirtualWikiNames(),
+            request.getLanguages())
+        : buildQuery(request.getQueryString().get(), request.getVirtualWikiNames(),
+            request.getLanguages());
+    if (request.getCursor().isPresent()) {
+      return searchAfter(q, request.getSortFields(), handle, request.getCursor().get(),
+          request.getLimit(), request.isSkipChecks(), request.getTimeout(),
+          request.getFacetFields(), context);
+    }
+    return search(q, getSort(request.getSortFields()), handle, request.isSkipChecks(),
+        request.getTimeout(), request.getFacetFields(), context);
+  }
+
+  private SearchResults searchAfter(Query q, String[] sortFields, SearcherHandle handle,
+      String cursor, int limit, boolean skipChecks, Duration timeout,
+      Collection<String> facetFields, XWikiContext context) throws IOException {
+    checkArgument(limit > 0, "limit must be positive");
+    Sort sort = getSort(sortFields);
+    SearchCursor after = Strings.isNullOrEmpty(cursor) ? null
+        : SearchCursor.fromToken(cursor, (sort != null) ? sort.getSort().length : 0);
+    IndexSearcher searcher = handle.getSearcher();
+    int pageSize = Math.min(limit, getResultLimit(skipChecks, context));
+    SearchAfterCollector collector = new SearchAfterCollector(after, sort, pageSize);
+    FacetCollector facetCollector = createFacetCollector(facetFields);
+    boolean timedOut = searchTimeLimited(searcher, q, withFacets(collector, facetCollector),
+        timeout);
+    TopDocs results = collector.topDocs();
+    LOGGER.debug("searchAfter: query [{}] after [{}] returned {} of {} hits", q, after,
+        results.scoreDocs.length, results.totalHits);
+    SearchResults searchResults = new SearchResults(q, results, handle, skipChecks,
+        new XWiki(context.getWiki(), context), context);
+    searchResults.setTimedOut(timedOut);
+    if (facetCollector != null) {
+      searchResults.setFacetCounts(facetCollector.getFacetCounts());
+    }
+    // hits not visited before timing out may precede the last one of the partial page
+    if (!timedOut && (results.scoreDocs.length == pageSize)) {
+      searchResults.setNextCursor(SearchCursor.after(handle.getGeneration(),
+          results.scoreDocs[results.scoreDocs.length - 1]).toToken());
+    }
+    return searchResults;
+  }
+
+  /**
+   * Streams the references of all documents matching the query in index order WITHOUT EXIST AND
+   * ACCESS CHECKS, neither scored nor sorted nor bounded by the result limit. The hits are read
+   * lazily while the stream is consumed, so memory stays constant for any number of hits. Meant
+   * for batch jobs like reindexing, exports or migrations.<br>
+   * <br>
+   * The stream keeps the current searchers open until it is closed, preferably in a
+   * try-with-resource statement. It may be consumed and closed by any thread.
+   *
+   * @param virtualWikiNames
+   *          comma separated list of virtual wiki names, may be <tt>null</tt> for all wikis
+   * @param languages
+   *          comma separated list of language codes, may be <tt>null</tt> for all languages
+   */
+  public Stream<EntityReference> streamReferences(String query, String virtualWikiNames,
+      String languages) throws IOException, ParseException {
+    SearcherHandle handle = acquireSearcher();
+    try {
+      IndexSearcher searcher = handle.getSearcher();
+      Query q = buildQuery(query, virtualWikiNames, languages);
+      LOGGER.debug("streamReferences: for query [{}]", q);
+      Iterator<Document> docs = new MatchingDocIterator(searcher, q,
+          SearchResult.REFERENCE_FIELD_SELECTOR);
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(docs,
+          Spliterator.ORDERED | Spliterator.NONNULL), false)
+          .map(doc -> new SearchResult(doc, 0, null).getReference())
+          .onClose(() -> release(handle));
+    } catch (IOException | ParseException | RuntimeException exc) {
+      handle.release();
+      throw exc;
+    }
+  }
+
+  /**
+   * Counts the documents matching the query WITHOUT EXIST AND ACCESS CHECKS. Hits are only
+   * counted, neither scored nor collected nor bounded by the result limit.
+   *
+   * @param virtualWikiNames
+   *          comma separated list of virtual wiki names, may be <tt>null</tt> for all wikis
+   * @param languages
+   *          comma separated list of language codes, may be <tt>null</tt> for all languages
+   */
+  public int count(String query, String virtualWikiNames, String languages) throws IOException,
+      ParseException {
+    try (SearcherHandle handle = acquireSearcher()) {
+      IndexSearcher searcher = handle.getSearcher();
+      TotalHitCountCollector collector = new TotalHitCountCollector();
+      searcher.search(buildQuery(query, virtualWikiNames, languages), collector);
+      return collector.getTotalHits();
+    }
+  }
+
+  /**
+   * Counts the terms of the documents matching the query WITHOUT EXIST AND ACCESS CHECKS for the
+   * given keyword fields, e.g. {@link IndexFields#DOCUMENT_SPACE_S}, {@link IndexFields#OBJECT} or
+   * tag fields. All fields are counted in a single pass over the hits, replacing a search per
+   * facet value. Each field is loaded once per index segment and kept in memory like a field cache,
+   * so it should only be used for fields with few terms per document.
+   *
+   * @return term counts per field, each ordered by descending count
+   */
+  public Map<String, Map<String, Integer>> getFacetCounts(String query, String virtualWikiNames,
+      String languages, Collection<String> fields) throws IOException, ParseException {
+    try (SearcherHandle handle = acquireSearcher()) {
+      IndexSearcher searcher = handle.getSearcher();
+      FacetCollector collector = new FacetCollector(fields);
+      searcher.search(buildQuery(query, virtualWikiNames, languages), collector);
+      return collector.getFacetCounts();
+    }
+  }
+
+  /**
+   * Checks WITHOUT EXIST AND ACCESS CHECKS if any document matches the query, the search is
+   * terminated at the first hit.
+   *
+   * @see #count(String, String, String)
+   */
+  public boolean exists(String query, String virtualWikiNames, String languages)
+      throws IOException, ParseException {
+    try (SearcherHandle handle = acquireSearcher()) {
+      IndexSearcher searcher = handle.getSearcher();
+      return EarlyTerminatingCollector.search(searcher, buildQuery(query, virtualWikiNames,
+          languages), 1) > 0;
+    }
+  }
+
+  /**
+   * Checks if any existing document viewable by the context user matches the query. The hits are
+   * read in index order and checked in small batches until the first viewable one is found.
+   *
+   * @see #count(String, String, String)
+   */
+  public boolean existsViewable(String query, String virtualWikiNames, String languages,
+      XWikiContext context) throws IOException, ParseException {
+    try (Stream<EntityReference> refs = streamReferences(query, virtualWikiNames, languages)) {
+      SearchResultChecker checker = new SearchResultChecker(new XWiki(context.getWiki(),
+          context));
+      Iterator<List<DocumentReference>> batches = Iterators.partition(refs
+          .map(LucenePlugin::toDocumentReference)
+          .filter(Objects::nonNull)
+          .iterator(), SearchResults.LAZY_BATCH_SIZE);
+      while (batches.hasNext()) {
+        if (!checker.filterViewable(batches.next()).isEmpty()) {
+          return true;
+        }
+      }
+      return false;
+    } catch (UncheckedIOException exc) {
+      throw exc.getCause();
+    }
+  }
+
+  /**
+   * @return the document of a wiki content reference, else null
+   */
+  private static DocumentReference toDocumentReference(EntityReference ref) {
+    if (ref instanceof AttachmentReference) {
+      return ((AttachmentReference) ref).getDocumentReference();
+    }
+    return (ref instanceof DocumentReference) ? (DocumentReference) ref : null;
+  }
+
+  private void release(SearcherHandle handle) {
+    try {
+      handle.release();
+    } catch (IOException ioe) {
+      LOGGER.error("failed to release {}", handle, ioe);
     }
   }
 
@@ -265,8 +656,9 @@ public class LucenePlugin extends XWikiDefaultPlugin {
   public SearchResults getSearchResultsWithoutChecks(String query, String[] sortField,
       String virtualWikiNames, String languages, XWikiContext context) throws IOException,
       ParseException {
-    try (SearcherProvider searchProvider = getConnectedSearcherProvider()) {
-      return search(query, sortField, virtualWikiNames, languages, searchProvider, true, context);
+    try (SearcherHandle handle = acquireSearcher()) {
+      return search(query, sortField, virtualWikiNames, languages, handle, true, null,
+          context);
     }
   }
 
@@ -287,6 +679,8 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *          empty to search all languages.
    * @param skipChecks
    *          skips exists and access checks on documents
+   * @param timeout
+   *          time budget for collecting the hits, null for the configured default
    * @param context
    *          The context of the request.
    * @return The list of search results.
@@ -296,11 +690,11 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *           If the query is not valid.
    */
   private SearchResults search(String query, String sortField, String virtualWikiNames,
-      String languages, SearcherProvider searchProvider, boolean skipChecks,
+      String languages, SearcherHandle handle, boolean skipChecks, Duration timeout,
       XWikiContext context) throws IOException, ParseException {
     SortField sort = getSortField(sortField);
     return search(query, (sort != null) ? new Sort(sort) : null, virtualWikiNames, languages,
-        searchProvider, skipChecks, context);
+        handle, skipChecks, timeout, context);
   }
 
   /**
@@ -320,6 +714,8 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *          empty to search all languages.
    * @param skipChecks
    *          skips exists and access checks on documents
+   * @param timeout
+   *          time budget for collecting the hits, null for the configured default
    * @param context
    *          The context of the request.
    * @return The list of search results.
@@ -329,8 +725,17 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *           If the query is not valid.
    */
   private SearchResults search(String query, String[] sortFields, String virtualWikiNames,
-      String languages, SearcherProvider searchProvider, boolean skipChecks,
+      String languages, SearcherHandle handle, boolean skipChecks, Duration timeout,
       XWikiContext context) throws IOException, ParseException {
+    // Perform the actual search
+    return search(query, getSort(sortFields), virtualWikiNames, languages, handle, skipChecks,
+        timeout, context);
+  }
+
+  /**
+   * @return null to sort by hit score
+   */
+  private Sort getSort(String[] sortFields) {
     // Turn the sorting field names into SortField objects.
     SortField[] sorts = null;
     if ((sortFields != null) && (sortFields.length > 0)) {
@@ -345,10 +750,7 @@ public class LucenePlugin extends XWikiDefaultPlugin {
         sorts = ArrayUtils.removeElement(sorts, null);
       }
     }
-
-    // Perform the actual search
-    return search(query, (sorts != null) ? new Sort(sorts) : null, virtualWikiNames, languages,
-        searchProvider, skipChecks, context);
+    return ((sorts != null) && (sorts.length > 0)) ? new Sort(sorts) : null;
   }
 
   /**
@@ -369,11 +771,11 @@ public class LucenePlugin extends XWikiDefaultPlugin {
         LOGGER.debug("getSortField: is field score");
         sort = SortField.FIELD_SCORE;
       } else {
-        // For the moment assuming everything is a String is enough, since we
-        // don't usually want to sort documents
-        // on numerical object properties.
-        sort = new SortField(StringUtils.removeStart(sortField, "-"), SortField.STRING,
-            sortField.startsWith("-"));
+        // Everything but the trie encoded numeric fields is sorted as String,
+        // dates and numbers are formatted to sort correctly anyway.
+        String field = StringUtils.removeStart(sortField, "-");
+        sort = new SortField(field, IndexFields.isNumericField(field) ? SortField.LONG
+            : SortField.STRING, sortField.startsWith("-"));
       }
     }
 
@@ -397,6 +799,8 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *          empty to search all languages.
    * @param skipChecks
    *          skips exists and access checks on documents
+   * @param timeout
+   *          time budget for collecting the hits, null for the configured default
    * @param context
    *          The context of the request.
    * @return The list of search results.
@@ -406,32 +810,133 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *           If the query is not valid.
    */
   private SearchResults search(String query, Sort sort, String virtualWikiNames, String languages,
-      SearcherProvider searchProvider, boolean skipChecks, XWikiContext context)
+      SearcherHandle handle, boolean skipChecks, Duration timeout, XWikiContext context)
       throws IOException, ParseException {
-    checkNotNull(searchProvider);
-    MultiSearcher searcher = new MultiSearcher(Iterables.toArray(
-        searchProvider.getSearchers(), IndexSearcher.class));
     // Enhance the base query with wiki names and languages.
     LOGGER.debug("build query for [{}]", query);
     Query q = buildQuery(query, virtualWikiNames, languages);
     LOGGER.debug("query is [{}]", q);
-    // Perform the actual search
+    return search(q, sort, handle, skipChecks, timeout, null, context);
+  }
+
+  /**
+   * @param q
+   *          the complete query including wiki names and languages, may not be modified since it
+   *          may be shared
+   * @param facetFields
+   *          counted in the same pass as the hits are collected, bypassing the result cache
+   */
+  private SearchResults search(Query q, Sort sort, SearcherHandle handle, boolean skipChecks,
+      Duration timeout, Collection<String> facetFields, XWikiContext context)
+      throws IOException {
+    IndexSearcher searcher = handle.getSearcher();
+    // Perform the actual search, doc ids are only valid for the same searcher generation
     int resultLimit = getResultLimit(skipChecks, context);
-    TopDocsCollector<? extends ScoreDoc> results;
-    if (sort != null) {
-      results = TopFieldCollector.create(sort, resultLimit, true, true, false, false);
+    List<Object> cacheKey = Arrays.asList(handle.getGeneration(), q, sort, resultLimit,
+        skipChecks);
+    FacetCollector facetCollector = createFacetCollector(facetFields);
+    TopDocs results = (resultCacheEnabled && (facetCollector == null))
+        ? resultCache.getIfPresent(cacheKey)
+        : null;
+    boolean timedOut = false;
+    if (results == null) {
+      if ((facetCollector != null) || (getTimeoutMillis(timeout) > 0)) {
+        TopDocsCollector<?> collector = createTopDocsCollector(sort, resultLimit);
+        timedOut = searchTimeLimited(searcher, q, withFacets(collector, facetCollector), timeout);
+        results = collector.topDocs();
+      } else {
+        results = collect(searcher, q, sort, resultLimit, context);
+      }
+      if (resultCacheEnabled && !timedOut) {
+        resultCache.put(cacheKey, results);
+      }
     } else {
-      results = TopScoreDocCollector.create(resultLimit, false);
+      LOGGER.debug("search: cache hit for query [{}]", q);
     }
-    searcher.search(q, results);
     LOGGER.debug("search: query [{}] returned {} hits on result with hash-id [{}].",
-        q, defer(() -> results.getTotalHits()), defer(() -> System.identityHashCode(results)));
+        q, results.totalHits, System.identityHashCode(results));
     // Transform the raw Lucene search results into XWiki-aware results
-    return new SearchResults(q, results, searcher, searchProvider, skipChecks, new XWiki(
-        context.getWiki(), context), context);
+    SearchResults searchResults = new SearchResults(q, results, handle, skipChecks,
+        new XWiki(context.getWiki(), context), context);
+    searchResults.setTimedOut(timedOut);
+    if (facetCollector != null) {
+      searchResults.setFacetCounts(facetCollector.getFacetCounts());
+    }
+    return searchResults;
+  }
+
+  /**
+   * @return null if no facets are requested
+   */
+  private FacetCollector createFacetCollector(Collection<String> facetFields) {
+    return ((facetFields != null) && !facetFields.isEmpty()) ? new FacetCollector(facetFields)
+        : null;
   }
 
   /**
+   * wraps the hit collector to count the facets in the same pass
+   */
+  private Collector withFacets(Collector collector, FacetCollector facetCollector) {
+    return (facetCollector != null) ? MultiCollector.wrap(collector, facetCollector) : collector;
+  }
+
+  /**
+   * like the collectors of {@link IndexSearcher#search(Query, int)} and
+   * {@link IndexSearcher#search(Query, org.apache.lucene.search.Filter, int, Sort)}
+   */
+  private TopDocsCollector<?> createTopDocsCollector(Sort sort, int resultLimit)
+      throws IOException {
+    if (sort != null) {
+      return TopFieldCollector.create(sort, resultLimit, true, true, false, false);
+    } else {
+      return TopScoreDocCollector.create(resultLimit, false);
+    }
+  }
+
+  /**
+   * Time limited searches aren't run in parallel, since Lucene only parallelizes searches
+   * returning top docs, not ones with a custom collector.
+   *
+   * @return true if the search timed out, the collector holds the hits collected until then
+   */
+  private boolean searchTimeLimited(IndexSearcher searcher, Query query, Collector collector,
+      Duration timeout) throws IOException {
+    long timeoutMillis = getTimeoutMillis(timeout);
+    if (timeoutMillis <= 0) {
+      searcher.search(query, collector);
+      return false;
+    }
+    try {
+      searcher.search(query, new TimeLimitingCollector(collector, timeoutMillis));
+      return false;
+    } catch (TimeLimitingCollector.TimeExceededException exc) {
+      LOGGER.warn("search: query [{}] timed out, returning partial results: {}", query,
+          exc.getMessage());
+      return true;
+    }
+  }
+
+  private long getTimeoutMillis(Duration timeout) {
+    return (timeout != null) ? timeout.toMillis() : searchTimeout;
+  }
+
+  private TopDocs collect(IndexSearcher searcher, Query query, Sort sort, int resultLimit,
+      XWikiContext context) throws IOException {
+    IndexSearcher collectingSearcher = searcher;
+    if ((searchExecutor != null) && (resultLimit > getResultLimit(false, context))) {
+      collectingSearcher = new IndexSearcher(searcher.getIndexReader(), searchExecutor);
+      collectingSearcher.setDefaultFieldSortScoring(true, false);
+    }
+    if (sort != null) {
+      return collectingSearcher.search(query, null, resultLimit, sort);
+    } else {
+      return collectingSearcher.search(query, resultLimit);
+    }
+  }
+
+  /**
+   * Parsed queries are cached, so the returned query is shared and may not be modified.
+   *
    * @param query
    * @param virtualWikiNames
    *          comma separated list of virtual wiki names
@@ -439,11 +944,25 @@ public class LucenePlugin extends XWikiDefaultPlugin {
    *          comma separated list of language codes to search in, may be null to search
    *          all languages
    */
-  private Query buildQuery(String query, String virtualWikiNames, String languages)
+  Query buildQuery(String query, String virtualWikiNames, String languages)
       throws ParseException {
-    // build a query like this: <user query string> AND <wikiNamesQuery> AND
-    // <languageQuery>
-    BooleanQuery bQuery = new BooleanQuery();
+    if (query.startsWith("MULTI ")) {
+      // depends on the fields collected by the index updater meanwhile
+      return parseQuery(query, virtualWikiNames, languages);
+    }
+    List<String> key = Arrays.asList(query, getAnalyzer().getClass().getName(),
+        virtualWikiNames, languages);
+    Query parsedQuery = queryCache.getIfPresent(key);
+    if (parsedQuery == null) {
+      parsedQuery = parseQuery(query, virtualWikiNames, languages);
+      queryCache.put(key, parsedQuery);
+    }
+    return parsedQuery;
+  }
+
+  private Query parseQuery(String query, String virtualWikiNames, String languages)
+      throws ParseException {
+    // the user query string restricted by a filter on wiki names and languages
     Query parsedQuery = null;
 
     LOGGER.debug("buildQuery for [{}] with languages [{}]", query, languages);
@@ -454,12 +973,15 @@ public class LucenePlugin extends XWikiDefaultPlugin {
       query = query.substring(query.indexOf(":") + 1, query.length());
       QueryParser qp = new QueryParser(VERSION, property, getAnalyzer());
       parsedQuery = qp.parse(query);
-      bQuery.add(parsedQuery, BooleanClause.Occur.MUST);
     } else if (query.startsWith("MULTI ")) {
       // for fulltext search
       // XXX several problems in Multi search:
       // XXX 1. prefix "MULTI " not removed
       // XXX 2. IndexUpdater.fields after restart empty
+      if (isReplica()) {
+        throw new ParseException("MULTI queries not supported on a replica, the fields are "
+            + "collected while indexing on the primary");
+      }
       Set<String> collectedFields = indexUpdater.getCollectedFields();
       String[] fields = collectedFields.toArray(new String[collectedFields.size()]);
       BooleanClause.Occur[] flags = new BooleanClause.Occur[fields.length];
@@ -467,17 +989,15 @@ public class LucenePlugin extends XWikiDefaultPlugin {
         flags[i] = BooleanClause.Occur.SHOULD;
       }
       parsedQuery = MultiFieldQueryParser.parse(VERSION, query, fields, flags, getAnalyzer());
-      bQuery.add(parsedQuery, BooleanClause.Occur.MUST);
     } else {
-      String[] fields = new String[] { IndexFields.FULLTEXT, IndexFields.DOCUMENT_TITLE,
-          IndexFields.DOCUMENT_NAME, IndexFields.FILENAME };
+      String[] fields = DEFAULT_SEARCH_FIELDS.toArray(new String[DEFAULT_SEARCH_FIELDS.size()]);
       BooleanClause.Occur[] flags = new BooleanClause.Occur[fields.length];
       for (int i = 0; i < flags.length; i++) {
         flags[i] = BooleanClause.Occur.SHOULD;
       }
       LOGGER.debug("init MultiFieldQueryParser with [{}] and analyzer {}", Arrays.toString(fields),
           getAnalyzer().getClass());
-      QueryParser parser = new MultiFieldQueryParser(VERSION, fields, getAnalyzer());
+      QueryParser parser = new NumericQueryParser(VERSION, fields, getAnalyzer());
       parsedQuery = parser.parse(query);
       // Since the sub-queries are OR-ed, each sub-query score is normally
       // divided by the number of sub-queries,
@@ -486,19 +1006,49 @@ public class LucenePlugin extends XWikiDefaultPlugin {
       // compensate this by boosting the whole outer query
       LOGGER.debug("parsed query {}", parsedQuery.toString());
       parsedQuery.setBoost(fields.length);
-      bQuery.add(parsedQuery, BooleanClause.Occur.MUST);
     }
+    return buildQuery(parsedQuery, virtualWikiNames, languages);
+  }
 
+  /**
+   * restricts an already built query like {@link #buildQuery} does with a parsed one, the given
+   * query isn't modified
+   */
+  Query buildQuery(Query query, String virtualWikiNames, String languages) {
+    BooleanQuery constraints = new BooleanQuery();
     if ((virtualWikiNames != null) && (virtualWikiNames.length() > 0)) {
-      bQuery.add(buildOredTermQuery(virtualWikiNames, IndexFields.DOCUMENT_WIKI),
+      constraints.add(buildOredTermQuery(virtualWikiNames, IndexFields.DOCUMENT_WIKI),
           BooleanClause.Occur.MUST);
     }
     if ((languages != null) && (languages.length() > 0)) {
-      bQuery.add(buildOredTermQuery(languages, IndexFields.DOCUMENT_LANGUAGE),
+      constraints.add(buildOredTermQuery(languages, IndexFields.DOCUMENT_LANGUAGE),
           BooleanClause.Occur.MUST);
     }
+    if (constraints.clauses().isEmpty()) {
+      return query;
+    }
+    // wiki names and languages repeat across most queries and don't need scoring
+    return new FilteredQuery(query, getCachedFilter(constraints));
+  }
 
-    return bQuery;
+  /**
+   * Non-scoring filter matching the same documents as the query. The matching doc ids are cached
+   * per index segment and reused until the segment changes, so it should be used for constraints
+   * repeating across many searches like wikis, languages or document types.
+   *
+   * @param query
+   *          may not be modified afterwards since it is the cache key
+   * @return the same filter instance for equal queries while cached
+   */
+  public Filter getCachedFilter(Query query) {
+    try {
+      // deletions of reopened segments are applied on top of the cached doc ids, else the
+      // filter returns deleted documents if it isn't combined with a query excluding them
+      return filterCache.get(query, () -> new CachingWrapperFilter(new QueryWrapperFilter(
+          query), DeletesMode.DYNAMIC));
+    } catch (ExecutionException exc) {
+      throw new IllegalStateException("failed creating filter for " + query, exc.getCause());
+    }
   }
 
   /**
@@ -544,12 +1094,31 @@ public class LucenePlugin extends XWikiDefaultPlugin {
   public synchronized void init(XWikiContext context) {
     LOGGER.debug("Lucene plugin: in init");
     super.init(getContext());
+    registerShutdownHook();
     try {
       indexDirs = getIndexDirectories("");
+      queryCache = createQueryCache(getContext().getWiki().ParamAsLong(PROP_QUERY_CACHE_SIZE,
+          DEFAULT_QUERY_CACHE_SIZE));
+      filterCache = createFilterCache(getContext().getWiki().ParamAsLong(
+          PROP_FILTER_CACHE_SIZE, DEFAULT_FILTER_CACHE_SIZE));
+      long resultCacheSize = getContext().getWiki().ParamAsLong(PROP_RESULT_CACHE_SIZE, 0);
+      resultCache = createResultCache(resultCacheSize);
+      resultCacheEnabled = (resultCacheSize > 0);
+      searchTimeout = getContext().getWiki().ParamAsLong(PROP_SEARCH_TIMEOUT, 0);
+      initWarming();
+      initSearchExecutor();
+      replication = createReplication();
+      if (replication.filter(IndexReplication::isReplica).isPresent()) {
+        initReplica();
+        return;
+      }
+      Optional<Instant> restoredUntil = restoreIndexBackup();
       IndexWriter writer = openWriter(getWriteDirectory(), OpenMode.CREATE_OR_APPEND);
       this.indexUpdater = new IndexUpdater(writer, this);
       indexUpdaterExecutor.submit(indexUpdater);
       getIndexRebuildService().initialize(indexUpdater);
+      checkIndexSchema(indexUpdater.getSchema());
+      restoredUntil.ifPresent(this::reindexChangedSince);
       LOGGER.info("Lucene plugin initialized.");
     } catch (IOException exc) {
       LOGGER.error("Failed to open the index directory: ", exc);
@@ -557,6 +1126,240 @@ public class LucenePlugin extends XWikiDefaultPlugin {
     }
   }
 
+  private void initWarming() {
+    List<Query> queries = new ArrayList<>();
+    for (String query : Splitter.on(';').trimResults().omitEmptyStrings().split(
+        getContext().getWiki().Param(PROP_WARM_QUERIES, ""))) {
+      try {
+        queries.add(buildQuery(query, null, null));
+      } catch (ParseException exc) {
+        LOGGER.error("initWarming: invalid query [{}]", query, exc);
+      }
+    }
+    warmQueries = ImmutableList.copyOf(queries);
+    warmSorts = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(
+        getContext().getWiki().Param(PROP_WARM_SORTS, "")).stream()
+        .map(this::getSortField)
+        .map(Sort::new)
+        .collect(ImmutableList.toImmutableList());
+    LOGGER.info("initWarming: {} queries, {} sorts", warmQueries.size(), warmSorts.size());
+  }
+
+  private static Cache<List<String>, Query> createQueryCache(long size) {
+    return CacheBuilder.newBuilder().maximumSize(Math.max(size, 0)).recordStats().build();
+  }
+
+  /**
+   * @return hit rate and evictions of the parsed query cache, see {@link #PROP_QUERY_CACHE_SIZE}
+   */
+  public CacheStats getQueryCacheStats() {
+    return queryCache.stats();
+  }
+
+  private static Cache<Query, Filter> createFilterCache(long size) {
+    return CacheBuilder.newBuilder().maximumSize(Math.max(size, 0)).recordStats().build();
+  }
+
+  /**
+   * @return hit rate and evictions of the filter cache, see {@link #PROP_FILTER_CACHE_SIZE}
+   */
+  public CacheStats getFilterCacheStats() {
+    return filterCache.stats();
+  }
+
+  private static Cache<List<Object>, TopDocs> createResultCache(long size) {
+    return CacheBuilder.newBuilder().maximumWeight(Math.max(size, 0))
+        .weigher((List<Object> key, TopDocs docs) -> docs.scoreDocs.length + 1)
+        .recordStats().build();
+  }
+
+  /**
+   * @return hit rate and evictions of the result cache, see {@link #PROP_RESULT_CACHE_SIZE}
+   */
+  public CacheStats getResultCacheStats() {
+    return resultCache.stats();
+  }
+
+  private void initSearchExecutor() {
+    int threads = (int) getContext().getWiki().ParamAsLong(PROP_SEARCH_THREADS, 0);
+    if (threads < 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    if ((threads > 0) && (searchExecutor == null)) {
+      searchExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+          .setNameFormat("LuceneSearch-%d").setDaemon(true).build());
+      LOGGER.info("initSearchExecutor: {} threads", threads);
+    }
+  }
+
+  private Optional<IndexReplication> createReplication() throws IOException {
+    IndexReplication.Role role = IndexReplication.Role.parse(getContext().getWiki().Param(
+        IndexReplication.PROP_ROLE, ""));
+    String sharedDir = getContext().getWiki().Param(IndexReplication.PROP_DIR, "").trim();
+    if ((role == null) || sharedDir.isEmpty()) {
+      return Optional.empty();
+    }
+    File file = new File(sharedDir);
+    file.mkdirs();
+    LOGGER.info("index replication as {} via [{}]", role, sharedDir);
+    return Optional.of(new IndexReplication(role, FSDirectory.open(file)));
+  }
+
+  /**
+   * Replicas never write the index themselves, they only receive the commits of the primary. The
+   * write directory receives the commits and is searched as usual.
+   */
+  private void initReplica() {
+    long pollInterval = getContext().getWiki().ParamAsLong(IndexReplication.PROP_POLL_INTERVAL,
+        10);
+    replicaPoller = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("IndexReplica-%d").setDaemon(true).build());
+    replicaPoller.scheduleWithFixedDelay(this::pullReplica, 0, pollInterval, TimeUnit.SECONDS);
+    LOGGER.info("Lucene plugin initialized as replica.");
+  }
+
+  private void pullReplica() {
+    try {
+      if (replication.get().pull(getWriteDirectory())) {
+        closeSearcherProvider();
+      }
+    } catch (Exception exc) {
+      // never throw, it would cancel further polls
+      LOGGER.warn("pullReplica: failed, retrying with next poll", exc);
+    }
+  }
+
+  Optional<IndexReplication> getReplication() {
+    return replication;
+  }
+
+  public boolean isReplica() {
+    return replication.filter(IndexReplication::isReplica).isPresent();
+  }
+
+  /**
+   * Copies the backup configured with {@link #PROP_RESTORE_DIR} into the write directory if the
+   * latter doesn't contain any documents yet.
+   *
+   * @return the time up to which all changes are contained in the restored backup
+   */
+  private Optional<Instant> restoreIndexBackup() throws IOException {
+    String restoreDir = getContext().getWiki().Param(PROP_RESTORE_DIR, "").trim();
+    if (restoreDir.isEmpty()) {
+      return Optional.empty();
+    }
+    Directory writeDir = getWriteDirectory();
+    try (IndexReader reader = IndexReader.open(writeDir, true)) {
+      if (reader.maxDoc() > 0) {
+        LOGGER.info("restoreIndexBackup: skipped, index not empty");
+        return Optional.empty();
+      }
+    }
+    try (Directory backupDir = FSDirectory.open(new File(restoreDir))) {
+      if (!IndexReader.indexExists(backupDir)) {
+        LOGGER.error("restoreIndexBackup: no index found in [{}]", restoreDir);
+        return Optional.empty();
+      }
+      List<IndexCommit> commits = IndexReader.listCommits(backupDir);
+      IndexCommit commit = commits.get(commits.size() - 1);
+      for (String fileName : writeDir.listAll()) {
+        writeDir.deleteFile(fileName);
+      }
+      for (String fileName : commit.getFileNames()) {
+        backupDir.copy(writeDir, fileName, fileName);
+      }
+      writeDir.sync(commit.getFileNames());
+      Instant indexedUntil = IndexUpdater.getIndexedUntil(commit)
+          .orElseGet(() -> Instant.ofEpochMilli(new File(restoreDir).lastModified()));
+      LOGGER.info("restoreIndexBackup: restored [{}] complete until {}", restoreDir,
+          indexedUntil);
+      return Optional.of(indexedUntil);
+    }
+  }
+
+  /**
+   * queues incremental rebuilds of all wikis, reindexing the documents changed since the given
+   * time and removing the deleted ones
+   */
+  private void reindexChangedSince(Instant indexedUntil) {
+    Instant changedSince = indexedUntil.minus(RESTORE_REPLAY_MARGIN);
+    try {
+      Utils.getComponent(ModelUtils.class).getAllWikis().forEach(
+          wikiRef -> getIndexRebuildService().startIndexRebuild(wikiRef, changedSince));
+    } catch (Exception exc) {
+      LOGGER.error("reindexChangedSince: failed for {}, rebuild required", changedSince, exc);
+    }
+  }
+
+  /**
+   * Compares the schema the last commit has been written with to the configured one. Documents
+   * written with another schema remain searchable, they only keep their stored fields until
+   * reindexed. The full rebuild doing so is only started if {@link IndexSchema#PROP_MIGRATE} is
+   * set, since it loads every document.
+   */
+  private void checkIndexSchema(IndexSchema schema) throws IOException {
+    List<IndexCommit> commits = IndexReader.listCommits(getWriteDirectory());
+    String committedSchema = IndexUpdater.getSchemaName(commits.get(commits.size() - 1))
+        .orElse(IndexSchema.FULL);
+    if (committedSchema.equals(schema.getName()) || (getLuceneDocCount() <= 0)) {
+      return;
+    }
+    XWikiConfigSource cfg = Utils.getComponent(XWikiConfigSource.class);
+    if (Boolean.parseBoolean(cfg.getProperty(IndexSchema.PROP_MIGRATE))) {
+      LOGGER.info("checkIndexSchema: migrating from [{}] to {}", committedSchema, schema);
+      try {
+        Utils.getComponent(ModelUtils.class).getAllWikis().forEach(
+            wikiRef -> getIndexRebuildService().startIndexRebuild(wikiRef));
+      } catch (Exception exc) {
+        LOGGER.error("checkIndexSchema: failed to start migration, rebuild required", exc);
+      }
+    } else {
+      LOGGER.warn("checkIndexSchema: index written with [{}] instead of {}, rebuild the index "
+          + "or set [{}] to migrate", committedSchema, schema, IndexSchema.PROP_MIGRATE);
+    }
+  }
+
+  /**
+   * Copies a consistent commit point of the write directory into the empty target directory
+   * without interrupting indexing. It can be restored on another node with
+   * {@link #PROP_RESTORE_DIR}.
+   *
+   * @return the time up to which all changes are contained in the backup
+   */
+  public Instant backupIndex(@NotNull File targetDir) throws IOException {
+    checkState(!isReplica(), "no backup on a replica, back up the primary");
+    checkState(indexUpdater != null, "no index writer on this node");
+    targetDir.mkdirs();
+    try (Directory target = FSDirectory.open(targetDir)) {
+      return indexUpdater.backupIndex(target);
+    }
+  }
+
+  /**
+   * Estimates the stored field sizes of the searched indexes and projects them to the lean
+   * {@link IndexSchema}, helping to decide whether switching is worth a rebuild.
+   *
+   * @param sampleSize
+   *          maximum number of documents loaded per index directory
+   */
+  public IndexSizeReport getIndexSizeReport(int sampleSize) throws IOException {
+    List<IndexCommit> commits = IndexReader.listCommits(getWriteDirectory());
+    String schemaName = IndexUpdater.getSchemaName(commits.get(commits.size() - 1))
+        .orElse(IndexSchema.FULL);
+    long indexBytes = 0;
+    for (Directory dir : indexDirs) {
+      for (String fileName : dir.listAll()) {
+        indexBytes += dir.fileLength(fileName);
+      }
+    }
+    IndexSchema schema = IndexSchema.fromConfig(Utils.getComponent(XWikiConfigSource.class));
+    try (SearcherHandle handle = acquireSearcher()) {
+      return IndexSizeReport.create(handle.getProvider().getSearchers().stream()
+          .map(IndexSearcher::getIndexReader)
+          .collect(Collectors.toList()), schemaName, indexBytes, schema.toLean(), sampleSize);
+    }
+  }
+
   private List<Directory> getIndexDirectories(String indexDirs) throws IOException {
     List<Directory> ret = new ArrayList<>();
     if (Strings.isNullOrEmpty(indexDirs)) {
@@ -585,6 +1388,8 @@ public class LucenePlugin extends XWikiDefaultPlugin {
     while (ret == null) {
       try {
         IndexWriterConfig cfg = new IndexWriterConfig(LucenePlugin.VERSION, getAnalyzer());
+        cfg.setIndexDeletionPolicy(new SnapshotDeletionPolicy(
+            new KeepOnlyLastCommitDeletionPolicy()));
         cfg.setRAMBufferSizeMB(getContext().getWiki().ParamAsLong(PROP_WRITER_BUFFER_SIZE,
             (long) IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB));
         if (openMode != null) {
@@ -625,41 +1430,117 @@ public class LucenePlugin extends XWikiDefaultPlugin {
   }
 
   /**
-   * Creates an array of Searchers for a number of lucene indexes.
+   * Creates a single searcher over a number of lucene indexes, combined by a {@link MultiReader}.
    *
-   * @return Array of searchers
+   * @return singleton list of the searcher
    * @throws IOException
    */
   private List<IndexSearcher> createSearchers(List<Directory> indexDirs) throws IOException {
-    List<IndexSearcher> ret = new ArrayList<>();
-    for (Directory dir : indexDirs) {
-      ret.add(new IndexSearcher(dir, true));
+    List<IndexReader> readers = new ArrayList<>();
+    try {
+      for (Directory dir : indexDirs) {
+        readers.add(IndexReader.open(dir, true));
+      }
+    } catch (IOException | RuntimeException exc) {
+      for (IndexReader reader : readers) {
+        reader.close();
+      }
+      throw exc;
     }
-    return ret;
+    IndexReader reader = (readers.size() == 1) ? readers.get(0)
+        : new MultiReader(readers.toArray(new IndexReader[readers.size()]), true);
+    return ImmutableList.of(new ReaderClosingIndexSearcher(reader));
   }
 
   /**
-   * closed the current searcher (called after index commit)
+   * replaces the current searcher provider (called after index commit). If warming is configured,
+   * the new searchers are reopened from the current ones, sharing the unchanged segments and their
+   * field caches, and warmed before they are published. Meanwhile searches continue on the current
+   * provider. Otherwise the new provider is created by the next search.
    *
    * @throws IOException
    */
-  protected synchronized void closeSearcherProvider() throws IOException {
+  protected void closeSearcherProvider() throws IOException {
+    SearcherProvider warmedProvider = null;
+    if (!warmQueries.isEmpty() || !warmSorts.isEmpty()) {
+      try {
+        warmedProvider = getSearcherProviderManager().createWarmedSearchProvider(
+            reopenSearchers(), warmQueries, warmSorts);
+      } catch (IOException | RuntimeException exc) {
+        LOGGER.error("closeSearcherProvider: failed to warm new searchers", exc);
+      }
+    }
+    replaceSearcherProvider(warmedProvider);
+  }
+
+  private synchronized void replaceSearcherProvider(SearcherProvider newProvider)
+      throws IOException {
     if (searcherProvider != null) {
-      searcherProvider.disconnect();
       searcherProvider.markToClose();
-      searcherProvider = null;
+    }
+    searcherProvider = newProvider;
+    // cached doc ids are outdated, entries of searches still running become unreachable
+    if (resultCacheEnabled) {
+      resultCache.invalidateAll();
+    }
+  }
+
+  private List<IndexSearcher> reopenSearchers() throws IOException {
+    SearcherHandle handle;
+    synchronized (this) {
+      if (searcherProvider == null) {
+        return createSearchers(indexDirs);
+      }
+      handle = searcherProvider.acquire();
+    }
+    // the current readers remain open while reopening, the reopened ones hold their own
+    // references on the shared segments
+    try (SearcherHandle current = handle) {
+      List<IndexSearcher> ret = new ArrayList<>();
+      for (IndexSearcher searcher : current.getProvider().getSearchers()) {
+        IndexReader reader = searcher.getIndexReader();
+        IndexReader reopened = reader.reopen();
+        if (reopened == reader) {
+          reopened = (IndexReader) reader.clone();
+        }
+        ret.add(new ReaderClosingIndexSearcher(reopened));
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * closes its reader, which unlike {@link IndexSearcher#IndexSearcher(Directory, boolean)}
+   * {@link IndexSearcher#IndexSearcher(IndexReader)} doesn't. Tracks document scores for sorted
+   * searches like a {@link TopFieldCollector} created with <tt>trackDocScores</tt>.
+   */
+  private static class ReaderClosingIndexSearcher extends IndexSearcher {
+
+    ReaderClosingIndexSearcher(IndexReader reader) {
+      super(reader);
+      setDefaultFieldSortScoring(true, false);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        getIndexReader().close();
+      }
     }
   }
 
   /**
-   * IMPORTANT: only use in try-with-resource statement
+   * Acquires the current searchers, e.g. to run several searches against the same index state.
+   * IMPORTANT: the handle has to be released, preferably in a try-with-resource statement
    */
-  private synchronized SearcherProvider getConnectedSearcherProvider() throws IOException {
+  public synchronized SearcherHandle acquireSearcher() throws IOException {
     if (searcherProvider == null) {
       searcherProvider = getSearcherProviderManager()
           .createSearchProvider(createSearchers(indexDirs));
     }
-    return searcherProvider.connect();
+    return searcherProvider.acquire();
   }
 
   public Directory getWriteDirectory() {
@@ -667,26 +1548,47 @@ public class LucenePlugin extends XWikiDefaultPlugin {
   }
 
   public long getQueueSize() {
-    return this.indexUpdater.getQueueSize();
+    return isReplica() ? 0 : this.indexUpdater.getQueueSize();
   }
 
   public long getQueueSize(@NotNull IndexQueuePriority priority) {
-    return this.indexUpdater.getQueueSize(priority);
+    return isReplica() ? 0 : this.indexUpdater.getQueueSize(priority);
   }
 
+  /**
+   * queues the data for indexing, ignored on replicas since the primary indexes all changes
+   */
   public void queue(@NotNull AbstractIndexData data) {
-    this.indexUpdater.queue(data);
+    if (isReplica()) {
+      LOGGER.trace("queue: skipped on replica '{}'", data);
+    } else {
+      this.indexUpdater.queue(data);
+    }
   }
 
   /**
    * @return the number of documents Lucene index writer.
    */
   public long getLuceneDocCount() {
+    if (isReplica()) {
+      try (SearcherHandle handle = acquireSearcher()) {
+        return handle.getProvider().getSearchers().stream()
+            .mapToLong(searcher -> searcher.getIndexReader().numDocs())
+            .sum();
+      } catch (IOException exc) {
+        LOGGER.error("Failed to get the number of documents in replica", exc);
+        return -1;
+      }
+    }
     return this.indexUpdater.getLuceneDocCount();
   }
 
   public void optimizeIndex() {
-    indexUpdater.doOptimize();
+    if (isReplica()) {
+      LOGGER.warn("optimizeIndex: skipped on replica, the primary optimizes");
+    } else {
+      indexUpdater.doOptimize();
+    }
   }
 
   public Analyzer getAnalyzer() {
@@ -24,6 +24,7 @@ import java.util.Collection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheStats;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.api.Context;
 import com.xpn.xwiki.plugin.PluginApi;
@@ -125,6 +126,32 @@ public class LucenePluginApi extends PluginApi<LucenePlugin> {
     }
   }
 
+  /**
+   * @return hit rate and evictions of the parsed query cache
+   */
+  public CacheStats getQueryCacheStats() {
+    try {
+      return getProtectedPlugin().getQueryCacheStats();
+    } catch (Exception e) {
+      LOGGER.error("Failed to get the query cache stats", e);
+
+      return null;
+    }
+  }
+
+  /**
+   * @return hit rate and evictions of the search result cache
+   */
+  public CacheStats getResultCacheStats() {
+    try {
+      return getProtectedPlugin().getResultCacheStats();
+    } catch (Exception e) {
+      LOGGER.error("Failed to get the result cache stats", e);
+
+      return null;
+    }
+  }
+
   /**
    * Searches the named indexes using the given query for documents in the given languages
    *
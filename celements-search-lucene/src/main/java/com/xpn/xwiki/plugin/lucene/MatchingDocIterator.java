@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ReaderUtil;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Iterates the documents matching a query in index order, segment by segment. The query's scorer
+ * is only advanced on demand and nothing is scored, sorted or collected, so memory stays constant
+ * regardless of the number of hits. Deleted documents are skipped by the scorers.
+ */
+final class MatchingDocIterator extends AbstractIterator<Document> {
+
+  private final Weight weight;
+  private final FieldSelector fieldSelector;
+  private final Iterator<IndexReader> segments;
+  private IndexReader segment;
+  private Scorer scorer;
+
+  MatchingDocIterator(IndexSearcher searcher, Query query, FieldSelector fieldSelector)
+      throws IOException {
+    this.weight = searcher.createNormalizedWeight(query);
+    this.fieldSelector = fieldSelector;
+    List<IndexReader> subReaders = new ArrayList<>();
+    ReaderUtil.gatherSubReaders(subReaders, searcher.getIndexReader());
+    this.segments = subReaders.iterator();
+  }
+
+  @Override
+  protected Document computeNext() {
+    try {
+      int doc = nextDoc();
+      if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+        return endOfData();
+      }
+      return segment.document(doc, fieldSelector);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private int nextDoc() throws IOException {
+    int doc = (scorer != null) ? scorer.nextDoc() : DocIdSetIterator.NO_MORE_DOCS;
+    while ((doc == DocIdSetIterator.NO_MORE_DOCS) && segments.hasNext()) {
+      segment = segments.next();
+      // in order and not as top scorer, BooleanScorer doesn't support nextDoc
+      scorer = weight.scorer(segment, true, false);
+      doc = (scorer != null) ? scorer.nextDoc() : DocIdSetIterator.NO_MORE_DOCS;
+    }
+    return doc;
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryParser.MultiFieldQueryParser;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Version;
+
+import com.google.common.primitives.Longs;
+
+/**
+ * Creates {@link NumericRangeQuery}s for fields suffixed with {@link IndexFields#SUFFIX_NUMERIC},
+ * e.g. <tt>date_n:[202001010000 TO *]</tt>. A range walks only a few trie terms instead of every
+ * term in range. A <tt>*</tt> bound is open, any other bound has to be a number.
+ */
+public class NumericQueryParser extends MultiFieldQueryParser {
+
+  public NumericQueryParser(Version matchVersion, String[] fields, Analyzer analyzer) {
+    super(matchVersion, fields, analyzer);
+  }
+
+  @Override
+  protected Query getRangeQuery(String field, String part1, String part2, boolean inclusive)
+      throws ParseException {
+    if ((field != null) && IndexFields.isNumericField(field)) {
+      return NumericRangeQuery.newLongRange(field, IndexFields.NUMERIC_PRECISION_STEP,
+          parseBound(field, part1), parseBound(field, part2), inclusive, inclusive);
+    }
+    return super.getRangeQuery(field, part1, part2, inclusive);
+  }
+
+  private static Long parseBound(String field, String bound) throws ParseException {
+    if ("*".equals(bound.trim())) {
+      return null;
+    }
+    Long value = Longs.tryParse(bound.trim());
+    if (value == null) {
+      throw new ParseException("not a number bound for field [" + field + "]: " + bound);
+    }
+    return value;
+  }
+
+  @Override
+  protected Query getFieldQuery(String field, String queryText, boolean quoted)
+      throws ParseException {
+    if ((field != null) && IndexFields.isNumericField(field)) {
+      Long value = Longs.tryParse(queryText.trim());
+      if (value == null) {
+        throw new ParseException("not a number for field [" + field + "]: " + queryText);
+      }
+      return NumericRangeQuery.newLongRange(field, IndexFields.NUMERIC_PRECISION_STEP, value,
+          value, true, true);
+    }
+    return super.getFieldQuery(field, queryText, quoted);
+  }
+
+}
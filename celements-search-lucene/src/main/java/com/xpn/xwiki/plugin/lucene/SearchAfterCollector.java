@@ -0,0 +1,171 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.ScoreCachingWrappingScorer;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+
+/**
+ * Collects only the top hits sorting after a {@link SearchCursor}, so a page needs memory for its
+ * own hits only, however deep it is. Lucene 3.4 lacks <tt>IndexSearcher.searchAfter</tt>, hence
+ * hits are compared to the cursor on the same field caches the sort itself loads. Supports sorting
+ * by score and by {@link SortField#STRING} and {@link SortField#LONG} fields, like
+ * {@link LucenePlugin} creates them.
+ */
+class SearchAfterCollector extends Collector {
+
+  private final SearchCursor after;
+
+  private final SortField[] sortFields;
+
+  private final TopDocsCollector<?> delegate;
+
+  private Scorer scorer;
+
+  private int docBase;
+
+  private Object[] fieldCaches;
+
+  private int totalHits;
+
+  /**
+   * @param after
+   *          may be null to collect the first page
+   * @param sort
+   *          may be null to sort by score
+   */
+  SearchAfterCollector(SearchCursor after, Sort sort, int numHits) throws IOException {
+    this.after = after;
+    if (sort != null) {
+      this.sortFields = sort.getSort();
+      for (SortField field : sortFields) {
+        checkArgument((field.getType() == SortField.SCORE) || (field.getType() == SortField.STRING)
+            || (field.getType() == SortField.LONG), "unsupported sort field: %s", field);
+      }
+      checkArgument((after == null) || (after.getValueCount() == sortFields.length),
+          "cursor doesn't match sort %s", sort);
+      this.delegate = TopFieldCollector.create(sort, numHits, true, true, false, true);
+    } else {
+      checkArgument((after == null) || !after.isSorted(), "cursor of sorted search");
+      this.sortFields = null;
+      this.delegate = TopScoreDocCollector.create(numHits, true);
+    }
+  }
+
+  @Override
+  public void setScorer(Scorer scorer) throws IOException {
+    this.scorer = new ScoreCachingWrappingScorer(scorer);
+    delegate.setScorer(this.scorer);
+  }
+
+  @Override
+  public void setNextReader(IndexReader reader, int docBase) throws IOException {
+    this.docBase = docBase;
+    delegate.setNextReader(reader, docBase);
+    if ((after != null) && (sortFields != null)) {
+      fieldCaches = new Object[sortFields.length];
+      for (int i = 0; i < sortFields.length; i++) {
+        if (sortFields[i].getType() == SortField.STRING) {
+          fieldCaches[i] = FieldCache.DEFAULT.getStringIndex(reader, sortFields[i].getField());
+        } else if (sortFields[i].getType() == SortField.LONG) {
+          fieldCaches[i] = FieldCache.DEFAULT.getLongs(reader, sortFields[i].getField());
+        }
+      }
+    }
+  }
+
+  @Override
+  public void collect(int doc) throws IOException {
+    totalHits++;
+    if ((after == null) || (compareToCursor(doc) > 0)) {
+      delegate.collect(doc);
+    }
+  }
+
+  /**
+   * @return positive if the doc sorts after the cursor
+   */
+  private int compareToCursor(int doc) throws IOException {
+    int cmp = 0;
+    if (sortFields == null) {
+      cmp = Float.compare(after.getScore(), scorer.score());
+    }
+    for (int i = 0; (sortFields != null) && (i < sortFields.length) && (cmp == 0); i++) {
+      cmp = compareField(i, doc);
+    }
+    return (cmp != 0) ? cmp : Integer.compare(docBase + doc, after.getDoc());
+  }
+
+  private int compareField(int i, int doc) throws IOException {
+    int cmp;
+    switch (sortFields[i].getType()) {
+      case SortField.SCORE:
+        // descending by default
+        cmp = Float.compare((Float) after.getValue(i), scorer.score());
+        break;
+      case SortField.STRING:
+        FieldCache.StringIndex index = (FieldCache.StringIndex) fieldCaches[i];
+        cmp = compareNullsFirst(index.lookup[index.order[doc]], (String) after.getValue(i));
+        break;
+      default:
+        Long afterValue = (Long) after.getValue(i);
+        cmp = (afterValue != null) ? Long.compare(((long[]) fieldCaches[i])[doc], afterValue) : 1;
+    }
+    return sortFields[i].getReverse() ? -cmp : cmp;
+  }
+
+  private static int compareNullsFirst(String value, String afterValue) {
+    if ((value == null) || (afterValue == null)) {
+      return (value == afterValue) ? 0 : ((value == null) ? -1 : 1);
+    }
+    return value.compareTo(afterValue);
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return false;
+  }
+
+  /**
+   * @return the hits after the cursor, with the total number of hits matching the query
+   */
+  @NotNull
+  TopDocs topDocs() {
+    TopDocs docs = delegate.topDocs();
+    docs.totalHits = totalHits;
+    return docs;
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+
+import com.google.common.base.Strings;
+
+/**
+ * Position after the last hit of a page, to collect only the hits of the following page. Holds
+ * the sort values and global doc id of that hit and is passed to clients as an opaque token.
+ * Doc ids only break ties within the searcher generation the cursor was created with.
+ */
+public final class SearchCursor {
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte LONG = 2;
+  private static final byte FLOAT = 3;
+
+  private final long generation;
+  private final int doc;
+  private final float score;
+  private final Object[] values;
+
+  SearchCursor(long generation, int doc, float score, Object[] values) {
+    this.generation = generation;
+    this.doc = doc;
+    this.score = score;
+    this.values = (values != null) ? values.clone() : null;
+  }
+
+  /**
+   * @param last
+   *          the last hit of a page, a {@link FieldDoc} with filled fields for sorted searches
+   */
+  @NotNull
+  static SearchCursor after(long generation, @NotNull ScoreDoc last) {
+    Object[] values = (last instanceof FieldDoc) ? ((FieldDoc) last).fields : null;
+    return new SearchCursor(generation, last.doc, last.score, values);
+  }
+
+  public long getGeneration() {
+    return generation;
+  }
+
+  public int getDoc() {
+    return doc;
+  }
+
+  public float getScore() {
+    return score;
+  }
+
+  public boolean isSorted() {
+    return values != null;
+  }
+
+  /**
+   * @return the sort value of the given sort field, a String, Long or Float
+   */
+  public Object getValue(int index) {
+    checkState(isSorted(), "cursor of unsorted search");
+    return values[index];
+  }
+
+  public int getValueCount() {
+    return isSorted() ? values.length : 0;
+  }
+
+  @NotNull
+  public String toToken() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeLong(generation);
+      out.writeInt(doc);
+      out.writeFloat(score);
+      out.writeInt(isSorted() ? values.length : -1);
+      for (int i = 0; i < getValueCount(); i++) {
+        writeValue(out, values[i]);
+      }
+    } catch (IOException exc) {
+      throw new IllegalStateException("writing to memory failed", exc);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      byte[] utf8 = ((String) value).getBytes(UTF_8);
+      out.writeByte(STRING);
+      out.writeInt(utf8.length);
+      out.write(utf8);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else {
+      throw new IllegalArgumentException("unsupported sort value: " + value.getClass());
+    }
+  }
+
+  /**
+   * @param maxValueCount
+   *          the number of sort fields of the search, bounds the values read from the token
+   * @throws IllegalArgumentException
+   *           if the token is invalid
+   */
+  @NotNull
+  public static SearchCursor fromToken(String token, int maxValueCount) {
+    checkArgument(!Strings.isNullOrEmpty(token), "empty cursor token");
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+        Base64.getUrlDecoder().decode(token)))) {
+      long generation = in.readLong();
+      int doc = in.readInt();
+      float score = in.readFloat();
+      int count = in.readInt();
+      if ((count < -1) || (count > maxValueCount) || (count > in.available())) {
+        throw new IOException("invalid value count " + count);
+      }
+      Object[] values = null;
+      if (count >= 0) {
+        values = new Object[count];
+        for (int i = 0; i < count; i++) {
+          values[i] = readValue(in);
+        }
+      }
+      return new SearchCursor(generation, doc, score, values);
+    } catch (IOException exc) {
+      throw new IllegalArgumentException("invalid cursor token: " + token, exc);
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        int length = in.readInt();
+        if ((length < 0) || (length > in.available())) {
+          throw new IOException("invalid value length " + length);
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, UTF_8);
+      case LONG:
+        return in.readLong();
+      case FLOAT:
+        return in.readFloat();
+      default:
+        throw new IOException("unknown value type " + type);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SearchCursor [generation=" + generation + ", doc=" + doc + ", score=" + score
+        + ", values=" + Arrays.toString(values) + "]";
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.google.common.base.Preconditions.*;
+import static com.google.common.base.Strings.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.search.Query;
+
+import com.google.common.collect.ImmutableList;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
+
+/**
+ * Parameters of a search executed by {@link LucenePlugin#getSearchResults(SearchRequest,
+ * com.xpn.xwiki.XWikiContext)}. The query is either a query string parsed by the plugin or an
+ * already built query.
+ */
+public final class SearchRequest {
+
+  private final String queryString;
+  private final Query query;
+  private final String[] sortFields;
+  private final String virtualWikiNames;
+  private final String languages;
+  private final SearcherHandle handle;
+  private final String cursor;
+  private final int limit;
+  private final boolean skipChecks;
+  private final Duration timeout;
+  private final ImmutableList<String> facetFields;
+
+  private SearchRequest(Builder builder) {
+    this.queryString = builder.queryString;
+    this.query = builder.query;
+    this.sortFields = builder.sortFields.clone();
+    this.virtualWikiNames = builder.virtualWikiNames;
+    this.languages = builder.languages;
+    this.handle = builder.handle;
+    this.cursor = builder.cursor;
+    this.limit = builder.limit;
+    this.skipChecks = builder.skipChecks;
+    this.timeout = builder.timeout;
+    this.facetFields = builder.facetFields;
+  }
+
+  /**
+   * @return the query string, absent if built with a {@link Query}
+   */
+  public Optional<String> getQueryString() {
+    return Optional.ofNullable(queryString);
+  }
+
+  /**
+   * @return the base query, isn't modified by the search. Absent if built with a query string.
+   */
+  public Optional<Query> getQuery() {
+    return Optional.ofNullable(query);
+  }
+
+  /**
+   * @return fields to sort by, a leading '-' reverses the order. Empty to sort by score.
+   */
+  public String[] getSortFields() {
+    return sortFields.clone();
+  }
+
+  /**
+   * @return comma separated list of virtual wiki names, null for all wikis
+   */
+  public String getVirtualWikiNames() {
+    return virtualWikiNames;
+  }
+
+  /**
+   * @return comma separated list of language codes, null for all languages
+   */
+  public String getLanguages() {
+    return languages;
+  }
+
+  /**
+   * @return searchers to search, owned by the caller. Absent to search the current ones.
+   */
+  public Optional<SearcherHandle> getHandle() {
+    return Optional.ofNullable(handle);
+  }
+
+  /**
+   * @return present to search the page of at most {@link #getLimit()} hits following the
+   *         cursor, empty for the first page. Absent to search without paging.
+   */
+  public Optional<String> getCursor() {
+    return Optional.ofNullable(cursor);
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public boolean isSkipChecks() {
+    return skipChecks;
+  }
+
+  /**
+   * @return time budget for collecting the hits, null for the configured default, zero for none
+   */
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public ImmutableList<String> getFacetFields() {
+    return facetFields;
+  }
+
+  @Override
+  public String toString() {
+    return "SearchRequest [queryString=" + queryString + ", query=" + query + ", sortFields="
+        + Arrays.toString(sortFields) + ", virtualWikiNames=" + virtualWikiNames
+        + ", languages=" + languages + ", cursor=" + cursor + ", limit=" + limit
+        + ", skipChecks=" + skipChecks + ", timeout=" + timeout + ", facetFields=" + facetFields
+        + "]";
+  }
+
+  public static class Builder {
+
+    private final String queryString;
+    private final Query query;
+    private String[] sortFields = new String[0];
+    private String virtualWikiNames;
+    private String languages;
+    private SearcherHandle handle;
+    private String cursor;
+    private int limit;
+    private boolean skipChecks;
+    private Duration timeout;
+    private ImmutableList<String> facetFields = ImmutableList.of();
+
+    public Builder(@NotNull String queryString) {
+      this.queryString = checkNotNull(queryString);
+      this.query = null;
+    }
+
+    public Builder(@NotNull Query query) {
+      this.queryString = null;
+      this.query = checkNotNull(query);
+    }
+
+    public Builder sortFields(@Nullable String... sortFields) {
+      this.sortFields = (sortFields != null) ? sortFields.clone() : new String[0];
+      return this;
+    }
+
+    public Builder virtualWikiNames(@Nullable String virtualWikiNames) {
+      this.virtualWikiNames = virtualWikiNames;
+      return this;
+    }
+
+    public Builder languages(@Nullable String languages) {
+      this.languages = languages;
+      return this;
+    }
+
+    /**
+     * @see LucenePlugin#acquireSearcher()
+     */
+    public Builder handle(@Nullable SearcherHandle handle) {
+      this.handle = handle;
+      return this;
+    }
+
+    /**
+     * pages the hits, see {@link SearchResults#getNextCursor()}
+     *
+     * @param cursor
+     *          token of the previous page, null or empty for the first page
+     * @param limit
+     *          maximum number of hits of the page, capped by the result limit
+     */
+    public Builder page(@Nullable String cursor, int limit) {
+      checkArgument(limit > 0, "limit must be positive");
+      this.cursor = nullToEmpty(cursor);
+      this.limit = limit;
+      return this;
+    }
+
+    public Builder skipChecks(boolean skipChecks) {
+      this.skipChecks = skipChecks;
+      return this;
+    }
+
+    public Builder timeout(@Nullable Duration timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    public Builder facetFields(@Nullable Collection<String> facetFields) {
+      this.facetFields = (facetFields != null) ? ImmutableList.copyOf(facetFields)
+          : ImmutableList.of();
+      return this;
+    }
+
+    public SearchRequest build() {
+      return new SearchRequest(this);
+    }
+  }
+
+}
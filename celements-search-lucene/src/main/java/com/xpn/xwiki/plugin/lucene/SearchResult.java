@@ -21,6 +21,8 @@ package com.xpn.xwiki.plugin.lucene;
 
 import java.util.Date;
 
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.model.reference.AttachmentReference;
@@ -38,6 +40,25 @@ import com.xpn.xwiki.api.Document;
  */
 public class SearchResult {
 
+  /**
+   * loads only the stored fields read by the constructor, skipping e.g. object property values
+   */
+  public static final FieldSelector FIELD_SELECTOR = new MapFieldSelector(IndexFields.DOCUMENT_ID,
+      IndexFields.DOCUMENT_TITLE, IndexFields.DOCUMENT_NAME, IndexFields.DOCUMENT_SPACE,
+      IndexFields.DOCUMENT_WIKI, IndexFields.DOCUMENT_FULLNAME, IndexFields.DOCUMENT_TYPE,
+      IndexFields.DOCUMENT_AUTHOR, IndexFields.DOCUMENT_CREATOR, IndexFields.DOCUMENT_LANGUAGE,
+      IndexFields.DOCUMENT_DATE, IndexFields.DOCUMENT_CREATIONDATE, IndexFields.DOCUMENT_HIDDEN,
+      IndexFields.FILENAME, IndexFields.OBJECT);
+
+  /**
+   * loads only the stored fields needed for {@link #getReference()}
+   */
+  public static final FieldSelector REFERENCE_FIELD_SELECTOR = new MapFieldSelector(
+      IndexFields.DOCUMENT_NAME, IndexFields.DOCUMENT_SPACE, IndexFields.DOCUMENT_WIKI,
+      IndexFields.DOCUMENT_TYPE, IndexFields.FILENAME);
+
+  private final com.xpn.xwiki.api.XWiki xwiki;
+
   private String id;
 
   private float score;
@@ -54,6 +75,8 @@ public class SearchResult {
 
   private String url;
 
+  private boolean urlResolved;
+
   private String filename;
 
   private String[] objects;
@@ -86,6 +109,7 @@ public class SearchResult {
    */
   public SearchResult(org.apache.lucene.document.Document doc, float score,
       com.xpn.xwiki.api.XWiki xwiki) {
+    this.xwiki = xwiki;
     this.score = score;
     this.id = doc.get(IndexFields.DOCUMENT_ID);
     this.title = doc.get(IndexFields.DOCUMENT_TITLE);
@@ -104,21 +128,26 @@ public class SearchResult {
     if (this.isAttachment()) {
       this.filename = doc.get(IndexFields.FILENAME);
       this.reference = new AttachmentReference(this.filename, (DocumentReference) this.reference);
-      Document document;
+    } else {
+      this.objects = doc.getValues("object");
+    }
+  }
+
+  private String resolveUrl() {
+    if (this.isAttachment()) {
       final String fullDocName = new StringBuffer(this.wiki).append(":").append(this.space).append(
           ".").append(this.name).toString();
       try {
-        document = xwiki.getDocument(fullDocName);
+        Document document = xwiki.getDocument(fullDocName);
         if (document != null) {
-          this.url = document.getAttachmentURL(this.filename, "download");
+          return document.getAttachmentURL(this.filename, "download");
         }
       } catch (XWikiException e) {
         LOGGER.error("error retrieving url for attachment [{}] of document [{}]", new Object[] {
             this.filename, fullDocName, e });
       }
-    } else {
-      this.objects = doc.getValues("object");
     }
+    return null;
   }
 
   /**
@@ -180,9 +209,14 @@ public class SearchResult {
   }
 
   /**
-   * @return Returns the url to access the document.
+   * @return Returns the url to access the document. For attachments the document is loaded on
+   *         first access.
    */
   public String getUrl() {
+    if (!this.urlResolved) {
+      this.url = resolveUrl();
+      this.urlResolved = true;
+    }
     return this.url;
   }
 
@@ -226,6 +260,7 @@ public class SearchResult {
 
   public void setUrl(String url) {
     this.url = url;
+    this.urlResolved = true;
   }
 
   public String getWiki() {
@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import static java.util.stream.Collectors.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.celements.model.util.ModelUtils;
+import com.celements.rights.access.EAccessLevel;
+import com.celements.rights.access.IRightsAccessFacadeRole;
+import com.google.common.collect.Lists;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.api.XWiki;
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Checks existence and view rights for the documents of search results in bulk. Each document is
+ * checked once, however many of its attachments are hit, and existence is looked up with one
+ * store query per wiki and batch.
+ */
+class SearchResultChecker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultChecker.class);
+
+  /**
+   * maximum number of documents looked up by a single existence query
+   */
+  static final int BATCH_SIZE = 500;
+
+  private final XWiki xwiki;
+
+  SearchResultChecker(@NotNull XWiki xwiki) {
+    this.xwiki = xwiki;
+  }
+
+  /**
+   * @return the given documents which exist and are viewable by the current user, in the given
+   *         order
+   */
+  @NotNull
+  Set<DocumentReference> filterViewable(@NotNull Collection<DocumentReference> docRefs) {
+    Map<WikiReference, List<DocumentReference>> docRefsByWiki = docRefs.stream()
+        .filter(Objects::nonNull)
+        .distinct()
+        .collect(groupingBy(DocumentReference::getWikiReference, LinkedHashMap::new, toList()));
+    Set<DocumentReference> existing = new LinkedHashSet<>();
+    docRefsByWiki.forEach((wiki, wikiDocRefs) -> Lists.partition(wikiDocRefs, BATCH_SIZE)
+        .forEach(batch -> existing.addAll(filterExisting(wiki, batch))));
+    Set<DocumentReference> ret = docRefs.stream()
+        .filter(existing::contains)
+        .distinct()
+        .filter(docRef -> getRightsAccess().hasAccessLevel(docRef, EAccessLevel.VIEW))
+        .collect(toCollection(LinkedHashSet::new));
+    LOGGER.debug("filterViewable: {} of {} documents viewable, {} existing", ret.size(),
+        docRefs.size(), existing.size());
+    return ret;
+  }
+
+  private Collection<DocumentReference> filterExisting(WikiReference wiki,
+      List<DocumentReference> docRefs) {
+    Map<String, DocumentReference> docRefsByName = docRefs.stream().collect(toMap(
+        getModelUtils()::serializeRefLocal, docRef -> docRef, (docRef1, docRef2) -> docRef1,
+        LinkedHashMap::new));
+    try {
+      List<String> names = new ArrayList<>(docRefsByName.keySet());
+      Query query = getQueryManager().createQuery(buildExistsHql(names.size()), Query.HQL)
+          .setWiki(wiki.getName());
+      for (int i = 0; i < names.size(); i++) {
+        query.bindValue("name" + i, names.get(i));
+      }
+      return query.<String>execute().stream()
+          .map(docRefsByName::get)
+          .filter(Objects::nonNull)
+          .collect(toList());
+    } catch (QueryException | RuntimeException exc) {
+      LOGGER.warn("filterExisting: failed for wiki [{}], checking each document", wiki, exc);
+      return docRefs.stream().filter(this::exists).collect(toList());
+    }
+  }
+
+  static String buildExistsHql(int count) {
+    StringBuilder hql = new StringBuilder(
+        "select distinct doc.fullName from XWikiDocument doc where doc.fullName in (");
+    for (int i = 0; i < count; i++) {
+      hql.append((i > 0) ? ", " : "").append(":name").append(i);
+    }
+    return hql.append(")").toString();
+  }
+
+  private boolean exists(DocumentReference docRef) {
+    try {
+      return xwiki.exists(docRef);
+    } catch (XWikiException | RuntimeException exc) {
+      LOGGER.error("exists: failed for [{}]", docRef, exc);
+      return false;
+    }
+  }
+
+  private QueryManager getQueryManager() {
+    return Utils.getComponent(QueryManager.class);
+  }
+
+  private IRightsAccessFacadeRole getRightsAccess() {
+    return Utils.getComponent(IRightsAccessFacadeRole.class);
+  }
+
+  private ModelUtils getModelUtils() {
+    return Utils.getComponent(ModelUtils.class);
+  }
+
+}
@@ -20,26 +20,29 @@
 package com.xpn.xwiki.plugin.lucene;
 
 import java.io.IOException;
+import java.lang.ref.Cleaner;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Searcher;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.TopDocsCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.model.reference.DocumentReference;
 
-import com.celements.rights.access.EAccessLevel;
-import com.celements.rights.access.IRightsAccessFacadeRole;
 import com.xpn.xwiki.XWikiContext;
-import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.api.Api;
 import com.xpn.xwiki.api.XWiki;
-import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherProvider;
-import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
 
 /**
  * Container for the results of a search.
@@ -51,43 +54,77 @@ import com.xpn.xwiki.web.Utils;
  *
  * @version $Id: 111c8d01d68749e3b4214a49238963ab10b70445 $
  */
-public class SearchResults extends Api {
+public class SearchResults extends Api implements AutoCloseable {
 
   private final XWiki xwiki;
 
   private final Searcher searcher;
 
-  private final SearcherProvider searcherProvider;
+  /**
+   * releases the handle keeping the searcher open once all hits are loaded or the results are
+   * closed or unreachable
+   */
+  private final Cleaner.Cleanable cleanable;
 
   private final Query query;
 
-  private final TopDocsCollector<? extends ScoreDoc> results;
+  private final TopDocs results;
 
   private final boolean skipChecks;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SearchResults.class);
 
+  private static final Cleaner CLEANER = Cleaner.create();
+
   private List<SearchResult> relevantResults;
 
-  private IRightsAccessFacadeRole rightsAccess;
+  /**
+   * minimum number of hits checked at once by {@link #getViewableResults(int, int)}
+   */
+  static final int LAZY_BATCH_SIZE = 20;
+
+  private final List<SearchResult> viewableResults = new ArrayList<>();
+
+  private FieldSelector fieldSelector = SearchResult.FIELD_SELECTOR;
+
+  private String nextCursor;
+
+  private boolean timedOut;
+
+  private Map<String, Map<String, Integer>> facetCounts = Collections.emptyMap();
+
+  private int checkedHits = 0;
+
+  private volatile boolean released = false;
 
   /**
    * @param results
-   *          Lucene search results
-   * @param searcher
+   *          Lucene search results, the top documents up to the result limit
+   * @param searcherHandle
+   *          handle of the searcher the results were collected from, the results acquire their own
    * @param skipChecks
    *          skips exists and access checks on documents
    * @param xwiki
    *          xwiki instance for access rights checking
    */
-  SearchResults(Query query, TopDocsCollector<? extends ScoreDoc> results, Searcher searcher,
-      SearcherProvider theSearcherProvider, boolean skipChecks, XWiki xwiki, XWikiContext context) {
+  SearchResults(Query query, TopDocs results, SearcherHandle searcherHandle, boolean skipChecks,
+      XWiki xwiki, XWikiContext context) {
+    this(query, results, searcherHandle, skipChecks, xwiki, context, CLEANER::register);
+  }
+
+  /**
+   * @param cleaner
+   *          registers the release of the handle for when the results become unreachable
+   */
+  SearchResults(Query query, TopDocs results, SearcherHandle searcherHandle, boolean skipChecks,
+      XWiki xwiki, XWikiContext context,
+      BiFunction<Object, Runnable, Cleaner.Cleanable> cleaner) {
     super(context);
     this.query = query;
     this.results = results;
-    this.searcher = searcher;
-    this.searcherProvider = theSearcherProvider;
-    this.searcherProvider.connectSearchResults(this);
+    SearcherHandle handle = searcherHandle.acquireAnother();
+    this.searcher = handle.getSearcher();
+    this.cleanable = cleaner.apply(this, new HandleReleaser(handle));
     this.skipChecks = skipChecks;
     this.xwiki = xwiki;
   }
@@ -103,35 +140,15 @@ public class SearchResults extends Api {
         TopDocs docs = getTopDocs(offset, limit);
         LOGGER.debug("getRelevantResults: checking access to scoreDocs [{}] for results ["
             + "{}] with class [{}] and id-Hash [{}].", docs.scoreDocs.length,
-            results.getTotalHits(), results.getClass(), System.identityHashCode(results));
-        for (ScoreDoc scoreDoc : docs.scoreDocs) {
-          try {
-            SearchResult result = new SearchResult(searcher.doc(scoreDoc.doc), scoreDoc.score,
-                this.xwiki);
-            if (result.isWikiContent()) {
-              try {
-                if (skipChecks || check(result.getDocumentReference())) {
-                  this.relevantResults.add(result);
-                } else {
-                  LOGGER.debug("getRelevantResults: skipping because checks failed for result {}].",
-                      result.getDocumentReference());
-                }
-              } catch (XWikiException xwe) {
-                LOGGER.error("Error checking result: {}", result.getFullName(), xwe);
-              }
-            } else {
-              LOGGER.debug("getRelevantResults: skipping because no wiki content"
-                  + " (wiki-Document or wiki-Doc-Attachment).");
-            }
-          } catch (IOException ioe) {
-            LOGGER.error("Error getting result doc '{}' from searcher", scoreDoc, ioe);
-          }
+            results.totalHits, results.getClass(), System.identityHashCode(results));
+        this.relevantResults.addAll(loadRelevantResults(docs.scoreDocs));
+        if ((offset == null) && (limit == null)) {
+          completeViewableResults(this.relevantResults);
         }
       } finally {
-        try {
-          searcherProvider.cleanUpSearchResults(this);
-        } catch (IOException exp) {
-          LOGGER.error("Failed to cleanUpSearchResults on searchProvider.", exp);
+        // a lazy check in progress still needs the searcher, see checkViewableResults
+        if (!isCheckingViewableResults()) {
+          release();
         }
       }
     } else {
@@ -142,17 +159,99 @@ public class SearchResults extends Api {
     return this.relevantResults;
   }
 
-  private TopDocs getTopDocs(Integer offset, Integer limit) {
-    final int start = (offset != null) ? offset : 0;
-    if (limit != null) {
-      return this.results.topDocs(start, limit);
-    } else {
-      return this.results.topDocs(start);
+  private List<SearchResult> loadRelevantResults(ScoreDoc[] scoreDocs) {
+    List<SearchResult> wikiContentResults = new ArrayList<>();
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      try {
+        SearchResult result = new SearchResult(searcher.doc(scoreDoc.doc, fieldSelector),
+            scoreDoc.score, this.xwiki);
+        if (result.isWikiContent()) {
+          wikiContentResults.add(result);
+        } else {
+          LOGGER.debug("getRelevantResults: skipping because no wiki content"
+              + " (wiki-Document or wiki-Doc-Attachment).");
+        }
+      } catch (IOException ioe) {
+        LOGGER.error("Error getting result doc '{}' from searcher", scoreDoc, ioe);
+      }
+    }
+    Set<DocumentReference> viewable = skipChecks ? null
+        : new SearchResultChecker(xwiki).filterViewable(wikiContentResults.stream()
+            .map(SearchResult::getDocumentReference)
+            .collect(Collectors.toList()));
+    List<SearchResult> ret = new ArrayList<>();
+    for (SearchResult result : wikiContentResults) {
+      if (skipChecks || viewable.contains(result.getDocumentReference())) {
+        ret.add(result);
+      } else {
+        LOGGER.debug("getRelevantResults: skipping because checks failed for result {}].",
+            result.getDocumentReference());
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Releases the searcher, results not loaded until then aren't available anymore. Happens
+   * automatically once all hits are loaded, so it's only needed if the results are abandoned
+   * earlier. Unreachable results are released by a {@link Cleaner} as a last resort.
+   */
+  public void release() {
+    released = true;
+    cleanable.clean();
+  }
+
+  @Override
+  public void close() {
+    release();
+  }
+
+  /**
+   * Checks the hits in order only until the viewable results up to <code>count</code> are known.
+   */
+  private synchronized void checkViewableResults(int count) {
+    ScoreDoc[] scoreDocs = this.results.scoreDocs;
+    if (released && (this.viewableResults.size() < count)
+        && (this.checkedHits < scoreDocs.length)) {
+      throw new IllegalStateException("searcher already released, viewable results have to be "
+          + "checked before loading a page of all results");
+    }
+    while ((this.viewableResults.size() < count) && (this.checkedHits < scoreDocs.length)) {
+      int batchSize = Math.max(count - this.viewableResults.size(), LAZY_BATCH_SIZE);
+      int batchEnd = this.checkedHits + Math.min(batchSize, scoreDocs.length - this.checkedHits);
+      this.viewableResults.addAll(loadRelevantResults(Arrays.copyOfRange(scoreDocs,
+          this.checkedHits, batchEnd)));
+      this.checkedHits = batchEnd;
+      LOGGER.debug("checkViewableResults: {} viewable of {} checked hits", viewableResults.size(),
+          checkedHits);
+      if (this.checkedHits == scoreDocs.length) {
+        release();
+      }
     }
   }
 
-  private boolean check(DocumentReference docRef) throws XWikiException {
-    return xwiki.exists(docRef) && getRightsAccess().hasAccessLevel(docRef, EAccessLevel.VIEW);
+  /**
+   * all hits are checked, the lazy check has nothing left to do
+   */
+  private synchronized void completeViewableResults(List<SearchResult> checkedResults) {
+    this.viewableResults.clear();
+    this.viewableResults.addAll(checkedResults);
+    this.checkedHits = this.results.scoreDocs.length;
+  }
+
+  private synchronized boolean isCheckingViewableResults() {
+    return (this.checkedHits > 0) && (this.checkedHits < this.results.scoreDocs.length);
+  }
+
+  private TopDocs getTopDocs(Integer offset, Integer limit) {
+    ScoreDoc[] scoreDocs = this.results.scoreDocs;
+    int start = Math.min(Math.max((offset != null) ? offset : 0, 0), scoreDocs.length);
+    int end = scoreDocs.length;
+    if (limit != null) {
+      end = start + Math.min(Math.max(limit, 0), end - start);
+    }
+    return new TopDocs(this.results.totalHits, Arrays.copyOfRange(scoreDocs, start, end),
+        this.results.getMaxScore());
   }
 
   /**
@@ -240,6 +339,110 @@ public class SearchResults extends Api {
     return getRelevantResults();
   }
 
+  /**
+   * Loads only the stored fields needed for {@link SearchResult#getReference()} of the results.
+   * Has to be set before accessing the results.
+   */
+  public void setReferencesOnly(boolean referencesOnly) {
+    this.fieldSelector = referencesOnly ? SearchResult.REFERENCE_FIELD_SELECTOR
+        : SearchResult.FIELD_SELECTOR;
+  }
+
+  /**
+   * Returns a page of the search results the user is allowed to view. Unlike
+   * {@link #getResults(int, int)} hits are only checked until the page is filled and the
+   * <code>beginIndex</code> counts viewable results only. Further pages continue checking where
+   * the previous ones stopped, while the searcher is still open.
+   *
+   * @param beginIndex
+   *          1-based index of the first viewable result to return.
+   * @param items
+   *          number of items to return
+   */
+  public List<SearchResult> getViewableResults(int beginIndex, int items) {
+    int start = Math.max(beginIndex - 1, 0);
+    int end = (int) Math.min((long) start + Math.max(items, 0), Integer.MAX_VALUE);
+    checkViewableResults(end);
+    synchronized (this) {
+      int size = this.viewableResults.size();
+      return new ArrayList<>(this.viewableResults.subList(Math.min(start, size),
+          Math.min(end, size)));
+    }
+  }
+
+  /**
+   * @return number of viewable results extrapolated from the hits checked so far by
+   *         {@link #getViewableResults(int, int)}, exact if {@link #isViewableHitcountExact()}
+   */
+  public synchronized int getEstimatedViewableHitcount() {
+    int hits = this.results.scoreDocs.length;
+    if (this.checkedHits == 0) {
+      return hits;
+    } else if (this.checkedHits >= hits) {
+      return this.viewableResults.size();
+    }
+    double viewableRatio = (double) this.viewableResults.size() / this.checkedHits;
+    return this.viewableResults.size()
+        + (int) Math.round((hits - this.checkedHits) * viewableRatio);
+  }
+
+  /**
+   * @return lower bound of the viewable results, the ones found so far by
+   *         {@link #getViewableResults(int, int)}
+   */
+  public synchronized int getViewableHitcountLowerBound() {
+    return this.viewableResults.size();
+  }
+
+  public synchronized boolean isViewableHitcountExact() {
+    return this.checkedHits >= this.results.scoreDocs.length;
+  }
+
+  /**
+   * @return exact number of viewable results, checks all remaining hits
+   */
+  public int getViewableHitcount() {
+    checkViewableResults(Integer.MAX_VALUE);
+    return getViewableHitcountLowerBound();
+  }
+
+  /**
+   * @return token to pass to {@link SearchRequest.Builder#page(String, int)} for the following
+   *         page, null if there is none or these results aren't a page
+   */
+  public String getNextCursor() {
+    return this.nextCursor;
+  }
+
+  void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * @return true if the search exceeded its time budget and the hits are only the best ones
+   *         collected until then, the hitcounts then only count these
+   */
+  public boolean isTimedOut() {
+    return this.timedOut;
+  }
+
+  void setTimedOut(boolean timedOut) {
+    this.timedOut = timedOut;
+  }
+
+  /**
+   * @return term counts per requested facet field of all hits, collected in the same pass as the
+   *         hits. Like {@link #getTotalHitcount()} they include unallowed items and only count the
+   *         hits collected until a timeout. Empty if no facet fields were requested.
+   */
+  public Map<String, Map<String, Integer>> getFacetCounts() {
+    return this.facetCounts;
+  }
+
+  void setFacetCounts(Map<String, Map<String, Integer>> facetCounts) {
+    this.facetCounts = facetCounts;
+  }
+
   /**
    * @return total number of searchresults the user is allowed to view
    */
@@ -251,25 +454,7 @@ public class SearchResults extends Api {
    * @return total number of searchresults including unallowed items
    */
   public int getTotalHitcount() {
-    return this.results.getTotalHits();
-  }
-
-  @Override
-  protected void finalize() throws Throwable {
-    LOGGER.debug("finalize SearchResults for [{}], isMarkedClose [{}], searcherProvider.isClosed[{"
-        + "}], isIdle [{}].", System.identityHashCode(this), searcherProvider.isMarkedToClose(),
-        searcherProvider.isClosed(), searcherProvider.isIdle());
-    searcherProvider.cleanUpSearchResults(this);
-    LOGGER.debug("finalize SearchResults for [{}], isMarkedClose [{}], searcherProvider.isClosed [{"
-        + "}], isIdle [{}].", System.identityHashCode(this), searcherProvider.isMarkedToClose(),
-        searcherProvider.isClosed(), searcherProvider.isIdle());
-  }
-
-  private IRightsAccessFacadeRole getRightsAccess() {
-    if (rightsAccess == null) {
-      rightsAccess = Utils.getComponent(IRightsAccessFacadeRole.class);
-    }
-    return rightsAccess;
+    return this.results.totalHits;
   }
 
   @Override
@@ -277,4 +462,25 @@ public class SearchResults extends Api {
     return "SearchResults [query=" + query + ", hitcount=" + getTotalHitcount() + "]";
   }
 
+  /**
+   * must not reference the results, else they never become unreachable
+   */
+  static final class HandleReleaser implements Runnable {
+
+    private final SearcherHandle handle;
+
+    HandleReleaser(SearcherHandle handle) {
+      this.handle = handle;
+    }
+
+    @Override
+    public void run() {
+      try {
+        handle.release();
+      } catch (IOException exp) {
+        LOGGER.error("Failed to release searcher handle [{}].", handle, exp);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.FieldCache;
+
+/**
+ * The terms of a field within a segment, uninverted to the ordinals of the terms per document.
+ * Unlike {@link FieldCache#getStringIndex(IndexReader, String)} a document may have any number of
+ * terms, e.g. object class names or tags. Like the field caches it is loaded once per segment and
+ * field and shared by all searches until the segment is dropped.
+ */
+final class UninvertedField {
+
+  private static final Map<Object, Map<String, UninvertedField>> CACHE = Collections
+      .synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * distinct terms of the field in term order, indexed by ordinal
+   */
+  final String[] terms;
+
+  /**
+   * ordinals of document <code>doc</code> are at <code>ords[docStarts[doc]]</code> up to
+   * <code>ords[docStarts[doc + 1]]</code> exclusive
+   */
+  final int[] docStarts;
+
+  final int[] ords;
+
+  private UninvertedField(String[] terms, int[] docStarts, int[] ords) {
+    this.terms = terms;
+    this.docStarts = docStarts;
+    this.ords = ords;
+  }
+
+  /**
+   * @param reader
+   *          a segment reader, deletions don't affect the cached entry
+   */
+  static UninvertedField get(IndexReader reader, String field) throws IOException {
+    Map<String, UninvertedField> fields;
+    synchronized (CACHE) {
+      fields = CACHE.computeIfAbsent(reader.getCoreCacheKey(), key -> new ConcurrentHashMap<>());
+    }
+    UninvertedField ret = fields.get(field);
+    if (ret == null) {
+      // concurrent searches may load the same field twice, which is cheaper than blocking
+      ret = load(reader, field);
+      fields.put(field, ret);
+    }
+    return ret;
+  }
+
+  private static UninvertedField load(IndexReader reader, String field) throws IOException {
+    // the first pass counts the terms per document, the second one fills in their ordinals
+    List<String> terms = new ArrayList<>();
+    int[] docStarts = new int[reader.maxDoc() + 1];
+    forEachTerm(reader, field, (term, termDocs) -> {
+      terms.add(term.text());
+      while (termDocs.next()) {
+        docStarts[termDocs.doc() + 1]++;
+      }
+    });
+    for (int doc = 0; doc < reader.maxDoc(); doc++) {
+      docStarts[doc + 1] += docStarts[doc];
+    }
+    int[] ords = new int[docStarts[reader.maxDoc()]];
+    int[] next = docStarts.clone();
+    int[] ord = { 0 };
+    forEachTerm(reader, field, (term, termDocs) -> {
+      while (termDocs.next()) {
+        ords[next[termDocs.doc()]++] = ord[0];
+      }
+      ord[0]++;
+    });
+    return new UninvertedField(terms.toArray(new String[terms.size()]), docStarts, ords);
+  }
+
+  private static void forEachTerm(IndexReader reader, String field, TermVisitor visitor)
+      throws IOException {
+    TermEnum termEnum = reader.terms(new Term(field, ""));
+    TermDocs termDocs = reader.termDocs();
+    try {
+      do {
+        Term term = termEnum.term();
+        if ((term == null) || !field.equals(term.field())) {
+          break;
+        }
+        termDocs.seek(termEnum);
+        visitor.visit(term, termDocs);
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
+    }
+  }
+
+  @FunctionalInterface
+  private interface TermVisitor {
+
+    void visit(Term term, TermDocs termDocs) throws IOException;
+  }
+
+}
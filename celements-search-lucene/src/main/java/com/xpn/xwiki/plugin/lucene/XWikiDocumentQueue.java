@@ -19,8 +19,10 @@
  */
 package com.xpn.xwiki.plugin.lucene;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import org.apache.commons.collections.Buffer;
 import org.apache.commons.collections.BufferUnderflowException;
@@ -51,6 +53,11 @@ public class XWikiDocumentQueue {
    */
   private Buffer namesQueue = new UnboundedFifoBuffer();
 
+  /**
+   * Maps names of documents to the time they have first been added.
+   */
+  private Map<String, Instant> queuedAtByName = new HashMap<>();
+
   /**
    * Remove an item from the queue and return it. Since this is a FIFO, the element
    * returned will be the oldes one in the queue.
@@ -61,7 +68,9 @@ public class XWikiDocumentQueue {
    */
   public synchronized AbstractIndexData remove() throws BufferUnderflowException {
     LOGGER.debug("removing element from queue.");
-    return this.documentsByName.remove(this.namesQueue.remove());
+    Object name = this.namesQueue.remove();
+    this.queuedAtByName.remove(name);
+    return this.documentsByName.remove(name);
   }
 
   /**
@@ -82,6 +91,7 @@ public class XWikiDocumentQueue {
     if (!this.documentsByName.containsKey(key)) {
       // Document with this name not yet in the Queue, so add it
       this.namesQueue.add(key);
+      this.queuedAtByName.put(key, Instant.now());
     }
 
     // In any case put new version of this document in the map, overwriting
@@ -89,6 +99,14 @@ public class XWikiDocumentQueue {
     this.documentsByName.put(key, data);
   }
 
+  /**
+   * @return the time the oldest element in the queue has been added, empty if the queue is empty
+   */
+  public synchronized Optional<Instant> getOldestQueueTime() {
+    return isEmpty() ? Optional.empty()
+        : Optional.ofNullable(this.queuedAtByName.get(this.namesQueue.get()));
+  }
+
   /**
    * Check if the queue is empty or not.
    *
@@ -1,6 +1,7 @@
 package com.xpn.xwiki.plugin.lucene.indexExtension;
 
 import java.util.Collection;
+import java.util.Optional;
 
 import org.xwiki.component.annotation.ComponentRole;
 
@@ -28,4 +29,18 @@ public interface ILuceneIndexExtender {
    */
   public Collection<IndexExtensionField> getExtensionFields(AbstractIndexData data);
 
+  /**
+   * Declares the inputs the extension fields of the provided data depend on. If the returned key
+   * equals the one of the previous run for the same index data id, the fields returned then are
+   * reused and {@link #getExtensionFields(AbstractIndexData)} isn't called. Keys have to be cheap
+   * to compute and to compare, reused fields mustn't hold reader or token stream values.
+   *
+   * @param data
+   *          about to be indexed
+   * @return the dependency key, empty if the fields have to be computed on every run (default)
+   */
+  default Optional<Object> getDependencyKey(AbstractIndexData data) {
+    return Optional.empty();
+  }
+
 }
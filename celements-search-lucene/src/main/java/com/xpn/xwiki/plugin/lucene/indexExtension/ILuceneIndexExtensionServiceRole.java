@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Index;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.ComponentRole;
 
 import com.xpn.xwiki.plugin.lucene.AbstractIndexData;
@@ -17,6 +18,17 @@ public interface ILuceneIndexExtensionServiceRole {
 
   void extend(IndexExtensionField field, Document luceneDoc);
 
+  /**
+   * @return the cost accounting per extender name, containing only extenders which have been run
+   *         since startup
+   */
+  Map<String, IndexExtenderStats> getExtenderStats();
+
+  /**
+   * logs the {@link #getExtenderStats()}, most expensive extenders first
+   */
+  void logExtenderStats(Logger logger);
+
   /**
    * @deprecated since 5.9, instead use {@link IndexExtensionField.Builder}
    */
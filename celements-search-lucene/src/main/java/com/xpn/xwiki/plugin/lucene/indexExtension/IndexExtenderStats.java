@@ -0,0 +1,67 @@
+package com.xpn.xwiki.plugin.lucene.indexExtension;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost accounting of a single {@link ILuceneIndexExtender}, safe for concurrent use.
+ */
+public class IndexExtenderStats {
+
+  private final String name;
+  private final LongAdder runs = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+
+  IndexExtenderStats(String name) {
+    this.name = name;
+  }
+
+  void record(long durationNanos, boolean cacheHit, boolean failed) {
+    runs.increment();
+    nanos.add(durationNanos);
+    if (cacheHit) {
+      cacheHits.increment();
+    }
+    if (failed) {
+      failures.increment();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of eligible index data extended, including cache hits and failures
+   */
+  public long getRuns() {
+    return runs.sum();
+  }
+
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public long getTotalMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+  }
+
+  public double getAverageMillis() {
+    long count = getRuns();
+    return (count > 0) ? (nanos.sum() / 1e6 / count) : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "IndexExtenderStats [name=" + name + ", runs=" + getRuns() + ", cacheHits="
+        + getCacheHits() + ", failures=" + getFailures() + ", totalMillis=" + getTotalMillis()
+        + ", averageMillis=" + String.format("%.3f", getAverageMillis()) + "]";
+  }
+
+}
@@ -34,6 +34,7 @@ public class IndexExtensionField {
 
   private final ExtensionType extensionType;
   private final Fieldable luceneField;
+  private final Fieldable numericField;
 
   /**
    * @deprecated since 5.9, instead use {@link IndexExtensionField.Builder}
@@ -56,8 +57,14 @@ public class IndexExtensionField {
    */
   @Deprecated // change to protected instead of remove
   public IndexExtensionField(ExtensionType extensionType, Fieldable field) {
+    this(extensionType, field, null);
+  }
+
+  private IndexExtensionField(ExtensionType extensionType, Fieldable field,
+      @Nullable Fieldable numericField) {
     this.extensionType = Objects.requireNonNull(extensionType);
     this.luceneField = Objects.requireNonNull(field);
+    this.numericField = numericField;
   }
 
   public String getName() {
@@ -76,6 +83,14 @@ public class IndexExtensionField {
     return luceneField;
   }
 
+  /**
+   * @return the trie encoded twin of date and number values, see
+   *         {@link IndexFields#SUFFIX_NUMERIC}
+   */
+  public Optional<Fieldable> getNumericField() {
+    return Optional.ofNullable(numericField);
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(getName(), getValue(), getExtensionType());
@@ -106,6 +121,7 @@ public class IndexExtensionField {
     private Field.Index index;
     private Float boost;
     private String value = "";
+    private Long numericValue;
 
     public Builder(@NotBlank String name) {
       this.name = asNonBlank(name).orElseThrow(IllegalArgumentException::new);
@@ -133,12 +149,14 @@ public class IndexExtensionField {
 
     public Builder value(@Nullable String value) {
       this.value = nullToEmpty(value);
+      this.numericValue = null;
       return this;
     }
 
     public Builder value(@Nullable Number value) {
       return value(IndexFields.numberToString(value))
-          .index(Index.NOT_ANALYZED);
+          .index(Index.NOT_ANALYZED)
+          .numericValue((value != null) ? value.longValue() : null);
     }
 
     public Builder value(@Nullable Boolean value) {
@@ -148,12 +166,19 @@ public class IndexExtensionField {
 
     public Builder value(@Nullable Date value) {
       return value((value != null) ? IndexFields.dateToString(value) : "")
-          .index(Index.NOT_ANALYZED);
+          .index(Index.NOT_ANALYZED)
+          .numericValue((value != null) ? IndexFields.dateToLong(value) : null);
     }
 
     public Builder value(@Nullable Temporal value) {
       return value((value != null) ? formatter(IndexFields.DATE_FORMAT).apply(value) : "")
-          .index(Index.NOT_ANALYZED);
+          .index(Index.NOT_ANALYZED)
+          .numericValue((value != null) ? IndexFields.dateToLong(value) : null);
+    }
+
+    private Builder numericValue(@Nullable Long numericValue) {
+      this.numericValue = numericValue;
+      return this;
     }
 
     public Builder value(@Nullable Object value) {
@@ -176,7 +201,9 @@ public class IndexExtensionField {
           Optional.ofNullable(store).orElse(Field.Store.YES),
           Optional.ofNullable(index).orElseGet(this::determineIndexByNameOrValue));
       field.setBoost(Optional.ofNullable(boost).orElse(1.0f));
-      return new IndexExtensionField(extType, field);
+      return new IndexExtensionField(extType, field, Optional.ofNullable(numericValue)
+          .map(numeric -> IndexFields.createNumericField(name, numeric))
+          .orElse(null));
     }
 
     private Field.Index determineIndexByNameOrValue() {
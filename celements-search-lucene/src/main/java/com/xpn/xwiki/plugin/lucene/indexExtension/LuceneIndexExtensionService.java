@@ -3,9 +3,12 @@ package com.xpn.xwiki.plugin.lucene.indexExtension;
 import static java.util.stream.Collectors.*;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import javax.inject.Singleton;
@@ -17,7 +20,14 @@ import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.Component;
 
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Longs;
+import com.xpn.xwiki.XWikiConfigSource;
 import com.xpn.xwiki.plugin.lucene.AbstractIndexData;
+import com.xpn.xwiki.plugin.lucene.IndexFields;
 import com.xpn.xwiki.plugin.lucene.indexExtension.IndexExtensionField.ExtensionType;
 import com.xpn.xwiki.web.Utils;
 
@@ -27,26 +37,83 @@ public class LuceneIndexExtensionService implements ILuceneIndexExtensionService
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexExtensionService.class);
 
+  /**
+   * maximum number of extension field sets kept for extenders declaring a dependency key, 0
+   * disables the reuse of extension fields
+   */
+  static final String PROP_FIELD_CACHE_SIZE = "xwiki.plugins.lucene.extender.fieldcachesize";
+
   // do not inject since an extender might use this service
   private final Supplier<List<ILuceneIndexExtender>> extenders = Suppliers
       .memoize(() -> Utils.getComponentList(ILuceneIndexExtender.class));
 
+  private final Supplier<Cache<String, CachedFields>> fieldCache = Suppliers
+      .memoize(() -> CacheBuilder.newBuilder()
+          .maximumSize(Optional.ofNullable(Utils.getComponent(XWikiConfigSource.class)
+              .getProperty(PROP_FIELD_CACHE_SIZE))
+              .map(Longs::tryParse)
+              .orElse(10000L))
+          .build());
+
+  private final Map<String, IndexExtenderStats> stats = new ConcurrentHashMap<>();
+
   @Override
   public void extend(AbstractIndexData data, Document luceneDoc) {
     extenders.get().stream().forEach(ext -> extend(ext, data, luceneDoc));
   }
 
   private void extend(ILuceneIndexExtender ext, AbstractIndexData data, Document luceneDoc) {
+    long start = System.nanoTime();
+    boolean cacheHit = false;
+    boolean failed = false;
     try {
-      if (ext.isEligibleIndexData(data)) {
-        LOGGER.debug("extend: [{}] for [{}]", ext.getName(), data);
-        ext.getExtensionFields(data).stream()
-            .filter(Objects::nonNull)
-            .forEach(field -> extend(field, luceneDoc));
+      if (!ext.isEligibleIndexData(data)) {
+        return;
+      }
+      LOGGER.debug("extend: [{}] for [{}]", ext.getName(), data);
+      Optional<Object> dependencyKey = ext.getDependencyKey(data);
+      String cacheKey = ext.getName() + "|" + data.getId();
+      Optional<CachedFields> cached = dependencyKey
+          .map(key -> fieldCache.get().getIfPresent(cacheKey))
+          .filter(fields -> fields.dependencyKey.equals(dependencyKey.get()));
+      cacheHit = cached.isPresent();
+      CachedFields fields = cached.orElseGet(() -> new CachedFields(
+          dependencyKey.orElse(null), ext.getExtensionFields(data)));
+      if (!cacheHit && dependencyKey.isPresent()) {
+        fieldCache.get().put(cacheKey, fields);
       }
+      fields.fields.forEach(field -> extend(field, luceneDoc));
     } catch (Exception exc) {
+      failed = true;
       LOGGER.error("Failed to extend lucene index with [{}] for [{}]", ext.getName(), data, exc);
     }
+    stats.computeIfAbsent(ext.getName(), IndexExtenderStats::new)
+        .record(System.nanoTime() - start, cacheHit, failed);
+  }
+
+  @Override
+  public Map<String, IndexExtenderStats> getExtenderStats() {
+    return ImmutableMap.copyOf(stats);
+  }
+
+  @Override
+  public void logExtenderStats(Logger logger) {
+    stats.values().stream()
+        .sorted(Comparator.comparingLong(IndexExtenderStats::getTotalMillis).reversed())
+        .forEach(extStats -> logger.info("{}", extStats));
+  }
+
+  private static class CachedFields {
+
+    final Object dependencyKey;
+    final ImmutableList<IndexExtensionField> fields;
+
+    CachedFields(Object dependencyKey, Collection<IndexExtensionField> fields) {
+      this.dependencyKey = dependencyKey;
+      this.fields = fields.stream()
+          .filter(Objects::nonNull)
+          .collect(ImmutableList.toImmutableList());
+    }
   }
 
   @Override
@@ -54,13 +121,17 @@ public class LuceneIndexExtensionService implements ILuceneIndexExtensionService
     switch (field.getExtensionType()) {
       case ADD:
         luceneDoc.add(field.getLuceneField());
+        field.getNumericField().ifPresent(luceneDoc::add);
         break;
       case REPLACE:
         luceneDoc.removeFields(field.getName());
+        luceneDoc.removeFields(IndexFields.numericField(field.getName()));
         luceneDoc.add(field.getLuceneField());
+        field.getNumericField().ifPresent(luceneDoc::add);
         break;
       case REMOVE:
         luceneDoc.removeFields(field.getName());
+        luceneDoc.removeFields(IndexFields.numericField(field.getName()));
         break;
     }
   }
@@ -0,0 +1,43 @@
+package com.xpn.xwiki.plugin.lucene.observation.event;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.observation.event.Event;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Base for events notified once per index commit, carrying all references written with it. The
+ * references are also passed as the event source.
+ */
+public abstract class AbstractLuceneBatchEvent implements Event, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final ImmutableList<EntityReference> references;
+
+  protected AbstractLuceneBatchEvent() {
+    this(ImmutableList.of());
+  }
+
+  protected AbstractLuceneBatchEvent(Collection<? extends EntityReference> references) {
+    this.references = ImmutableList.copyOf(references);
+  }
+
+  public ImmutableList<EntityReference> getReferences() {
+    return references;
+  }
+
+  @Override
+  public boolean matches(Object otherEvent) {
+    return (otherEvent != null) && (otherEvent.getClass() == this.getClass());
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " [" + references.size() + " references]";
+  }
+
+}
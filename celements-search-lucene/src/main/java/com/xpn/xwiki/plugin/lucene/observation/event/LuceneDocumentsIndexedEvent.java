@@ -0,0 +1,22 @@
+package com.xpn.xwiki.plugin.lucene.observation.event;
+
+import java.util.Collection;
+
+import org.xwiki.model.reference.EntityReference;
+
+import com.celements.common.observation.converter.Local;
+
+@Local
+public class LuceneDocumentsIndexedEvent extends AbstractLuceneBatchEvent {
+
+  private static final long serialVersionUID = 1L;
+
+  public LuceneDocumentsIndexedEvent() {
+    super();
+  }
+
+  public LuceneDocumentsIndexedEvent(Collection<? extends EntityReference> references) {
+    super(references);
+  }
+
+}
@@ -19,9 +19,12 @@
  */
 package com.xpn.xwiki.plugin.lucene.searcherProvider;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.ComponentRole;
 
@@ -30,6 +33,21 @@ public interface ISearcherProviderRole {
 
   SearcherProvider createSearchProvider(List<IndexSearcher> createSearchers);
 
+  /**
+   * Runs the queries and, on all documents, the sorts against each searcher before creating the
+   * provider, loading term dictionaries and field caches the first searches would pay for
+   * otherwise. Failing queries are logged and don't prevent the provider's creation.
+   */
+  SearcherProvider createWarmedSearchProvider(List<IndexSearcher> searchers,
+      Collection<Query> queries, Collection<Sort> sorts);
+
+  SearcherWarmStats getWarmStats();
+
+  /**
+   * Fallback only, releases the {@link SearcherHandle}s acquired by the current thread and not
+   * released yet, called at the end of requests and jobs. Handles acquired on any other thread have
+   * to be released by their users, unreleased ones are reported periodically.
+   */
   void closeAllForCurrentThread();
 
   void logState(Logger log);
@@ -7,6 +7,7 @@ import org.xwiki.component.annotation.Requirement;
 import org.xwiki.script.service.ScriptService;
 
 import com.celements.rights.access.IRightsAccessFacadeRole;
+import com.xpn.xwiki.plugin.lucene.indexExtension.ILuceneIndexExtensionServiceRole;
 
 @Component("searchProviderDebug")
 public class SearchProviderDebugScriptService implements ScriptService {
@@ -20,10 +21,19 @@ public class SearchProviderDebugScriptService implements ScriptService {
   @Requirement
   private ISearcherProviderRole searchProvider;
 
+  @Requirement
+  private ILuceneIndexExtensionServiceRole indexExtensionService;
+
   public void logState() {
     if (rightsAccess.isSuperAdmin()) {
       searchProvider.logState(LOGGER);
     }
   }
 
+  public void logExtenderStats() {
+    if (rightsAccess.isSuperAdmin()) {
+      indexExtensionService.logExtenderStats(LOGGER);
+    }
+  }
+
 }
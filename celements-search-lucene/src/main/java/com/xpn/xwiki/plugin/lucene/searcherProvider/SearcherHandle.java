@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene.searcherProvider;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * A reference on the searchers of a {@link SearcherProvider}, which keeps them open until it is
+ * released. Handles aren't bound to the acquiring thread, they may be passed to and released by any
+ * thread, e.g. of an executor. Releasing is idempotent, so it's safe to release a handle both
+ * explicitly and in a try-with-resource statement.
+ */
+public final class SearcherHandle implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearcherHandle.class);
+
+  private final SearcherProvider provider;
+
+  private final String ownerName;
+
+  private final Thread owner;
+
+  private final long acquiredNanos = System.nanoTime();
+
+  /**
+   * stack trace of the acquisition reported by the leak detection, only recorded with debug
+   * logging enabled since it's costly
+   */
+  private final Throwable acquisition;
+
+  private final AtomicBoolean released = new AtomicBoolean(false);
+
+  private final AtomicBoolean leakReported = new AtomicBoolean(false);
+
+  SearcherHandle(SearcherProvider provider) {
+    this.provider = provider;
+    this.owner = Thread.currentThread();
+    this.ownerName = owner.getName();
+    this.acquisition = LOGGER.isDebugEnabled() ? new Throwable("acquired by " + ownerName) : null;
+  }
+
+  /**
+   * @throws IllegalStateException
+   *           if the handle is already released
+   */
+  public IndexSearcher getSearcher() {
+    checkState(!isReleased(), "handle already released");
+    return Iterables.getOnlyElement(provider.getSearchers());
+  }
+
+  public SearcherProvider getProvider() {
+    return provider;
+  }
+
+  /**
+   * @return the generation of the provider, doc ids are only valid within the same generation
+   */
+  public long getGeneration() {
+    return provider.getGeneration();
+  }
+
+  /**
+   * @return a new handle on the same searchers, to be released independently
+   */
+  public SearcherHandle acquireAnother() {
+    checkState(!isReleased(), "handle already released");
+    return provider.acquire();
+  }
+
+  public boolean isReleased() {
+    return released.get();
+  }
+
+  public void release() throws IOException {
+    if (released.compareAndSet(false, true)) {
+      provider.release(this);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    release();
+  }
+
+  /**
+   * only used by the end of request and job fallback, see
+   * {@link ISearcherProviderRole#closeAllForCurrentThread()}
+   *
+   * @return true if the handle was acquired by the given thread
+   */
+  boolean isOwnedBy(Thread thread) {
+    return owner == thread;
+  }
+
+  public String getOwnerName() {
+    return ownerName;
+  }
+
+  public Duration getAge() {
+    return Duration.ofNanos(System.nanoTime() - acquiredNanos);
+  }
+
+  /**
+   * @return true only the first time it's called for this handle
+   */
+  boolean markLeakReported() {
+    return leakReported.compareAndSet(false, true);
+  }
+
+  Throwable getAcquisition() {
+    return acquisition;
+  }
+
+  @Override
+  public String toString() {
+    return "SearcherHandle [generation=" + getGeneration() + ", owner=" + ownerName + ", age="
+        + getAge() + ", released=" + isReleased() + "]";
+  }
+
+}
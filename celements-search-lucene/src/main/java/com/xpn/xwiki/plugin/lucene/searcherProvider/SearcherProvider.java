@@ -20,40 +20,51 @@
 package com.xpn.xwiki.plugin.lucene.searcherProvider;
 
 import static com.google.common.base.Preconditions.*;
-import static java.util.stream.Collectors.*;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.search.IndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableSet;
-import com.xpn.xwiki.plugin.lucene.SearchResults;
 import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherProviderManager.DisconnectToken;
 
-public class SearcherProvider implements AutoCloseable {
+/**
+ * Holds the searchers of one index generation open as long as they are referenced. The creator
+ * holds the initial reference, released with {@link #markToClose()}, every user acquires its own
+ * {@link SearcherHandle}. The searchers are closed as soon as the last reference is released,
+ * regardless of the threads having acquired or released them.
+ */
+public class SearcherProvider {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SearcherProvider.class);
 
+  private static final AtomicLong GENERATIONS = new AtomicLong();
+
   /**
-   * List of Lucene indexes used for searching. By default there is only one such index
-   * for all the wiki. One searches is created for each entry in {@link #indexDirs}.
+   * Searchers of the Lucene indexes used for searching. The plugin provides a single searcher
+   * combining all its index directories.
    */
   private final List<IndexSearcher> backedSearchers;
 
   private final DisconnectToken token;
 
-  final Set<Thread> connectedThreads = ConcurrentHashMap.newKeySet();
+  private final long generation = GENERATIONS.incrementAndGet();
+
+  /**
+   * the creator's reference plus one per unreleased handle, the searchers are closed when it drops
+   * to zero and no handle may be acquired afterwards
+   */
+  private final AtomicInteger refCount = new AtomicInteger(1);
 
-  final ConcurrentMap<Thread, Set<SearchResults>> connectedSearchResults = new ConcurrentHashMap<>();
+  final Set<SearcherHandle> openHandles = ConcurrentHashMap.newKeySet();
 
   private final AtomicBoolean markToClose = new AtomicBoolean(false);
 
@@ -64,100 +75,90 @@ public class SearcherProvider implements AutoCloseable {
   }
 
   /**
-   * <code>connect</code> is implemented with a fail-fast behavior. The guarantee is, that the
-   * SearcherProvider will not close the connected lucene searchers before not all threads
-   * finished with theirs SearcherResults and disconnected AND that no thread can connect after
-   * marking a SearchProvider for closing.
+   * <code>acquire</code> is implemented with a fail-fast behavior. The guarantee is, that the
+   * SearcherProvider will not close the lucene searchers before all acquired handles are released
+   * AND that no handle can be acquired after marking a SearchProvider for closing.
+   *
+   * @return a new handle which has to be released, preferably in a try-with-resource statement
+   * @throws IllegalStateException
+   *           if the provider is already marked to close
    */
-  public SearcherProvider connect() {
-    if (!checkConnected()) {
-      synchronized (this) {
-        checkState(!isMarkedToClose(), "provider already marked to close");
-        LOGGER.debug("connect {} to [{}]", this, getThreadKey());
-        connectedThreads.add(getThreadKey());
-      }
-    }
-    return this;
+  public SearcherHandle acquire() {
+    checkState(!isMarkedToClose(), "provider already marked to close");
+    int count;
+    do {
+      count = refCount.get();
+      checkState(count > 0, "provider already closed");
+    } while (!refCount.compareAndSet(count, count + 1));
+    SearcherHandle handle = new SearcherHandle(this);
+    openHandles.add(handle);
+    LOGGER.trace("acquire {} for {}", handle, this);
+    return handle;
   }
 
-  public boolean isClosed() {
-    return token.isUsed();
+  /**
+   * called by {@link SearcherHandle#release()} exactly once per handle
+   */
+  void release(SearcherHandle handle) throws IOException {
+    openHandles.remove(handle);
+    LOGGER.trace("release {} for {}", handle, this);
+    decrementRefCount();
   }
 
-  public List<IndexSearcher> getSearchers() {
-    checkState(!isClosed(), "provider already closed");
-    checkState(checkConnected(), "calling thread not connected");
-    return backedSearchers;
+  private void decrementRefCount() throws IOException {
+    int count = refCount.decrementAndGet();
+    if (count == 0) {
+      closeSearchers();
+    } else if (count < 0) {
+      LOGGER.error("decrementRefCount - released too often: {}", this);
+    }
   }
 
-  private boolean checkConnected() {
-    return connectedThreads.contains(getThreadKey());
+  /**
+   * @return increases with every created provider, doc ids are only valid within the same
+   *         generation
+   */
+  public long getGeneration() {
+    return generation;
   }
 
-  public void disconnect() throws IOException {
-    if (connectedThreads.remove(getThreadKey())) {
-      LOGGER.debug("disconnect {} to [{}]", this, getThreadKey());
-      tryClose();
-    }
+  public boolean isClosed() {
+    return token.isUsed();
   }
 
-  @Override
-  public void close() throws IOException {
-    disconnect();
+  public List<IndexSearcher> getSearchers() {
+    checkState(!isClosed(), "provider already closed");
+    return backedSearchers;
   }
 
   public boolean isMarkedToClose() {
     return markToClose.get();
   }
 
+  /**
+   * releases the creator's reference, the searchers are closed immediately if no handle is open
+   * or else as soon as the last one is released
+   */
   public void markToClose() throws IOException {
     if (markToClose.compareAndSet(false, true)) {
       LOGGER.debug("markToClose {}", this);
-      tryClose();
-    }
-  }
-
-  /**
-   * close if is marked and idle, else does nothing
-   */
-  synchronized void tryClose() throws IOException {
-    removeOrphanedThreads();
-    if (isMarkedToClose() && isIdle()) {
-      closeSearchers();
-    }
-  }
-
-  private synchronized void removeOrphanedThreads() {
-    long size = connectedThreads.size();
-    if (connectedThreads.removeIf(thread -> !isRunning(thread))) {
-      LOGGER.warn("cleanOrphanedThreads - {} connected threads removed",
-          (size - connectedThreads.size()));
-    }
-    size = getConnectedSearchResultCount();
-    if (connectedSearchResults.keySet().removeIf(thread -> !isRunning(thread))) {
-      LOGGER.warn("cleanOrphanedThreads - {} connected search results removed",
-          (size - getConnectedSearchResultCount()));
+      decrementRefCount();
     }
   }
 
-  private static final Set<Thread.State> RUNNING_STATES = ImmutableSet.of(
-      Thread.State.RUNNABLE, Thread.State.BLOCKED, Thread.State.TIMED_WAITING);
-
-  private boolean isRunning(Thread thread) {
-    boolean running = thread.isAlive() && RUNNING_STATES.contains(thread.getState());
-    if (!running) {
-      LOGGER.info("thread [{}] not running in state [{}]", thread, thread.getState());
-    }
-    return running;
+  public boolean isIdle() {
+    return openHandles.isEmpty();
   }
 
-  private long getConnectedSearchResultCount() {
-    return connectedSearchResults.values().stream().flatMap(Set::stream)
-        .collect(Collectors.counting());
+  int getRefCount() {
+    return refCount.get();
   }
 
-  public boolean isIdle() {
-    return connectedThreads.isEmpty() && connectedSearchResults.isEmpty();
+  /**
+   * @return a snapshot of the handles not released yet
+   */
+  public Set<SearcherHandle> getOpenHandles() {
+    return ImmutableSet.copyOf(openHandles);
   }
 
   /**
@@ -175,57 +176,18 @@ public class SearcherProvider implements AutoCloseable {
     }
   }
 
-  public void connectSearchResults(SearchResults searchResults) {
-    checkState(checkConnected(), "searchResult may not be connected for an unconnected thread");
-    getConnectedSearchResultsForCurrentThread().add(searchResults);
-  }
-
-  Set<SearchResults> getConnectedSearchResultsForCurrentThread() {
-    return connectedSearchResults.computeIfAbsent(getThreadKey(),
-        key -> ConcurrentHashMap.newKeySet(1));
-  }
-
-  public boolean hasSearchResultsForCurrentThread() {
-    return connectedSearchResults.containsKey(getThreadKey());
-  }
-
-  public void cleanUpAllSearchResultsForThread() throws IOException {
-    if (connectedSearchResults.remove(getThreadKey()) != null) {
-      tryClose();
-    }
-  }
-
-  private Thread getThreadKey() {
-    return Thread.currentThread();
-  }
-
-  public void cleanUpSearchResults(SearchResults searchResults) throws IOException {
-    if (hasSearchResultsForCurrentThread()) {
-      Set<SearchResults> currentThreadSet = getConnectedSearchResultsForCurrentThread();
-      if (currentThreadSet.remove(searchResults)) {
-        if (currentThreadSet.isEmpty()) {
-          connectedSearchResults.remove(getThreadKey());
-        }
-        tryClose();
-      }
-    }
-  }
-
   public void logState(Logger log) {
     log.info("logState - {}", this);
-    log.info("logState - {} connected threads: {}", connectedThreads.size(), connectedThreads);
-    log.info("logState - {} connected search results for {} threads",
-        connectedSearchResults.values().stream().flatMap(Collection::stream).collect(counting()),
-        connectedSearchResults.size());
-    connectedSearchResults.forEach((thread, searchResults) -> log.info(
-        "logState - {} has {} connected search results: {}",
-        thread, searchResults.size(), searchResults));
+    for (SearcherHandle handle : getOpenHandles()) {
+      log.info("logState - open {}", handle, handle.getAcquisition());
+    }
   }
 
   @Override
   public String toString() {
-    return "SearcherProvider [" + System.identityHashCode(this) + ", isIdle=" + isIdle()
-        + ", isMarkedToClose=" + isMarkedToClose() + ", isClosed=" + isClosed() + "]";
+    return "SearcherProvider [" + System.identityHashCode(this) + ", generation=" + generation
+        + ", refCount=" + refCount.get() + ", isMarkedToClose=" + isMarkedToClose()
+        + ", isClosed=" + isClosed() + "]";
   }
 
 }
@@ -20,40 +20,92 @@
 package com.xpn.xwiki.plugin.lucene.searcherProvider;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import javax.inject.Singleton;
 
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 @Component
 @Singleton
-public class SearcherProviderManager implements ISearcherProviderRole {
+public class SearcherProviderManager implements ISearcherProviderRole, Initializable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SearcherProviderManager.class);
 
+  /**
+   * hits collected per warming query, all matching documents are scored and sorted regardless
+   */
+  private static final int WARM_HITS = 1;
+
+  /**
+   * handles unreleased for longer are reported as leaked
+   */
+  static final Duration LEAK_THRESHOLD = Duration.ofMinutes(10);
+
+  /**
+   * interval of the periodic leak report, independent of any request or job
+   */
+  static final Duration LEAK_REPORT_INTERVAL = Duration.ofMinutes(1);
+
   private Set<SearcherProvider> allSearcherProviderSet = ConcurrentHashMap.newKeySet();
 
+  private final SearcherWarmStats warmStats = new SearcherWarmStats();
+
+  private final ScheduledExecutorService leakReporter = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("SearcherLeakReporter-%d").setDaemon(true).build());
+
+  @Override
+  public void initialize() {
+    leakReporter.scheduleWithFixedDelay(this::reportLeaksScheduled,
+        LEAK_REPORT_INTERVAL.toMillis(), LEAK_REPORT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void reportLeaksScheduled() {
+    try {
+      reportLeaks(LEAK_THRESHOLD);
+    } catch (RuntimeException exc) {
+      // never throw, it would cancel further reports
+      LOGGER.warn("reportLeaksScheduled - failed, retrying with next report", exc);
+    }
+  }
+
+  /**
+   * Only a fallback, handles are released explicitly by their users. This releases the ones the
+   * current thread acquired and forgot to release, e.g. search results abandoned in a script, at
+   * the end of a request or job. Handles acquired on other threads, e.g. of an executor, are never
+   * released here, they are only reported by the periodic leak report.
+   */
   @Override
   public void closeAllForCurrentThread() {
     int numSearchProviders = getAllSearcherProviders().size();
     LOGGER.debug("closeAllForCurrentThread - start with {} remaining searchProviders",
         numSearchProviders);
+    Thread current = Thread.currentThread();
     for (Iterator<SearcherProvider> iter = getAllSearcherProviders().iterator(); iter.hasNext();) {
       SearcherProvider searcherProvider = iter.next();
-      try {
-        searcherProvider.disconnect();
-        searcherProvider.cleanUpAllSearchResultsForThread();
-      } catch (IOException exp) {
-        LOGGER.error("Failed to disconnect searcherProvider from thread.", exp);
+      for (SearcherHandle handle : searcherProvider.getOpenHandles()) {
+        if (handle.isOwnedBy(current)) {
+          release(handle);
+        }
       }
       if (searcherProvider.isClosed()) {
         iter.remove();
@@ -63,6 +115,35 @@ public class SearcherProviderManager implements ISearcherProviderRole {
         getAllSearcherProviders().size(), (numSearchProviders - getAllSearcherProviders().size()));
   }
 
+  private void release(SearcherHandle handle) {
+    try {
+      LOGGER.debug("closeAllForCurrentThread - releasing {}", handle);
+      handle.release();
+    } catch (IOException exp) {
+      LOGGER.error("Failed to release searcher handle [{}].", handle, exp);
+    }
+  }
+
+  /**
+   * Reports every handle unreleased for longer than the threshold once. The acquiring stack trace
+   * is included if debug logging is enabled for {@link SearcherHandle}.
+   *
+   * @return the number of newly reported handles
+   */
+  int reportLeaks(Duration threshold) {
+    int count = 0;
+    for (SearcherProvider searcherProvider : getAllSearcherProviders()) {
+      for (SearcherHandle handle : searcherProvider.getOpenHandles()) {
+        if ((handle.getAge().compareTo(threshold) > 0) && handle.markLeakReported()) {
+          LOGGER.warn("reportLeaks - unreleased {} on {}", handle, searcherProvider,
+              handle.getAcquisition());
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
   Set<SearcherProvider> getAllSearcherProviders() {
     return allSearcherProviderSet;
   }
@@ -87,15 +168,55 @@ public class SearcherProviderManager implements ISearcherProviderRole {
     if (getAllSearcherProviders().size() > 20) {
       LOGGER.warn("createSearchProvider - list increased to {}", getAllSearcherProviders().size());
     }
+    reportLeaks(LEAK_THRESHOLD);
     return newSearcherProvider;
   }
 
+  @Override
+  public SearcherProvider createWarmedSearchProvider(List<IndexSearcher> searchers,
+      Collection<Query> queries, Collection<Sort> sorts) {
+    long start = System.nanoTime();
+    boolean failed = false;
+    for (IndexSearcher searcher : searchers) {
+      for (Query query : queries) {
+        failed |= !warm(searcher, query, null);
+      }
+      for (Sort sort : sorts) {
+        failed |= !warm(searcher, new MatchAllDocsQuery(), sort);
+      }
+    }
+    warmStats.record(System.nanoTime() - start, failed);
+    LOGGER.debug("createWarmedSearchProvider - warmed in {}ms", warmStats.getLastMillis());
+    return createSearchProvider(searchers);
+  }
+
+  private boolean warm(IndexSearcher searcher, Query query, Sort sort) {
+    try {
+      if (sort != null) {
+        searcher.search(query, null, WARM_HITS, sort);
+      } else {
+        searcher.search(query, WARM_HITS);
+      }
+      return true;
+    } catch (IOException | RuntimeException exc) {
+      LOGGER.warn("warm - failed for query [{}] and sort [{}]", query, sort, exc);
+      return false;
+    }
+  }
+
+  @Override
+  public SearcherWarmStats getWarmStats() {
+    return warmStats;
+  }
+
   @Override
   public void logState(Logger log) {
+    log.info("logState - {}", warmStats);
     List<SearcherProvider> providersToClose = getAllSearcherProviders().stream()
         .filter(SearcherProvider::isMarkedToClose).collect(Collectors.toList());
     log.info("logState - {} open search providers marked to close", providersToClose.size());
     providersToClose.forEach(searchProvider -> searchProvider.logState(log));
+    log.info("logState - {} newly reported leaks", reportLeaks(LEAK_THRESHOLD));
   }
 
   class DisconnectToken {
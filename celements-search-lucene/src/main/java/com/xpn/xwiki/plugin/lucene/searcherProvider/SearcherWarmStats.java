@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.lucene.searcherProvider;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations of warming new searchers before their {@link SearcherProvider} is published.
+ */
+public class SearcherWarmStats {
+
+  private final LongAdder warmings = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+  private final AtomicLong lastNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  void record(long durationNanos, boolean failed) {
+    warmings.increment();
+    nanos.add(durationNanos);
+    lastNanos.set(durationNanos);
+    maxNanos.accumulateAndGet(durationNanos, Math::max);
+    if (failed) {
+      failures.increment();
+    }
+  }
+
+  public long getWarmings() {
+    return warmings.sum();
+  }
+
+  /**
+   * @return the number of warmings with at least one failed query, the searchers are published
+   *         nonetheless
+   */
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public long getTotalMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+  }
+
+  public double getAverageMillis() {
+    long count = getWarmings();
+    return (count > 0) ? (nanos.sum() / 1e6 / count) : 0;
+  }
+
+  public long getLastMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(lastNanos.get());
+  }
+
+  public long getMaxMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+  }
+
+  @Override
+  public String toString() {
+    return "SearcherWarmStats [warmings=" + getWarmings() + ", failures=" + getFailures()
+        + ", totalMillis=" + getTotalMillis() + ", averageMillis="
+        + String.format("%.3f", getAverageMillis()) + ", lastMillis=" + getLastMillis()
+        + ", maxMillis=" + getMaxMillis() + "]";
+  }
+
+}
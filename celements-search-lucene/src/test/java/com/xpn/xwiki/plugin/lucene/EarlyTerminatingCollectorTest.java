@@ -0,0 +1,73 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class EarlyTerminatingCollectorTest extends AbstractComponentTest {
+
+  private Directory dir;
+  private IndexSearcher searcher;
+
+  @Before
+  public void setUp_EarlyTerminatingCollectorTest() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    for (int i = 0; i < 10; i++) {
+      Document doc = new Document();
+      doc.add(new Field(IndexFields.DOCUMENT_ID, "doc" + i, Field.Store.YES,
+          Field.Index.NOT_ANALYZED));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    searcher = new IndexSearcher(IndexReader.open(dir, true));
+  }
+
+  @After
+  public void tearDown_EarlyTerminatingCollectorTest() throws Exception {
+    searcher.getIndexReader().close();
+    searcher.close();
+    dir.close();
+  }
+
+  @Test
+  public void test_search_terminated() throws Exception {
+    assertEquals(1, EarlyTerminatingCollector.search(searcher, new MatchAllDocsQuery(), 1));
+    assertEquals(3, EarlyTerminatingCollector.search(searcher, new MatchAllDocsQuery(), 3));
+  }
+
+  @Test
+  public void test_search_lessHits() throws Exception {
+    assertEquals(10, EarlyTerminatingCollector.search(searcher, new MatchAllDocsQuery(), 20));
+    assertEquals(0, EarlyTerminatingCollector.search(searcher, new TermQuery(new Term(
+        IndexFields.DOCUMENT_ID, "none")), 1));
+  }
+
+  @Test
+  public void test_search_illegalMaxHits() throws Exception {
+    try {
+      EarlyTerminatingCollector.search(searcher, new MatchAllDocsQuery(), 0);
+      fail("expecting IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class FacetCollectorTest extends AbstractComponentTest {
+
+  private Directory dir;
+  private IndexSearcher searcher;
+
+  @Before
+  public void setUp_FacetCollectorTest() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    for (int i = 0; i < 12; i++) {
+      Document doc = new Document();
+      doc.add(new Field(IndexFields.DOCUMENT_ID, "doc" + i, Field.Store.YES,
+          Field.Index.NOT_ANALYZED));
+      doc.add(new Field(IndexFields.DOCUMENT_SPACE_S, "space" + (i % 3), Field.Store.NO,
+          Field.Index.NOT_ANALYZED));
+      // multiple objects per doc, some of the same class
+      addObject(doc, "xwiki.xwikiusers");
+      if ((i % 2) == 0) {
+        addObject(doc, "classes.tag");
+        addObject(doc, "classes.tag");
+      }
+      writer.addDocument(doc);
+      if ((i % 5) == 4) {
+        // multiple segments
+        writer.commit();
+      }
+    }
+    writer.deleteDocuments(new Term(IndexFields.DOCUMENT_ID, "doc0"));
+    writer.close();
+    searcher = new IndexSearcher(IndexReader.open(dir, true));
+  }
+
+  private void addObject(Document doc, String className) {
+    doc.add(new Field(IndexFields.OBJECT, className, Field.Store.YES, Field.Index.NOT_ANALYZED));
+  }
+
+  @After
+  public void tearDown_FacetCollectorTest() throws Exception {
+    searcher.getIndexReader().close();
+    searcher.close();
+    dir.close();
+  }
+
+  @Test
+  public void test_getFacetCounts() throws Exception {
+    FacetCollector collector = new FacetCollector(Arrays.asList(IndexFields.DOCUMENT_SPACE_S,
+        IndexFields.OBJECT, "missing"));
+    searcher.search(new MatchAllDocsQuery(), collector);
+    Map<String, Map<String, Integer>> counts = collector.getFacetCounts();
+    assertEquals(Arrays.asList(IndexFields.DOCUMENT_SPACE_S, IndexFields.OBJECT, "missing"),
+        new ArrayList<>(counts.keySet()));
+    Map<String, Integer> spaces = counts.get(IndexFields.DOCUMENT_SPACE_S);
+    assertEquals(Arrays.asList("space1", "space2", "space0"), new ArrayList<>(spaces.keySet()));
+    assertEquals(4, (int) spaces.get("space1"));
+    assertEquals(3, (int) spaces.get("space0"));
+    Map<String, Integer> objects = counts.get(IndexFields.OBJECT);
+    assertEquals(11, (int) objects.get("xwiki.xwikiusers"));
+    assertEquals("counted once per doc", 5, (int) objects.get("classes.tag"));
+    assertTrue(counts.get("missing").isEmpty());
+  }
+
+  @Test
+  public void test_getFacetCounts_query() throws Exception {
+    FacetCollector collector = new FacetCollector(Arrays.asList(IndexFields.DOCUMENT_SPACE_S));
+    searcher.search(new TermQuery(new Term(IndexFields.OBJECT, "classes.tag")), collector);
+    Map<String, Integer> spaces = collector.getFacetCounts().get(IndexFields.DOCUMENT_SPACE_S);
+    // doc2, doc4, doc6, doc8, doc10
+    assertEquals(2, (int) spaces.get("space1"));
+    assertEquals(2, (int) spaces.get("space2"));
+    assertEquals(1, (int) spaces.get("space0"));
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IndexOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+import com.xpn.xwiki.plugin.lucene.IndexReplication.Role;
+
+public class IndexReplicationTest extends AbstractComponentTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Directory primaryDir;
+  private Directory sharedDir;
+  private Directory replicaDir;
+  private IndexWriter writer;
+  private IndexReplication primary;
+  private IndexReplication replica;
+
+  @Before
+  public void setUp_IndexReplicationTest() throws Exception {
+    primaryDir = FSDirectory.open(folder.newFolder("primary"));
+    sharedDir = FSDirectory.open(folder.newFolder("shared"));
+    replicaDir = FSDirectory.open(folder.newFolder("replica"));
+    writer = new IndexWriter(primaryDir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    primary = new IndexReplication(Role.PRIMARY, sharedDir);
+    replica = new IndexReplication(Role.REPLICA, sharedDir);
+  }
+
+  @After
+  public void tearDown_IndexReplicationTest() throws Exception {
+    writer.close();
+    primaryDir.close();
+    sharedDir.close();
+    replicaDir.close();
+  }
+
+  @Test
+  public void test_Role_parse() {
+    assertSame(Role.PRIMARY, Role.parse("primary"));
+    assertSame(Role.REPLICA, Role.parse(" Replica "));
+    assertNull(Role.parse(""));
+    assertNull(Role.parse("none"));
+  }
+
+  @Test
+  public void test_pull_nothingPublished() throws Exception {
+    assertFalse(replica.pull(replicaDir));
+  }
+
+  @Test
+  public void test_publish_pull() throws Exception {
+    writer.addDocument(createLuceneDoc("doc1"));
+    writer.commit();
+    primary.publish(getLastCommit(primaryDir), primaryDir);
+    assertTrue(replica.pull(replicaDir));
+    assertEquals(1, countDocs(replicaDir));
+    assertFalse("already up to date", replica.pull(replicaDir));
+
+    writer.addDocument(createLuceneDoc("doc2"));
+    writer.deleteDocuments(new Term(IndexFields.DOCUMENT_ID, "doc1"));
+    writer.commit();
+    primary.publish(getLastCommit(primaryDir), primaryDir);
+    assertTrue(replica.pull(replicaDir));
+    assertEquals(1, countDocs(replicaDir));
+    try (IndexReader reader = IndexReader.open(replicaDir, true)) {
+      assertEquals(0, reader.docFreq(new Term(IndexFields.DOCUMENT_ID, "doc1")));
+      assertEquals(1, reader.docFreq(new Term(IndexFields.DOCUMENT_ID, "doc2")));
+    }
+  }
+
+  @Test
+  public void test_publish_onlyMissingFiles() throws Exception {
+    writer.addDocument(createLuceneDoc("doc1"));
+    writer.commit();
+    IndexCommit first = getLastCommit(primaryDir);
+    primary.publish(first, primaryDir);
+    writer.addDocument(createLuceneDoc("doc2"));
+    writer.commit();
+    IndexCommit second = getLastCommit(primaryDir);
+    primary.publish(second, primaryDir);
+    // files of the previous commit are retained for replicas still copying them
+    assertTrue(sharedDir.fileExists(first.getSegmentsFileName()));
+    assertTrue(sharedDir.fileExists(second.getSegmentsFileName()));
+    assertTrue(replica.pull(replicaDir));
+    assertEquals(2, countDocs(replicaDir));
+  }
+
+  @Test
+  public void test_pull_firstPull_replacesStaleFiles() throws Exception {
+    writer.addDocument(createLuceneDoc("doc1"));
+    writer.commit();
+    IndexCommit commit = getLastCommit(primaryDir);
+    primary.publish(commit, primaryDir);
+    for (String fileName : commit.getFileNames()) {
+      // same name and length as published, but different content
+      try (IndexOutput out = replicaDir.createOutput(fileName)) {
+        out.writeBytes(new byte[(int) sharedDir.fileLength(fileName)], 0,
+            (int) sharedDir.fileLength(fileName));
+      }
+    }
+    assertTrue(replica.pull(replicaDir));
+    assertEquals(1, countDocs(replicaDir));
+    try (IndexReader reader = IndexReader.open(replicaDir, true)) {
+      assertEquals(1, reader.docFreq(new Term(IndexFields.DOCUMENT_ID, "doc1")));
+    }
+  }
+
+  @Test
+  public void test_pull_noPendingSegmentsFile() throws Exception {
+    writer.addDocument(createLuceneDoc("doc1"));
+    writer.commit();
+    primary.publish(getLastCommit(primaryDir), primaryDir);
+    assertTrue(replica.pull(replicaDir));
+    for (Directory dir : Arrays.asList(sharedDir, replicaDir)) {
+      for (String fileName : dir.listAll()) {
+        assertFalse(fileName, fileName.startsWith(IndexReplication.PENDING_PREFIX));
+      }
+    }
+  }
+
+  @Test
+  public void test_roles() throws Exception {
+    try {
+      replica.publish(getLastCommit(primaryDir), primaryDir);
+      fail("expecting IllegalStateException");
+    } catch (IllegalStateException ise) {
+      // expected
+    }
+    try {
+      primary.pull(replicaDir);
+      fail("expecting IllegalStateException");
+    } catch (IllegalStateException ise) {
+      // expected
+    }
+  }
+
+  private IndexCommit getLastCommit(Directory dir) throws IOException {
+    if (!IndexReader.indexExists(dir)) {
+      writer.commit();
+    }
+    List<IndexCommit> commits = IndexReader.listCommits(dir);
+    return commits.get(commits.size() - 1);
+  }
+
+  private int countDocs(Directory dir) throws IOException {
+    try (IndexReader reader = IndexReader.open(dir, true)) {
+      return reader.numDocs();
+    }
+  }
+
+  private Document createLuceneDoc(String id) {
+    Document doc = new Document();
+    doc.add(new Field(IndexFields.DOCUMENT_ID, id, Field.Store.YES, Field.Index.NOT_ANALYZED));
+    return doc;
+  }
+
+}
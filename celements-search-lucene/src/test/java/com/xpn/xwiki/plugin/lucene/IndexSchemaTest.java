@@ -0,0 +1,80 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.lucene.document.Field;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.xpn.xwiki.XWikiConfigSource;
+
+public class IndexSchemaTest extends AbstractComponentTest {
+
+  private XWikiConfigSource cfgMock;
+
+  @Before
+  public void setUp_IndexSchemaTest() throws Exception {
+    cfgMock = registerComponentMock(XWikiConfigSource.class);
+  }
+
+  @Test
+  public void test_fromConfig_default() {
+    expect(cfgMock.getProperty(IndexSchema.PROP_SCHEMA)).andReturn(null);
+    expect(cfgMock.getProperty(IndexSchema.PROP_STORED_PROPERTIES)).andReturn(null);
+    replayDefault();
+    IndexSchema schema = IndexSchema.fromConfig(cfgMock);
+    verifyDefault();
+    assertFalse(schema.isLean());
+    assertEquals(IndexSchema.FULL, schema.getName());
+    assertSame(Field.Store.YES, schema.store(IndexFields.DOCUMENT_NAME_S));
+    assertSame(Field.Store.YES, schema.store("Space.Class.prop"));
+  }
+
+  @Test
+  public void test_fromConfig_lean() {
+    expect(cfgMock.getProperty(IndexSchema.PROP_SCHEMA)).andReturn(" Lean ");
+    expect(cfgMock.getProperty(IndexSchema.PROP_STORED_PROPERTIES)).andReturn(
+        "Space.Class, Other.Class.prop ,");
+    replayDefault();
+    IndexSchema schema = IndexSchema.fromConfig(cfgMock);
+    verifyDefault();
+    assertTrue(schema.isLean());
+    assertEquals(IndexSchema.LEAN, schema.getName());
+    assertTrue(schema.isStored("Space.Class.any"));
+    assertTrue(schema.isStored("Other.Class.prop"));
+    assertTrue(schema.isStored("Other.Class.prop.key"));
+    assertFalse(schema.isStored("Other.Class.other"));
+    assertFalse(schema.isStored("Other.Class.property"));
+  }
+
+  @Test
+  public void test_store_lean() {
+    IndexSchema schema = new IndexSchema(true, List.of());
+    for (String field : IndexSchema.REDUNDANT_FIELDS) {
+      assertSame(field, Field.Store.NO, schema.store(field));
+    }
+    for (String field : List.of(IndexFields.DOCUMENT_ID, IndexFields.DOCUMENT_TITLE,
+        IndexFields.DOCUMENT_NAME, IndexFields.DOCUMENT_SPACE, IndexFields.DOCUMENT_FULLNAME,
+        IndexFields.DOCUMENT_WIKI, IndexFields.DOCUMENT_DATE, IndexFields.OBJECT,
+        IndexFields.FILENAME)) {
+      assertSame(field, Field.Store.YES, schema.store(field));
+    }
+    assertSame(Field.Store.NO, schema.store("Space.Class.prop"));
+  }
+
+  @Test
+  public void test_toLean() {
+    IndexSchema schema = new IndexSchema(false, List.of("Space.Class"));
+    IndexSchema lean = schema.toLean();
+    assertTrue(lean.isLean());
+    assertSame(lean, lean.toLean());
+    assertTrue(lean.isStored("Space.Class.prop"));
+    assertFalse(lean.isStored(IndexFields.DOCUMENT_WEB));
+  }
+
+}
@@ -0,0 +1,52 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class IndexSizeReportTest {
+
+  @Test
+  public void test_create() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    for (int i = 0; i < 10; i++) {
+      Document doc = new Document();
+      doc.add(new Field(IndexFields.DOCUMENT_NAME, "name", Field.Store.YES, Field.Index.ANALYZED));
+      doc.add(new Field(IndexFields.DOCUMENT_NAME_S, "name", Field.Store.YES,
+          Field.Index.NOT_ANALYZED));
+      doc.add(new Field("Space.Class.prop", "value", Field.Store.YES, Field.Index.ANALYZED));
+      doc.add(new Field(IndexFields.FULLTEXT, "not stored", Field.Store.NO, Field.Index.ANALYZED));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    try (IndexReader reader = IndexReader.open(dir, true)) {
+      IndexSizeReport report = IndexSizeReport.create(List.of(reader), IndexSchema.FULL, 1234,
+          new IndexSchema(true, List.of()), 5);
+      assertEquals(IndexSchema.FULL, report.getSchemaName());
+      assertEquals(10, report.getNumDocs());
+      assertEquals(5, report.getSampledDocs());
+      assertEquals(1234, report.getIndexBytes());
+      assertEquals(40, (long) report.getStoredBytesByField().get(IndexFields.DOCUMENT_NAME));
+      assertEquals(40, (long) report.getStoredBytesByField().get(IndexFields.DOCUMENT_NAME_S));
+      assertEquals(50, (long) report.getStoredBytesByField().get("Space.Class.prop"));
+      assertNull(report.getStoredBytesByField().get(IndexFields.FULLTEXT));
+      assertEquals(130, report.getStoredBytes());
+      assertEquals(40, report.getLeanStoredBytes());
+      assertEquals(90, report.getSavedBytes());
+    }
+  }
+
+}
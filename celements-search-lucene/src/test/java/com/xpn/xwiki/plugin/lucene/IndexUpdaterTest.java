@@ -21,22 +21,51 @@ package com.xpn.xwiki.plugin.lucene;
 
 import static com.celements.common.test.CelementsTestUtils.*;
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 import org.xwiki.rendering.syntax.Syntax;
 
 import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.LuceneDocType;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+import com.xpn.xwiki.XWikiConfigSource;
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.lucene.indexExtension.ILuceneIndexExtensionServiceRole;
+import com.xpn.xwiki.plugin.lucene.observation.event.AbstractLuceneBatchEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentDeletedEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentDeletingEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentIndexedEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentIndexingEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentsDeletedEvent;
+import com.xpn.xwiki.plugin.lucene.observation.event.LuceneDocumentsIndexedEvent;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 
 /**
@@ -48,6 +77,8 @@ public class IndexUpdaterTest extends AbstractComponentTest {
 
   private final static String INDEXDIR = "target/lucenetest";
 
+  private final static String UPDATER_THREAD = "IndexUpdater-test";
+
   private final Semaphore rebuildDone = new Semaphore(0);
 
   private final Semaphore writeBlockerWait = new Semaphore(0);
@@ -60,6 +91,10 @@ public class IndexUpdaterTest extends AbstractComponentTest {
 
   private XWikiDocument loremIpsum;
 
+  private final List<Event> notifiedEvents = new CopyOnWriteArrayList<>();
+
+  private final List<String> notifyingThreads = new CopyOnWriteArrayList<>();
+
   private class TestIndexRebuilder extends IndexRebuilder {
 
     public TestIndexRebuilder(IndexUpdater indexUpdater) {
@@ -73,6 +108,18 @@ public class IndexUpdaterTest extends AbstractComponentTest {
     }
   }
 
+  private static class TestIndexData extends AbstractIndexData {
+
+    TestIndexData(String name, boolean deleted) {
+      super(LuceneDocType.wikipage, new DocumentReference("wiki", "Space", name), deleted);
+    }
+
+    @Override
+    public String getId() {
+      return "wiki:Space." + getEntityReference().getName() + ".default";
+    }
+  }
+
   private class TestIndexUpdater extends IndexUpdater {
 
     TestIndexUpdater(IndexWriter writer, LucenePlugin plugin, XWikiContext context)
@@ -146,6 +193,171 @@ public class IndexUpdaterTest extends AbstractComponentTest {
     // TODO fix and improve tests
   }
 
+  @Test
+  public void test_backupIndex() throws Exception {
+    XWikiConfigSource cfgMock = registerComponentMock(XWikiConfigSource.class);
+    expect(cfgMock.getProperty(IndexUpdater.PROP_INDEXING_INTERVAL)).andReturn("30").anyTimes();
+    expect(cfgMock.getProperty(IndexUpdater.PROP_COMMIT_INTERVAL)).andReturn("5000").anyTimes();
+    expect(cfgMock.getProperty(anyObject(String.class))).andReturn(null).anyTimes();
+    LucenePlugin pluginMock = createDefaultMock(LucenePlugin.class);
+    expect(pluginMock.getReplication()).andReturn(Optional.empty()).anyTimes();
+    pluginMock.closeSearcherProvider();
+    expectLastCall().times(2);
+    replayDefault();
+    Directory directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)).setIndexDeletionPolicy(
+            new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy())));
+    IndexUpdater indexUpdater = new IndexUpdater(writer, pluginMock);
+    writer.addDocument(createLuceneDoc("wiki:Space.Doc1.default"));
+    Instant beforeCommit = Instant.now();
+    indexUpdater.commitIndex();
+    Directory target = new RAMDirectory();
+    Instant indexedUntil = indexUpdater.backupIndex(target);
+    writer.addDocument(createLuceneDoc("wiki:Space.Doc2.default"));
+    indexUpdater.commitIndex();
+    verifyDefault();
+    assertFalse(indexedUntil.isBefore(beforeCommit));
+    try (IndexReader reader = IndexReader.open(target, true)) {
+      assertEquals(1, reader.numDocs());
+      assertEquals("wiki:Space.Doc1.default", reader.document(0).get(IndexFields.DOCUMENT_ID));
+    }
+    try {
+      indexUpdater.backupIndex(target);
+      fail("expecting IllegalArgumentException for non empty target");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    writer.close();
+  }
+
+  @Test
+  public void test_notify_batchPerCommit() throws Exception {
+    expectNotify(null);
+    IndexWriter writer = createWriter();
+    IndexUpdater indexUpdater = createIndexUpdater(writer, false);
+    runIndexUpdater(indexUpdater, new TestIndexData("Doc1", false),
+        new TestIndexData("Doc2", false), new TestIndexData("Doc3", true));
+    verifyDefault();
+    assertEquals(getExpectedEventTypes(), getNotifiedEventTypes());
+    assertEquals(2, getNotified(LuceneDocumentsIndexedEvent.class).getReferences().size());
+    assertEquals(1, getNotified(LuceneDocumentsDeletedEvent.class).getReferences().size());
+    assertEquals(Collections.singleton(UPDATER_THREAD), new HashSet<>(notifyingThreads));
+    writer.close();
+  }
+
+  @Test
+  public void test_notify_async() throws Exception {
+    expectNotify(null);
+    IndexWriter writer = createWriter();
+    IndexUpdater indexUpdater = createIndexUpdater(writer, true);
+    runIndexUpdater(indexUpdater, new TestIndexData("Doc1", false),
+        new TestIndexData("Doc2", false), new TestIndexData("Doc3", true));
+    verifyDefault();
+    assertEquals("async events keep their order", getExpectedEventTypes(),
+        getNotifiedEventTypes());
+    for (String thread : notifyingThreads) {
+      assertTrue(thread, thread.startsWith("IndexUpdater-notify-"));
+    }
+    writer.close();
+  }
+
+  @Test
+  public void test_notify_listenerFailure() throws Exception {
+    expectNotify(new IllegalStateException("failing listener"));
+    IndexWriter writer = createWriter();
+    IndexUpdater indexUpdater = createIndexUpdater(writer, false);
+    runIndexUpdater(indexUpdater, new TestIndexData("Doc1", false),
+        new TestIndexData("Doc2", false));
+    verifyDefault();
+    assertEquals(2, writer.numDocs());
+    assertEquals(Arrays.asList(LuceneDocumentIndexingEvent.class,
+        LuceneDocumentIndexedEvent.class, LuceneDocumentIndexingEvent.class,
+        LuceneDocumentIndexedEvent.class, LuceneDocumentsIndexedEvent.class),
+        getNotifiedEventTypes());
+    writer.close();
+  }
+
+  private void expectNotify(RuntimeException failure) {
+    ObservationManager observationMock = registerComponentMock(ObservationManager.class);
+    observationMock.notify(anyObject(Event.class), anyObject(), anyObject());
+    expectLastCall().andAnswer(() -> {
+      notifiedEvents.add((Event) getCurrentArguments()[0]);
+      notifyingThreads.add(Thread.currentThread().getName());
+      if (failure != null) {
+        throw failure;
+      }
+      return null;
+    }).anyTimes();
+  }
+
+  private IndexWriter createWriter() throws IOException {
+    return new IndexWriter(new RAMDirectory(), new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)).setIndexDeletionPolicy(
+            new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy())));
+  }
+
+  private IndexUpdater createIndexUpdater(IndexWriter writer, boolean notifyAsync) {
+    XWikiConfigSource cfgMock = registerComponentMock(XWikiConfigSource.class);
+    expect(cfgMock.getProperty(IndexUpdater.PROP_INDEXING_INTERVAL)).andReturn("0").anyTimes();
+    expect(cfgMock.getProperty(IndexUpdater.PROP_COMMIT_INTERVAL)).andReturn("60000")
+        .anyTimes();
+    expect(cfgMock.getProperty(IndexUpdater.PROP_NOTIFY_ASYNC)).andReturn(
+        Boolean.toString(notifyAsync)).anyTimes();
+    expect(cfgMock.getProperty(anyObject(String.class))).andReturn(null).anyTimes();
+    ILuceneIndexExtensionServiceRole extensionMock = registerComponentMock(
+        ILuceneIndexExtensionServiceRole.class);
+    extensionMock.extend(anyObject(AbstractIndexData.class), anyObject(Document.class));
+    expectLastCall().anyTimes();
+    LucenePlugin pluginMock = createDefaultMock(LucenePlugin.class);
+    expect(pluginMock.getReplication()).andReturn(Optional.empty()).anyTimes();
+    pluginMock.closeSearcherProvider();
+    expectLastCall().once();
+    replayDefault();
+    return new IndexUpdater(writer, pluginMock);
+  }
+
+  /**
+   * queues the data and runs the updater until it has indexed and committed all of it
+   */
+  private void runIndexUpdater(IndexUpdater indexUpdater, AbstractIndexData... data)
+      throws InterruptedException {
+    for (AbstractIndexData entry : data) {
+      indexUpdater.queue(entry);
+    }
+    Thread thread = new Thread(indexUpdater, UPDATER_THREAD);
+    thread.start();
+    long timeout = System.currentTimeMillis() + 10000;
+    while ((indexUpdater.getQueueSize() > 0) && (System.currentTimeMillis() < timeout)) {
+      Thread.sleep(10);
+    }
+    // the current iteration still commits and notifies, pending async events are delivered
+    indexUpdater.doExit();
+    thread.join(10000);
+    assertFalse("updater still running", thread.isAlive());
+  }
+
+  private List<Class<?>> getExpectedEventTypes() {
+    return Arrays.asList(LuceneDocumentIndexingEvent.class, LuceneDocumentIndexedEvent.class,
+        LuceneDocumentIndexingEvent.class, LuceneDocumentIndexedEvent.class,
+        LuceneDocumentDeletingEvent.class, LuceneDocumentDeletedEvent.class,
+        LuceneDocumentsIndexedEvent.class, LuceneDocumentsDeletedEvent.class);
+  }
+
+  private List<Class<?>> getNotifiedEventTypes() {
+    return notifiedEvents.stream().map(Object::getClass).collect(Collectors.toList());
+  }
+
+  private AbstractLuceneBatchEvent getNotified(Class<? extends AbstractLuceneBatchEvent> type) {
+    return notifiedEvents.stream().filter(type::isInstance).map(type::cast).findFirst().get();
+  }
+
+  private Document createLuceneDoc(String id) {
+    Document doc = new Document();
+    doc.add(new Field(IndexFields.DOCUMENT_ID, id, Field.Store.YES, Field.Index.NOT_ANALYZED));
+    return doc;
+  }
+
   // public void testCreateIndex() throws IOException {
   // replayDefault();
   // File f = new File(INDEXDIR);
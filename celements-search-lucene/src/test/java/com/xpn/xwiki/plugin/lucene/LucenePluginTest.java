@@ -0,0 +1,73 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class LucenePluginTest extends AbstractComponentTest {
+
+  private LucenePlugin plugin;
+
+  @Before
+  public void setUp_LucenePluginTest() throws Exception {
+    plugin = new LucenePlugin("lucene", LucenePlugin.class.getName(), getContext());
+  }
+
+  @Test
+  public void test_getCachedFilter_reopenedWithDeletion() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    writer.addDocument(createDoc("doc1"));
+    writer.addDocument(createDoc("doc2"));
+    writer.commit();
+    Filter filter = plugin.getCachedFilter(new TermQuery(new Term(IndexFields.DOCUMENT_WIKI,
+        "wiki")));
+    assertSame(filter, plugin.getCachedFilter(new TermQuery(new Term(IndexFields.DOCUMENT_WIKI,
+        "wiki"))));
+    IndexReader reader = IndexReader.open(dir, true);
+    assertEquals(2, count(reader, filter));
+    writer.deleteDocuments(new Term(IndexFields.DOCUMENT_ID, "doc1"));
+    writer.close();
+    IndexReader reopened = reader.reopen();
+    assertNotSame("reopened with the deletion", reader, reopened);
+    assertEquals("deleted document not returned", 1, count(reopened, filter));
+    reader.close();
+    reopened.close();
+  }
+
+  private Document createDoc(String id) {
+    Document doc = new Document();
+    doc.add(new Field(IndexFields.DOCUMENT_ID, id, Field.Store.YES, Field.Index.NOT_ANALYZED));
+    doc.add(new Field(IndexFields.DOCUMENT_WIKI, "wiki", Field.Store.YES,
+        Field.Index.NOT_ANALYZED));
+    return doc;
+  }
+
+  private int count(IndexReader reader, Filter filter) throws Exception {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    try {
+      // a top-level constant score query doesn't exclude deleted documents itself
+      return searcher.search(new ConstantScoreQuery(filter), 10).totalHits;
+    } finally {
+      searcher.close();
+    }
+  }
+
+}
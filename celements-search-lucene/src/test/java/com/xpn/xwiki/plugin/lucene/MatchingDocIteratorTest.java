@@ -0,0 +1,118 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class MatchingDocIteratorTest extends AbstractComponentTest {
+
+  private static final int DOC_COUNT = 23;
+
+  private Directory dir;
+  private IndexSearcher searcher;
+
+  @Before
+  public void setUp_MatchingDocIteratorTest() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    for (int i = 0; i < DOC_COUNT; i++) {
+      Document doc = new Document();
+      doc.add(new Field(IndexFields.DOCUMENT_ID, "doc" + i, Field.Store.YES,
+          Field.Index.NOT_ANALYZED));
+      doc.add(new Field(IndexFields.DOCUMENT_TYPE, ((i % 2) == 0) ? "even" : "odd",
+          Field.Store.YES, Field.Index.NOT_ANALYZED));
+      writer.addDocument(doc);
+      if ((i % 10) == 9) {
+        // multiple segments
+        writer.commit();
+      }
+    }
+    writer.deleteDocuments(new Term(IndexFields.DOCUMENT_ID, "doc4"));
+    writer.close();
+    searcher = new IndexSearcher(IndexReader.open(dir, true));
+  }
+
+  @After
+  public void tearDown_MatchingDocIteratorTest() throws Exception {
+    searcher.getIndexReader().close();
+    searcher.close();
+    dir.close();
+  }
+
+  @Test
+  public void test_all() throws Exception {
+    List<String> ids = iterate(new MatchAllDocsQuery());
+    assertEquals(DOC_COUNT - 1, ids.size());
+    assertEquals("doc0", ids.get(0));
+    assertEquals("doc22", ids.get(ids.size() - 1));
+    assertFalse("deleted", ids.contains("doc4"));
+  }
+
+  @Test
+  public void test_term() throws Exception {
+    List<String> ids = iterate(new TermQuery(new Term(IndexFields.DOCUMENT_TYPE, "odd")));
+    assertEquals(11, ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      assertEquals("index order", "doc" + ((2 * i) + 1), ids.get(i));
+    }
+  }
+
+  @Test
+  public void test_boolean() throws Exception {
+    BooleanQuery query = new BooleanQuery();
+    query.add(new TermQuery(new Term(IndexFields.DOCUMENT_TYPE, "even")), Occur.MUST);
+    query.add(new TermQuery(new Term(IndexFields.DOCUMENT_ID, "doc6")), Occur.MUST_NOT);
+    List<String> ids = iterate(query);
+    // 12 even docs without the deleted doc4 and the excluded doc6
+    assertEquals(10, ids.size());
+    assertFalse(ids.contains("doc6"));
+  }
+
+  @Test
+  public void test_noMatch() throws Exception {
+    assertTrue(iterate(new TermQuery(new Term(IndexFields.DOCUMENT_TYPE, "none"))).isEmpty());
+  }
+
+  @Test
+  public void test_fieldSelector() throws Exception {
+    MatchingDocIterator iter = new MatchingDocIterator(searcher, new MatchAllDocsQuery(),
+        new MapFieldSelector(IndexFields.DOCUMENT_ID));
+    Document doc = iter.next();
+    assertEquals("doc0", doc.get(IndexFields.DOCUMENT_ID));
+    assertNull(doc.get(IndexFields.DOCUMENT_TYPE));
+  }
+
+  private List<String> iterate(Query query) throws Exception {
+    List<String> ids = new ArrayList<>();
+    MatchingDocIterator iter = new MatchingDocIterator(searcher, query, null);
+    while (iter.hasNext()) {
+      ids.add(iter.next().get(IndexFields.DOCUMENT_ID));
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class NumericQueryParserTest {
+
+  private NumericQueryParser parser;
+
+  @Before
+  public void setUp_NumericQueryParserTest() throws Exception {
+    parser = new NumericQueryParser(LucenePlugin.VERSION, new String[] { IndexFields.FULLTEXT },
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION));
+  }
+
+  @Test
+  public void test_parse_range() throws Exception {
+    Query query = parser.parse("date_n:([201901010000 TO *])");
+    assertTrue(query.toString(), query instanceof NumericRangeQuery);
+    NumericRangeQuery<?> rangeQuery = (NumericRangeQuery<?>) query;
+    assertEquals("date_n", rangeQuery.getField());
+    assertEquals(201901010000L, rangeQuery.getMin());
+    assertNull(rangeQuery.getMax());
+  }
+
+  @Test(expected = ParseException.class)
+  public void test_parse_range_notNumber() throws Exception {
+    parser.parse("date_n:([2020-01 TO 202101010000])");
+  }
+
+  @Test
+  public void test_parse_range_string() throws Exception {
+    assertTrue(parser.parse("date:([201901010000 TO 202001010000])") instanceof TermRangeQuery);
+  }
+
+  @Test
+  public void test_parse_term() throws Exception {
+    Query query = parser.parse("date_n:201901010000");
+    assertTrue(query.toString(), query instanceof NumericRangeQuery);
+    assertEquals(201901010000L, ((NumericRangeQuery<?>) query).getMin());
+    assertEquals(201901010000L, ((NumericRangeQuery<?>) query).getMax());
+  }
+
+  @Test(expected = ParseException.class)
+  public void test_parse_term_notNumber() throws Exception {
+    parser.parse("date_n:abc");
+  }
+
+  @Test
+  public void test_search() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    for (long date : new long[] { 201801010000L, 201906151230L, 202012312359L }) {
+      Document doc = new Document();
+      doc.add(IndexFields.createNumericField(IndexFields.DOCUMENT_DATE, date));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    try (IndexReader reader = IndexReader.open(dir, true)) {
+      IndexSearcher searcher = new IndexSearcher(reader);
+      assertEquals(2, searcher.search(parser.parse(
+          "date_n:([201901010000 TO *])"), 10).totalHits);
+      assertEquals(1, searcher.search(parser.parse(
+          "date_n:([201901010000 TO 202001010000])"), 10).totalHits);
+      assertEquals(1, searcher.search(parser.parse("date_n:201801010000"), 10).totalHits);
+    }
+  }
+
+}
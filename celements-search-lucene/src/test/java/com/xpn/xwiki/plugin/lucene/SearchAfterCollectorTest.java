@@ -0,0 +1,117 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.index.analysis.CelementsSimpleAnalyzer;
+
+public class SearchAfterCollectorTest extends AbstractComponentTest {
+
+  private static final int DOC_COUNT = 23;
+
+  private Directory dir;
+  private IndexSearcher searcher;
+
+  @Before
+  public void setUp_SearchAfterCollectorTest() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LucenePlugin.VERSION,
+        new CelementsSimpleAnalyzer(LucenePlugin.VERSION)));
+    for (int i = 0; i < DOC_COUNT; i++) {
+      Document doc = new Document();
+      doc.add(new Field(IndexFields.DOCUMENT_ID, "doc" + i, Field.Store.YES,
+          Field.Index.NOT_ANALYZED));
+      // duplicate titles to test the tie break
+      doc.add(new Field(IndexFields.DOCUMENT_TITLE_SORT, "title" + (i % 5), Field.Store.NO,
+          Field.Index.NOT_ANALYZED));
+      doc.add(IndexFields.createNumericField(IndexFields.DOCUMENT_DATE, i % 7));
+      writer.addDocument(doc);
+      if ((i % 10) == 9) {
+        // multiple segments
+        writer.commit();
+      }
+    }
+    writer.close();
+    searcher = new IndexSearcher(IndexReader.open(dir, true));
+  }
+
+  @After
+  public void tearDown_SearchAfterCollectorTest() throws Exception {
+    searcher.getIndexReader().close();
+    searcher.close();
+    dir.close();
+  }
+
+  @Test
+  public void test_unsorted() throws Exception {
+    assertPaging(null);
+  }
+
+  @Test
+  public void test_sorted_string() throws Exception {
+    assertPaging(new Sort(new SortField(IndexFields.DOCUMENT_TITLE_SORT, SortField.STRING, true)));
+  }
+
+  @Test
+  public void test_sorted_long() throws Exception {
+    assertPaging(new Sort(new SortField(IndexFields.numericField(IndexFields.DOCUMENT_DATE),
+        SortField.LONG), SortField.FIELD_SCORE));
+  }
+
+  @Test
+  public void test_cursorMismatch() throws Exception {
+    SearchCursor unsorted = SearchCursor.after(1, new ScoreDoc(1, 1f));
+    try {
+      new SearchAfterCollector(unsorted, new Sort(new SortField(
+          IndexFields.DOCUMENT_TITLE_SORT, SortField.STRING)), 10);
+      fail("expecting IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+  }
+
+  private void assertPaging(Sort sort) throws Exception {
+    TopDocs all = (sort != null) ? searcher.search(new MatchAllDocsQuery(), null, DOC_COUNT, sort)
+        : searcher.search(new MatchAllDocsQuery(), DOC_COUNT);
+    List<Integer> paged = new ArrayList<>();
+    SearchCursor cursor = null;
+    do {
+      SearchAfterCollector collector = new SearchAfterCollector(cursor, sort, 4);
+      searcher.search(new MatchAllDocsQuery(), collector);
+      TopDocs page = collector.topDocs();
+      assertEquals(DOC_COUNT, page.totalHits);
+      for (ScoreDoc scoreDoc : page.scoreDocs) {
+        paged.add(scoreDoc.doc);
+      }
+      cursor = (page.scoreDocs.length == 4) ? SearchCursor.fromToken(SearchCursor.after(1,
+          page.scoreDocs[page.scoreDocs.length - 1]).toToken(),
+          (sort != null) ? sort.getSort().length : 0) : null;
+    } while (cursor != null);
+    List<Integer> expected = new ArrayList<>();
+    for (ScoreDoc scoreDoc : all.scoreDocs) {
+      expected.add(scoreDoc.doc);
+    }
+    assertEquals(expected, paged);
+  }
+
+}
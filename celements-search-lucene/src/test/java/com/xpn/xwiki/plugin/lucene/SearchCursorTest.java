@@ -0,0 +1,85 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.Test;
+
+public class SearchCursorTest {
+
+  @Test
+  public void test_token_unsorted() {
+    SearchCursor cursor = SearchCursor.fromToken(SearchCursor.after(3, new ScoreDoc(42, 1.5f))
+        .toToken(), 0);
+    assertEquals(3, cursor.getGeneration());
+    assertEquals(42, cursor.getDoc());
+    assertEquals(1.5f, cursor.getScore(), 0);
+    assertFalse(cursor.isSorted());
+  }
+
+  @Test
+  public void test_token_sorted() {
+    FieldDoc last = new FieldDoc(7, Float.NaN, new Object[] { "Tïtle", null, 202001010000L,
+        0.5f });
+    SearchCursor cursor = SearchCursor.fromToken(SearchCursor.after(1, last).toToken(), 4);
+    assertEquals(7, cursor.getDoc());
+    assertTrue(cursor.isSorted());
+    assertEquals(4, cursor.getValueCount());
+    assertEquals("Tïtle", cursor.getValue(0));
+    assertNull(cursor.getValue(1));
+    assertEquals(202001010000L, cursor.getValue(2));
+    assertEquals(0.5f, cursor.getValue(3));
+  }
+
+  @Test
+  public void test_fromToken_invalid() {
+    for (String token : new String[] { "", "abc", "not a token!" }) {
+      try {
+        SearchCursor.fromToken(token, 0);
+        fail("expecting IllegalArgumentException for " + token);
+      } catch (IllegalArgumentException iae) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void test_fromToken_invalidValueCount() throws IOException {
+    String sorted = SearchCursor.after(1, new FieldDoc(7, Float.NaN, new Object[] { 1L, 2L }))
+        .toToken();
+    for (int count : new int[] { -2, 3, Integer.MAX_VALUE }) {
+      assertInvalidToken(createToken(count), 1);
+    }
+    assertInvalidToken(sorted, 1);
+    // more values than bytes left
+    assertInvalidToken(createToken(3), 5);
+    assertEquals(2, SearchCursor.fromToken(sorted, 2).getValueCount());
+  }
+
+  private String createToken(int count) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeLong(1);
+      out.writeInt(7);
+      out.writeFloat(1f);
+      out.writeInt(count);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+  }
+
+  private void assertInvalidToken(String token, int maxValueCount) {
+    try {
+      SearchCursor.fromToken(token, maxValueCount);
+      fail("expecting IllegalArgumentException for " + token);
+    } catch (IllegalArgumentException iae) {
+      assertTrue(iae.getCause() instanceof IOException);
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.celements.rights.access.EAccessLevel;
+import com.celements.rights.access.IRightsAccessFacadeRole;
+import com.xpn.xwiki.api.XWiki;
+
+public class SearchResultCheckerTest extends AbstractComponentTest {
+
+  private QueryManager queryManagerMock;
+  private IRightsAccessFacadeRole rightsAccessMock;
+  private XWiki xwikiMock;
+  private SearchResultChecker checker;
+
+  private final DocumentReference docRef1 = new DocumentReference("wiki", "Space", "Doc1");
+  private final DocumentReference docRef2 = new DocumentReference("wiki", "Space", "Doc2");
+  private final DocumentReference docRef3 = new DocumentReference("wiki", "Space", "Doc3");
+
+  @Before
+  public void setUp_SearchResultCheckerTest() throws Exception {
+    queryManagerMock = registerComponentMock(QueryManager.class);
+    rightsAccessMock = registerComponentMock(IRightsAccessFacadeRole.class);
+    xwikiMock = createDefaultMock(XWiki.class);
+    checker = new SearchResultChecker(xwikiMock);
+  }
+
+  @Test
+  public void test_buildExistsHql() {
+    assertEquals("select distinct doc.fullName from XWikiDocument doc where doc.fullName in "
+        + "(:name0, :name1)", SearchResultChecker.buildExistsHql(2));
+  }
+
+  @Test
+  public void test_filterViewable() throws Exception {
+    Query queryMock = createDefaultMock(Query.class);
+    expect(queryManagerMock.createQuery(SearchResultChecker.buildExistsHql(3), Query.HQL))
+        .andReturn(queryMock);
+    expect(queryMock.setWiki("wiki")).andReturn(queryMock);
+    expect(queryMock.bindValue("name0", "Space.Doc1")).andReturn(queryMock);
+    expect(queryMock.bindValue("name1", "Space.Doc2")).andReturn(queryMock);
+    expect(queryMock.bindValue("name2", "Space.Doc3")).andReturn(queryMock);
+    expect(queryMock.<String>execute()).andReturn(Arrays.asList("Space.Doc1", "Space.Doc3"));
+    // checked once although hit twice
+    expect(rightsAccessMock.hasAccessLevel(docRef1, EAccessLevel.VIEW)).andReturn(false);
+    expect(rightsAccessMock.hasAccessLevel(docRef3, EAccessLevel.VIEW)).andReturn(true);
+    replayDefault();
+    Set<DocumentReference> viewable = checker.filterViewable(Arrays.asList(docRef1, docRef2,
+        docRef3, docRef1));
+    verifyDefault();
+    assertEquals(1, viewable.size());
+    assertTrue(viewable.contains(docRef3));
+  }
+
+  @Test
+  public void test_filterViewable_queryFailed() throws Exception {
+    expect(queryManagerMock.createQuery(SearchResultChecker.buildExistsHql(2), Query.HQL))
+        .andThrow(new QueryException("failed", null, null));
+    expect(xwikiMock.exists(docRef1)).andReturn(true);
+    expect(xwikiMock.exists(docRef2)).andReturn(false);
+    expect(rightsAccessMock.hasAccessLevel(docRef1, EAccessLevel.VIEW)).andReturn(true);
+    replayDefault();
+    List<DocumentReference> docRefs = Arrays.asList(docRef1, docRef2);
+    Set<DocumentReference> viewable = checker.filterViewable(docRefs);
+    verifyDefault();
+    assertEquals(1, viewable.size());
+    assertTrue(viewable.contains(docRef1));
+  }
+
+}
@@ -0,0 +1,179 @@
+package com.xpn.xwiki.plugin.lucene;
+
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.celements.common.test.AbstractComponentTest;
+import com.xpn.xwiki.api.XWiki;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.ISearcherProviderRole;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherProvider;
+import com.xpn.xwiki.web.Utils;
+
+public class SearchResultsTest extends AbstractComponentTest {
+
+  private IndexSearcher searcherMock;
+  private XWiki xwikiMock;
+  private SearcherProvider provider;
+
+  @Before
+  public void setUp_SearchResultsTest() throws Exception {
+    searcherMock = createDefaultMock(IndexSearcher.class);
+    xwikiMock = createDefaultMock(XWiki.class);
+    provider = Utils.getComponent(ISearcherProviderRole.class).createSearchProvider(
+        Arrays.asList(searcherMock));
+  }
+
+  @Test
+  public void test_close_releasesPromptly() throws Exception {
+    searcherMock.close();
+    replayDefault();
+    try (SearchResults results = newSearchResults()) {
+      provider.markToClose();
+      assertFalse("results keep the searcher open", provider.isClosed());
+    }
+    assertTrue(provider.isClosed());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_release_idempotent() throws Exception {
+    searcherMock.close();
+    replayDefault();
+    SearchResults results = newSearchResults();
+    results.release();
+    assertTrue(provider.isIdle());
+    results.close();
+    provider.markToClose();
+    assertTrue(provider.isClosed());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_handleReleaser() throws Exception {
+    searcherMock.close();
+    replayDefault();
+    SearcherHandle handle = provider.acquire();
+    provider.markToClose();
+    SearchResults.HandleReleaser releaser = new SearchResults.HandleReleaser(handle);
+    releaser.run();
+    assertTrue(handle.isReleased());
+    assertTrue(provider.isClosed());
+    releaser.run();
+    verifyDefault();
+  }
+
+  @Test
+  public void test_registersReleaserWithCleaner() throws Exception {
+    searcherMock.close();
+    replayDefault();
+    List<Object> registered = new ArrayList<>();
+    List<Runnable> actions = new ArrayList<>();
+    SearchResults results;
+    try (SearcherHandle handle = provider.acquire()) {
+      results = new SearchResults(new MatchAllDocsQuery(), new TopDocs(0, new ScoreDoc[0], 1f),
+          handle, true, xwikiMock, getContext(), (obj, action) -> {
+            registered.add(obj);
+            actions.add(action);
+            return action::run;
+          });
+    }
+    assertEquals(Arrays.asList(results), registered);
+    assertEquals(1, actions.size());
+    assertTrue(actions.get(0) instanceof SearchResults.HandleReleaser);
+    assertFalse("results hold a handle", provider.isIdle());
+    provider.markToClose();
+    // as run by the cleaner once the results are unreachable
+    actions.get(0).run();
+    assertTrue(provider.isClosed());
+    results.close();
+    verifyDefault();
+  }
+
+  @Test
+  public void test_getViewableResults_afterAllResults() throws Exception {
+    expectDoc(0, "Doc0");
+    expectDoc(1, "Doc1");
+    replayDefault();
+    SearchResults results = newSearchResults(2);
+    assertEquals(2, results.getHitcount());
+    assertTrue("all hits loaded", provider.isIdle());
+    assertEquals(2, results.getViewableResults(1, 10).size());
+    assertTrue(results.isViewableHitcountExact());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_getViewableResults_afterPage() throws Exception {
+    expectDoc(0, "Doc0");
+    replayDefault();
+    SearchResults results = newSearchResults(2);
+    assertEquals(1, results.getResults(1, 1).size());
+    try {
+      results.getViewableResults(1, 10);
+      fail("expecting IllegalStateException for released searcher");
+    } catch (IllegalStateException ise) {
+      // expected
+    }
+    verifyDefault();
+  }
+
+  @Test
+  public void test_getResults_duringLazyCheck() throws Exception {
+    for (int i = 0; i <= SearchResults.LAZY_BATCH_SIZE; i++) {
+      expectDoc(i, "Doc" + i);
+    }
+    replayDefault();
+    SearchResults results = newSearchResults(SearchResults.LAZY_BATCH_SIZE + 1);
+    assertEquals(1, results.getViewableResults(1, 1).size());
+    assertEquals(1, results.getResults(1, 1).size());
+    assertFalse("lazy check in progress", provider.isIdle());
+    assertEquals(SearchResults.LAZY_BATCH_SIZE + 1, results.getViewableHitcount());
+    assertTrue(provider.isIdle());
+    verifyDefault();
+  }
+
+  private void expectDoc(int docId, String name) throws Exception {
+    Document doc = new Document();
+    doc.add(new Field(IndexFields.DOCUMENT_TYPE, LucenePlugin.DOCTYPE_WIKIPAGE, Field.Store.YES,
+        Field.Index.NOT_ANALYZED));
+    doc.add(new Field(IndexFields.DOCUMENT_WIKI, "wiki", Field.Store.YES,
+        Field.Index.NOT_ANALYZED));
+    doc.add(new Field(IndexFields.DOCUMENT_SPACE, "Space", Field.Store.YES,
+        Field.Index.NOT_ANALYZED));
+    doc.add(new Field(IndexFields.DOCUMENT_NAME, name, Field.Store.YES,
+        Field.Index.NOT_ANALYZED));
+    expect(searcherMock.doc(eq(docId), anyObject(FieldSelector.class))).andReturn(doc).anyTimes();
+  }
+
+  private SearchResults newSearchResults() throws Exception {
+    return newSearchResults(0);
+  }
+
+  private SearchResults newSearchResults(int hits) throws Exception {
+    ScoreDoc[] scoreDocs = new ScoreDoc[hits];
+    for (int i = 0; i < hits; i++) {
+      scoreDocs[i] = new ScoreDoc(i, 1f);
+    }
+    try (SearcherHandle handle = provider.acquire()) {
+      return new SearchResults(new MatchAllDocsQuery(), new TopDocs(hits, scoreDocs, 1f), handle,
+          true, xwikiMock, getContext());
+    }
+  }
+
+}
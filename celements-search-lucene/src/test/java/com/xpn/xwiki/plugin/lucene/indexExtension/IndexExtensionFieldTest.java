@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import java.time.LocalDate;
 
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -91,6 +92,10 @@ public class IndexExtensionFieldTest {
     IndexExtensionField field = new IndexExtensionField.Builder("afield").value(value).build();
     assertEquals("0000000005", field.getLuceneField().stringValue());
     assertFalse(field.getLuceneField().isTokenized());
+    NumericField numeric = (NumericField) field.getNumericField().get();
+    assertEquals("afield_n", numeric.name());
+    assertEquals(5L, numeric.getNumericValue());
+    assertFalse(numeric.isStored());
   }
 
   @Test
@@ -99,6 +104,7 @@ public class IndexExtensionFieldTest {
     IndexExtensionField field = new IndexExtensionField.Builder("afield").value(value).build();
     assertEquals("true", field.getLuceneField().stringValue());
     assertFalse(field.getLuceneField().isTokenized());
+    assertFalse(field.getNumericField().isPresent());
   }
 
   @Test
@@ -107,6 +113,8 @@ public class IndexExtensionFieldTest {
     IndexExtensionField field = new IndexExtensionField.Builder("afield").value(value).build();
     assertEquals("202102111315", field.getLuceneField().stringValue());
     assertFalse(field.getLuceneField().isTokenized());
+    assertEquals(202102111315L, ((NumericField) field.getNumericField().get())
+        .getNumericValue());
   }
 
   @Test
@@ -1,20 +1,36 @@
 package com.xpn.xwiki.plugin.lucene.indexExtension;
 
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.lucene.document.Document;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.celements.common.test.AbstractComponentTest;
+import com.xpn.xwiki.XWikiConfigSource;
+import com.xpn.xwiki.plugin.lucene.AbstractIndexData;
+import com.xpn.xwiki.plugin.lucene.DeleteData;
 import com.xpn.xwiki.plugin.lucene.indexExtension.IndexExtensionField.ExtensionType;
 import com.xpn.xwiki.web.Utils;
 
 public class LuceneIndexExtensionServiceTest extends AbstractComponentTest {
 
   private LuceneIndexExtensionService indexExtService;
+  private ILuceneIndexExtender extenderMock;
 
   @Before
   public void prepare() throws Exception {
+    extenderMock = registerComponentMock(ILuceneIndexExtender.class);
+    expect(extenderMock.getName()).andReturn("mock").anyTimes();
+    expect(extenderMock.isEligibleIndexData(anyObject(AbstractIndexData.class)))
+        .andReturn(true).anyTimes();
+    expect(registerComponentMock(XWikiConfigSource.class).getProperty(
+        LuceneIndexExtensionService.PROP_FIELD_CACHE_SIZE)).andReturn(null).anyTimes();
     indexExtService = (LuceneIndexExtensionService) Utils.getComponent(
         ILuceneIndexExtensionServiceRole.class);
   }
@@ -59,4 +75,77 @@ public class LuceneIndexExtensionServiceTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  @Test
+  public void test_extend_dependencyKey_reusesFields() {
+    AbstractIndexData data = new DeleteData("wiki:Space.Doc");
+    expect(extenderMock.getDependencyKey(data)).andReturn(Optional.of("v1")).times(2);
+    expect(extenderMock.getExtensionFields(data)).andReturn(List.of(
+        IndexExtensionField.createRemove("field"), createField("field", "value"))).once();
+    replayDefault();
+    Document doc1 = new Document();
+    indexExtService.extend(data, doc1);
+    Document doc2 = new Document();
+    indexExtService.extend(data, doc2);
+    verifyDefault();
+    assertEquals("value", doc1.get("field"));
+    assertEquals("value", doc2.get("field"));
+    IndexExtenderStats stats = indexExtService.getExtenderStats().get("mock");
+    assertEquals(2, stats.getRuns());
+    assertEquals(1, stats.getCacheHits());
+    assertEquals(0, stats.getFailures());
+  }
+
+  @Test
+  public void test_extend_dependencyKey_changed() {
+    AbstractIndexData data = new DeleteData("wiki:Space.Doc");
+    expect(extenderMock.getDependencyKey(data)).andReturn(Optional.of("v1"));
+    expect(extenderMock.getDependencyKey(data)).andReturn(Optional.of("v2"));
+    expect(extenderMock.getExtensionFields(data)).andReturn(List.of(
+        createField("field", "value1")));
+    expect(extenderMock.getExtensionFields(data)).andReturn(List.of(
+        createField("field", "value2")));
+    replayDefault();
+    indexExtService.extend(data, new Document());
+    Document doc = new Document();
+    indexExtService.extend(data, doc);
+    verifyDefault();
+    assertEquals("value2", doc.get("field"));
+    assertEquals(0, indexExtService.getExtenderStats().get("mock").getCacheHits());
+  }
+
+  @Test
+  public void test_extend_noDependencyKey() {
+    AbstractIndexData data = new DeleteData("wiki:Space.Doc");
+    expect(extenderMock.getDependencyKey(data)).andReturn(Optional.empty()).times(2);
+    expect(extenderMock.getExtensionFields(data)).andReturn(List.of(
+        createField("field", "value"))).times(2);
+    replayDefault();
+    indexExtService.extend(data, new Document());
+    indexExtService.extend(data, new Document());
+    verifyDefault();
+    assertEquals(0, indexExtService.getExtenderStats().get("mock").getCacheHits());
+  }
+
+  @Test
+  public void test_extend_failure() {
+    AbstractIndexData data = new DeleteData("wiki:Space.Doc");
+    expect(extenderMock.getDependencyKey(data)).andReturn(Optional.empty());
+    expect(extenderMock.getExtensionFields(data)).andThrow(new IllegalStateException());
+    replayDefault();
+    Document doc = new Document();
+    indexExtService.extend(data, doc);
+    verifyDefault();
+    assertTrue(doc.getFields().isEmpty());
+    IndexExtenderStats stats = indexExtService.getExtenderStats().get("mock");
+    assertEquals(1, stats.getRuns());
+    assertEquals(1, stats.getFailures());
+  }
+
+  private static IndexExtensionField createField(String name, String value) {
+    return new IndexExtensionField.Builder(name)
+        .extensionType(ExtensionType.REPLACE)
+        .value(value)
+        .build();
+  }
+
 }
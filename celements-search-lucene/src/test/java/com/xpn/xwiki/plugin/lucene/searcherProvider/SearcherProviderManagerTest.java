@@ -3,15 +3,25 @@ package com.xpn.xwiki.plugin.lucene.searcherProvider;
 import static junit.framework.Assert.*;
 import static org.easymock.EasyMock.*;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.celements.common.test.AbstractComponentTest;
-import com.xpn.xwiki.plugin.lucene.SearchResults;
 import com.xpn.xwiki.web.Utils;
 
 public class SearcherProviderManagerTest extends AbstractComponentTest {
@@ -50,6 +60,40 @@ public class SearcherProviderManagerTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  @Test
+  public void testCreateWarmedSearchProvider() throws Exception {
+    IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
+    Query query = new TermQuery(new Term("type", "wikipage"));
+    Sort sort = new Sort(new SortField("date", SortField.STRING));
+    expect(theMockSearcher.search(same(query), eq(1))).andReturn(null);
+    expect(theMockSearcher.search(isA(MatchAllDocsQuery.class), isNull(Filter.class), eq(1),
+        same(sort))).andReturn(null);
+    replayDefault();
+    long warmings = theSearchProvManager.getWarmStats().getWarmings();
+    long failures = theSearchProvManager.getWarmStats().getFailures();
+    SearcherProvider searcherProv = theSearchProvManager.createWarmedSearchProvider(
+        Arrays.asList(theMockSearcher), Arrays.asList(query), Arrays.asList(sort));
+    assertNotNull(searcherProv);
+    assertTrue(theSearchProvManager.getAllSearcherProviders().contains(searcherProv));
+    assertEquals(warmings + 1, theSearchProvManager.getWarmStats().getWarmings());
+    assertEquals(failures, theSearchProvManager.getWarmStats().getFailures());
+    verifyDefault();
+  }
+
+  @Test
+  public void testCreateWarmedSearchProvider_failed() throws Exception {
+    IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
+    Query query = new TermQuery(new Term("type", "wikipage"));
+    expect(theMockSearcher.search(same(query), eq(1))).andThrow(new IOException());
+    replayDefault();
+    long failures = theSearchProvManager.getWarmStats().getFailures();
+    SearcherProvider searcherProv = theSearchProvManager.createWarmedSearchProvider(
+        Arrays.asList(theMockSearcher), Arrays.asList(query), Arrays.<Sort>asList());
+    assertNotNull("a failed warming doesn't prevent publishing", searcherProv);
+    assertEquals(failures + 1, theSearchProvManager.getWarmStats().getFailures());
+    verifyDefault();
+  }
+
   @Test
   public void testOnEvent_empty() {
     replayDefault();
@@ -61,57 +105,93 @@ public class SearcherProviderManagerTest extends AbstractComponentTest {
   @Test
   public void testOnEvent_notEmpty_notMarkedClosed() {
     IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
-    SearchResults mockSearchResults = createDefaultMock(SearchResults.class);
     replayDefault();
     SearcherProvider searcherProv = theSearchProvManager.createSearchProvider(Arrays.asList(
         theMockSearcher));
     assertEquals(1, theSearchProvManager.getAllSearcherProviders().size());
-    searcherProv.connect();
-    searcherProv.connectSearchResults(mockSearchResults);
-    assertTrue(searcherProv.hasSearchResultsForCurrentThread());
+    SearcherHandle handle = searcherProv.acquire();
     theSearchProvManager.closeAllForCurrentThread();
     assertEquals(1, theSearchProvManager.getAllSearcherProviders().size());
-    assertFalse(searcherProv.hasSearchResultsForCurrentThread());
+    assertTrue(handle.isReleased());
     assertTrue(searcherProv.isIdle());
+    assertFalse(searcherProv.isClosed());
     verifyDefault();
   }
 
   @Test
-  public void testOnEvent_markedClosed_forgotenDisconnect() throws Exception {
+  public void testOnEvent_markedClosed_forgotenRelease() throws Exception {
     IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
-    SearchResults mockSearchResults = createDefaultMock(SearchResults.class);
     theMockSearcher.close();
     expectLastCall().once();
     replayDefault();
     SearcherProvider searcherProv = theSearchProvManager.createSearchProvider(Arrays.asList(
         theMockSearcher));
     assertEquals(1, theSearchProvManager.getAllSearcherProviders().size());
-    searcherProv.connect();
+    searcherProv.acquire();
     searcherProv.markToClose();
-    searcherProv.connectSearchResults(mockSearchResults);
+    assertFalse(searcherProv.isClosed());
     theSearchProvManager.closeAllForCurrentThread();
+    assertTrue(searcherProv.isClosed());
     assertTrue(theSearchProvManager.getAllSearcherProviders().isEmpty());
-    assertFalse(searcherProv.hasSearchResultsForCurrentThread());
     verifyDefault();
   }
 
   @Test
-  public void testOnEvent_empty_markedClosed() throws Exception {
+  public void testOnEvent_markedClosed_otherThread() throws Exception {
     IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
-    SearchResults mockSearchResults = createDefaultMock(SearchResults.class);
     theMockSearcher.close();
     expectLastCall().once();
     replayDefault();
     SearcherProvider searcherProv = theSearchProvManager.createSearchProvider(Arrays.asList(
         theMockSearcher));
-    assertEquals(1, theSearchProvManager.getAllSearcherProviders().size());
-    searcherProv.connect();
-    searcherProv.markToClose();
-    searcherProv.connectSearchResults(mockSearchResults);
-    searcherProv.disconnect();
-    theSearchProvManager.closeAllForCurrentThread();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      SearcherHandle handle = executor.submit(searcherProv::acquire).get();
+      searcherProv.markToClose();
+      theSearchProvManager.closeAllForCurrentThread();
+      assertFalse("handles of other threads remain open", handle.isReleased());
+      assertFalse(searcherProv.isClosed());
+      assertEquals(1, theSearchProvManager.getAllSearcherProviders().size());
+      handle.release();
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(searcherProv.isClosed());
     assertTrue(theSearchProvManager.getAllSearcherProviders().isEmpty());
-    assertFalse(searcherProv.hasSearchResultsForCurrentThread());
+    verifyDefault();
+  }
+
+  @Test
+  public void testReportLeaks() throws Exception {
+    IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
+    replayDefault();
+    SearcherProvider searcherProv = theSearchProvManager.createSearchProvider(Arrays.asList(
+        theMockSearcher));
+    SearcherHandle leaked = searcherProv.acquire();
+    assertEquals(0, theSearchProvManager.reportLeaks(SearcherProviderManager.LEAK_THRESHOLD));
+    assertEquals(1, theSearchProvManager.reportLeaks(Duration.ZERO));
+    assertEquals("reported only once", 0, theSearchProvManager.reportLeaks(Duration.ZERO));
+    searcherProv.acquire().release();
+    assertEquals(0, theSearchProvManager.reportLeaks(Duration.ZERO));
+    leaked.release();
+    verifyDefault();
+  }
+
+  @Test
+  public void testReportLeaks_otherThread() throws Exception {
+    IndexSearcher theMockSearcher = createDefaultMock(IndexSearcher.class);
+    replayDefault();
+    SearcherProvider searcherProv = theSearchProvManager.createSearchProvider(Arrays.asList(
+        theMockSearcher));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      SearcherHandle leaked = executor.submit(searcherProv::acquire).get();
+      theSearchProvManager.closeAllForCurrentThread();
+      assertEquals(1, theSearchProvManager.reportLeaks(Duration.ZERO));
+      leaked.release();
+    } finally {
+      executor.shutdownNow();
+    }
     verifyDefault();
   }
 
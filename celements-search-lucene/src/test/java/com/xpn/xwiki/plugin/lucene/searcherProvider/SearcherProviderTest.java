@@ -3,24 +3,18 @@ package com.xpn.xwiki.plugin.lucene.searcherProvider;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
-import java.lang.Thread.State;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.search.IndexSearcher;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.celements.common.test.AbstractComponentTest;
-import com.google.common.base.Stopwatch;
-import com.xpn.xwiki.plugin.lucene.SearchResults;
 import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherProviderManager.DisconnectToken;
 
 public class SearcherProviderTest extends AbstractComponentTest {
@@ -37,81 +31,75 @@ public class SearcherProviderTest extends AbstractComponentTest {
     tokenMock = createDefaultMock(DisconnectToken.class);
     List<IndexSearcher> searchers = Arrays.asList(theMockSearcher);
     searcherProvider = new SearcherProvider(searchers, tokenMock);
-    expect(tokenMock.isUsed()).andReturn(false).anyTimes();
+  }
+
+  @After
+  public void tearDown_SearcherProviderTest() {
+    threadPool.shutdownNow();
   }
 
   @Test
   public void test_SearcherProvider() {
+    expect(tokenMock.isUsed()).andReturn(false).anyTimes();
     replayDefault();
-    assertNotNull(searcherProvider);
     assertFalse(searcherProvider.isMarkedToClose());
-    assertNotNull(searcherProvider.connectedThreads);
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
+    assertFalse(searcherProvider.isClosed());
+    assertTrue(searcherProvider.isIdle());
+    assertEquals(1, searcherProvider.getRefCount());
     verifyDefault();
   }
 
   @Test
-  public void test_IsMarkedToClose_markClose() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
+  public void test_markToClose_idle() throws Exception {
+    expectClose();
     replayDefault();
-    assertFalse(searcherProvider.isMarkedToClose());
     searcherProvider.markToClose();
     assertTrue(searcherProvider.isMarkedToClose());
+    assertEquals(0, searcherProvider.getRefCount());
     searcherProvider.markToClose();
-    assertTrue(searcherProvider.isMarkedToClose());
+    assertEquals("marking twice releases only once", 0, searcherProvider.getRefCount());
     verifyDefault();
   }
 
   @Test
-  public void test_Connect_connectAconnectedThreadAfterMarkToClose() throws Exception {
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connect();
-    searcherProvider.markToClose();
+  public void test_acquire_release() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).anyTimes();
     replayDefault();
-    try {
-      searcherProvider.connect();
-    } catch (IllegalStateException exp) {
-      fail("connect may not throw an IllegalStateException on if the thread is already"
-          + " connected");
+    try (SearcherHandle handle = searcherProvider.acquire()) {
+      assertSame(theMockSearcher, handle.getSearcher());
+      assertSame(searcherProvider, handle.getProvider());
+      assertEquals(searcherProvider.getGeneration(), handle.getGeneration());
+      assertEquals(2, searcherProvider.getRefCount());
+      assertEquals(1, searcherProvider.getOpenHandles().size());
+      assertFalse(searcherProvider.isIdle());
     }
+    assertEquals(1, searcherProvider.getRefCount());
+    assertTrue(searcherProvider.isIdle());
     verifyDefault();
   }
 
   @Test
-  public void test_Connect() {
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connect();
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedThreads.contains(Thread.currentThread()));
-    verifyDefault();
-  }
-
-  @Test
-  public void test_Connect_onMarkClose_illegalState() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
+  public void test_release_idempotent() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).anyTimes();
     replayDefault();
-    searcherProvider.markToClose();
-    try {
-      searcherProvider.connect();
-      fail("expecting illegal state exception if not connected before calling" + " getSearchers");
-    } catch (IllegalStateException exp) {
-      // expected
-    }
+    SearcherHandle handle = searcherProvider.acquire();
+    handle.release();
+    handle.release();
+    handle.close();
+    assertTrue(handle.isReleased());
+    assertEquals(1, searcherProvider.getRefCount());
     verifyDefault();
   }
 
   @Test
-  public void test_GetSearchers_illegalState() {
+  public void test_getSearcher_released() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).anyTimes();
     replayDefault();
+    SearcherHandle handle = searcherProvider.acquire();
+    handle.release();
     try {
-      assertNotNull(searcherProvider.getSearchers());
-      assertSame(theMockSearcher, searcherProvider.getSearchers().get(0));
-      fail("expecting illegal state exception if not connected before calling" + " getSearchers");
+      handle.getSearcher();
+      fail("expecting IllegalStateException on released handle");
     } catch (IllegalStateException exp) {
       // expected
     }
@@ -119,312 +107,73 @@ public class SearcherProviderTest extends AbstractComponentTest {
   }
 
   @Test
-  public void test_GetSearchers() {
-    replayDefault();
-    searcherProvider.connect();
-    assertNotNull(searcherProvider.getSearchers());
-    assertSame(theMockSearcher, searcherProvider.getSearchers().get(0));
-    verifyDefault();
-  }
-
-  @Test
-  public void test_Disconnect_withoutClose() throws Exception {
+  public void test_markToClose_closedOnLastRelease() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).once();
+    expectClose();
     replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connectedThreads.add(Thread.currentThread());
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_Disconnect_withClose() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connectedThreads.add(Thread.currentThread());
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.markToClose();
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_Disconnect_withoutClose_beforeLast() throws Exception {
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    Lock lock = new ReentrantLock();
-    lock.lock();
-    searcherProvider.connect();
-    Thread testThread = new Thread(() -> {
-      try {
-        Thread.sleep(10000L);
-      } catch (InterruptedException e) {}
-    });
-    testThread.start();
-    waitForState(testThread, State.TIMED_WAITING);
-    searcherProvider.connectedThreads.add(testThread);
-    assertEquals(2, searcherProvider.connectedThreads.size());
-    searcherProvider.markToClose();
-    assertTrue(testThread.isAlive());
-    searcherProvider.disconnect();
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    verifyDefault();
-    testThread.interrupt();
-  }
-
-  @Test
-  public void test_Disconnect_withClose_onLast() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connect();
-    final Thread testThread = new Thread();
-    searcherProvider.connectedThreads.add(testThread);
-    assertEquals(2, searcherProvider.connectedThreads.size());
-    searcherProvider.markToClose();
-    searcherProvider.connectedThreads.remove(testThread);
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_IsIdle_connectedThread() throws Exception {
-    replayDefault();
-    searcherProvider.connect();
+    SearcherHandle handle1 = searcherProvider.acquire();
+    SearcherHandle handle2 = handle1.acquireAnother();
     searcherProvider.markToClose();
-    assertTrue(searcherProvider.isMarkedToClose());
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-    assertFalse(searcherProvider.isIdle());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_IsIdle_notMarkedClose() throws Exception {
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-    assertFalse(searcherProvider.isMarkedToClose());
-    assertTrue(searcherProvider.isIdle());
-    searcherProvider.tryClose();
-    assertFalse(searcherProvider.isClosed());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_IsIdle_connectedResultSet() throws Exception {
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
-    replayDefault();
-    searcherProvider.connect();
-    searcherProvider.connectSearchResults(searchResults);
-    searcherProvider.disconnect();
-    searcherProvider.markToClose();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.isMarkedToClose());
-    assertFalse(searcherProvider.connectedSearchResults.isEmpty());
-    assertFalse(searcherProvider.isIdle());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_IsIdle_true() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
-    replayDefault();
-    searcherProvider.markToClose();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.isMarkedToClose());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
+    handle1.release();
+    assertSame("still open for handle2", theMockSearcher, handle2.getSearcher());
+    handle2.release();
+    assertEquals(0, searcherProvider.getRefCount());
     assertTrue(searcherProvider.isIdle());
     verifyDefault();
   }
 
   @Test
-  public void test_ConnectSearchResults_withoutClose() throws Exception {
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connect();
-    searcherProvider.connectSearchResults(searchResults);
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.markToClose();
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertFalse(searcherProvider.isClosed());
-    assertFalse(searcherProvider.connectedSearchResults.isEmpty());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_ConnectSearchResults_withClose() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
+  public void test_acquire_markedToClose_illegalState() throws Exception {
+    expectClose();
     replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connect();
-    searcherProvider.connectSearchResults(searchResults);
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
     searcherProvider.markToClose();
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertFalse(searcherProvider.isClosed());
-    searcherProvider.cleanUpSearchResults(searchResults);
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-    // assertTrue(searcherProvider.isClosed());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_CleanUpAllSearchResultsForThread() throws Exception {
-    theMockSearcher.close();
-    expectLastCall().once();
-    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
-    SearchResults searchResults2 = createDefaultMock(SearchResults.class);
-    replayDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.connect();
-    searcherProvider.connectSearchResults(searchResults);
-    searcherProvider.connectSearchResults(searchResults2);
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    searcherProvider.markToClose();
-    searcherProvider.disconnect();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertFalse(searcherProvider.isClosed());
-    searcherProvider.cleanUpAllSearchResultsForThread();
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-    // assertTrue(searcherProvider.isClosed());
-    verifyDefault();
-  }
-
-  @Test
-  public void test_ConnectSearchResult_illegalState() throws Exception {
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
-    replayDefault();
     try {
-      searcherProvider.connectSearchResults(searchResults);
-      fail("expecting illegal state exception if thread is not connected before calling"
-          + " connectSearchResults");
+      searcherProvider.acquire();
+      fail("expecting IllegalStateException after markToClose");
     } catch (IllegalStateException exp) {
       // expected
     }
+    assertEquals(0, searcherProvider.getRefCount());
     verifyDefault();
   }
 
   @Test
-  public void test_tryClose_retainActivThread() throws Exception {
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    Thread testThread = new Thread();
+  public void test_release_otherThread() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).once();
+    expectClose();
     replayDefault();
-    searcherProvider.connectedThreads.add(testThread);
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    testThread.start();
-    assertTrue(testThread.isAlive());
-    searcherProvider.tryClose();
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    testThread.join();
-    assertFalse(testThread.isAlive());
-    searcherProvider.tryClose();
-    verifyDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-  }
-
-  @Test
-  public void test_tryClose_removeOrphanedThread() throws Exception {
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    Thread testThread = new Thread();
-    searcherProvider.connectedThreads.add(testThread);
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    replayDefault();
-    searcherProvider.tryClose();
-    verifyDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-  }
-
-  @Test
-  public void test_tryClose_removeOrphanedThread_threadPool() throws Exception {
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    Thread testThread = getWaitingThreadFromPool();
-    searcherProvider.connectedThreads.add(testThread);
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    replayDefault();
-    searcherProvider.tryClose();
-    verifyDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-  }
-
-  @Test
-  public void test_tryClose_removeLeftOverSearchResult_connectedOrphanedThread() throws Exception {
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-    Thread testThread = getWaitingThreadFromPool();
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
-    searcherProvider.connectedThreads.add(testThread);
-    searcherProvider.connectedSearchResults.putIfAbsent(testThread, new HashSet<SearchResults>());
-    searcherProvider.connectedSearchResults.get(testThread).add(searchResults);
-    assertFalse(searcherProvider.connectedThreads.isEmpty());
-    assertFalse(searcherProvider.connectedSearchResults.isEmpty());
-    replayDefault();
-    searcherProvider.tryClose();
+    SearcherHandle handle = searcherProvider.acquire();
+    searcherProvider.markToClose();
+    Future<?> future = threadPool.submit(() -> {
+      assertSame(theMockSearcher, handle.getSearcher());
+      handle.release();
+      return null;
+    });
+    future.get();
+    assertTrue(handle.isReleased());
+    assertTrue(handle.isOwnedBy(Thread.currentThread()));
+    assertEquals(0, searcherProvider.getRefCount());
     verifyDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
   }
 
   @Test
-  public void test_tryClose_removeLeftOverSearchResult_disconnectedOrphanedThread()
-      throws Exception {
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-    Thread testThread = getWaitingThreadFromPool();
-    SearchResults searchResults = createDefaultMock(SearchResults.class);
-    searcherProvider.connectedSearchResults.putIfAbsent(testThread, new HashSet<SearchResults>());
-    searcherProvider.connectedSearchResults.get(testThread).add(searchResults);
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertFalse(searcherProvider.connectedSearchResults.isEmpty());
+  public void test_acquire_otherThread() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).anyTimes();
     replayDefault();
-    searcherProvider.tryClose();
+    SearcherHandle handle = threadPool.submit(searcherProvider::acquire).get();
+    assertFalse(handle.isOwnedBy(Thread.currentThread()));
+    assertSame(theMockSearcher, handle.getSearcher());
+    handle.release();
+    assertTrue(searcherProvider.isIdle());
     verifyDefault();
-    assertTrue(searcherProvider.connectedThreads.isEmpty());
-    assertTrue(searcherProvider.connectedSearchResults.isEmpty());
-  }
-
-  private Thread getWaitingThreadFromPool()
-      throws InterruptedException, ExecutionException {
-    AtomicReference<Thread> thread = new AtomicReference<>();
-    threadPool.submit(() -> thread.set(Thread.currentThread())).get();
-    waitForState(thread.get(), Thread.State.WAITING);
-    assertTrue(thread.get().isAlive());
-    return thread.get();
   }
 
-  private void waitForState(Thread thread, Thread.State state) throws InterruptedException {
-    Stopwatch watch = Stopwatch.createStarted();
-    while (thread.getState() != state) {
-      Thread.sleep(1);
-      if (watch.elapsed().getSeconds() > 5) {
-        thread.interrupt();
-        throw new RuntimeException("waitForState timed out");
-      }
-    }
+  private void expectClose() throws Exception {
+    expect(tokenMock.isUsed()).andReturn(false).once();
+    theMockSearcher.close();
+    expectLastCall().once();
+    expect(tokenMock.use(same(searcherProvider))).andReturn(true).once();
+    expect(tokenMock.isUsed()).andReturn(true).anyTimes();
   }
 
 }
@@ -1,5 +1,9 @@
 package com.celements.search.lucene;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
@@ -15,6 +19,7 @@ import com.celements.search.lucene.index.queue.QueueTask;
 import com.celements.search.lucene.index.rebuild.LuceneIndexRebuildService.IndexRebuildFuture;
 import com.google.common.collect.ImmutableList;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.lucene.IndexSizeReport;
 
 @ComponentRole
 public interface ILuceneIndexService {
@@ -60,4 +65,24 @@ public interface ILuceneIndexService {
 
   void optimizeIndex();
 
+  /**
+   * Copies a consistent snapshot of the index into the empty target directory while indexing
+   * continues. A new node restores it on startup if configured as
+   * <tt>xwiki.plugins.lucene.restoreDir</tt> and then only reindexes documents changed since.
+   *
+   * @return the time up to which all changes are contained in the backup
+   */
+  @NotNull
+  Instant backupIndex(@NotNull File targetDir) throws IOException;
+
+  /**
+   * Estimates the stored field sizes of the index from a sample of documents and compares them to
+   * the lean schema enabled with <tt>xwiki.plugins.lucene.schema=lean</tt>.
+   *
+   * @param sampleSize
+   *          maximum number of documents loaded per index directory
+   */
+  @NotNull
+  IndexSizeReport getIndexSizeReport(int sampleSize) throws IOException;
+
 }
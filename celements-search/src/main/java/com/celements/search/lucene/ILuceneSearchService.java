@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -201,6 +203,29 @@ public interface ILuceneSearchService {
   QueryRestriction createNumberRangeRestriction(@Nullable String field,
       @NotNull Range<? extends Number> range);
 
+  /**
+   * Restricts the trie encoded twin of the field (suffixed with <tt>_n</tt>), which is queried
+   * with a NumericRangeQuery visiting only a few terms instead of every term in range. Documents
+   * indexed before the twin fields existed only match once reindexed.
+   */
+  @NotNull
+  QueryRestriction createNumericRangeRestriction(@NotNull String field,
+      @NotNull Range<? extends Number> range);
+
+  /**
+   * @see #createNumericRangeRestriction(String, Range)
+   */
+  @NotNull
+  QueryRestriction createNumericDateRangeRestriction(@NotNull String field,
+      @NotNull Range<LocalDateTime> range);
+
+  /**
+   * @see #createNumericRangeRestriction(String, Range)
+   */
+  @NotNull
+  QueryRestrictionGroup createNumericDateRangeRestriction(@NotNull String startField,
+      @NotNull String endField, @NotNull Range<LocalDateTime> range);
+
   QueryRestrictionGroup createAttachmentRestrictionGroup(List<String> mimeTypes,
       List<String> mimeTypesBlackList, List<String> filenamePrefs);
 
@@ -220,6 +245,63 @@ public interface ILuceneSearchService {
   LuceneSearchResult searchWithoutChecks(String queryString, List<String> sortFields,
       List<String> languages);
 
+  /**
+   * Executes the queries in parallel on a bounded executor against the same index state, e.g. for
+   * pages built from several independent searches which then take as long as the slowest one
+   * instead of the sum. Only the hits are collected ahead, exists and access checks are still done
+   * while reading the results. Each search keeps the searchers open until it completes, also for
+   * cursor paging.
+   *
+   * @return a future per query in the same order, completed exceptionally with a
+   *         {@link LuceneSearchException} if the search failed
+   */
+  @NotNull
+  List<CompletableFuture<LuceneSearchResult>> searchAsync(@NotNull List<LuceneQuery> queries,
+      @Nullable List<String> sortFields, @Nullable List<String> languages);
+
+  /**
+   * like {@link #searchAsync(List, List, List)} WITHOUT EXISTS AND ACCESS CHECKS
+   */
+  @NotNull
+  List<CompletableFuture<LuceneSearchResult>> searchAsyncWithoutChecks(
+      @NotNull List<LuceneQuery> queries, @Nullable List<String> sortFields,
+      @Nullable List<String> languages);
+
+  /**
+   * Counts the documents matching the query WITHOUT EXISTS AND ACCESS CHECKS. Much cheaper than
+   * {@link LuceneSearchResult#getSize()} since hits are neither scored nor collected nor bounded by
+   * the result limit.
+   */
+  int count(@NotNull LuceneQuery query) throws LuceneSearchException;
+
+  /**
+   * Checks WITHOUT EXISTS AND ACCESS CHECKS if any document matches the query, stops at the first
+   * hit.
+   */
+  boolean exists(@NotNull LuceneQuery query) throws LuceneSearchException;
+
+  /**
+   * Checks if any existing document viewable by the context user matches the query, stops at the
+   * first viewable hit.
+   */
+  boolean existsViewable(@NotNull LuceneQuery query) throws LuceneSearchException;
+
+  /**
+   * Streams the references of all documents matching the query in index order, WITHOUT EXISTS AND
+   * ACCESS CHECKS. Unlike {@link #searchWithoutChecks(LuceneQuery)} hits are neither scored nor
+   * sorted nor bounded by the result limit and are read lazily, so memory stays constant. Meant for
+   * batch jobs like reindexing, exports or migrations.<br>
+   * <br>
+   * The stream is bound to the calling thread and has to be closed by it, preferably in a
+   * try-with-resource statement.
+   *
+   * @param languages
+   *          may be null or empty for all languages
+   */
+  @NotNull
+  Stream<EntityReference> streamWithoutChecks(@NotNull LuceneQuery query,
+      @Nullable List<String> languages) throws LuceneSearchException;
+
   int getResultLimit();
 
   int getResultLimit(boolean skipChecks);
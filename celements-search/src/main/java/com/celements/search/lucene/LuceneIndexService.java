@@ -3,6 +3,9 @@ package com.celements.search.lucene;
 import static com.celements.logging.LogUtils.*;
 import static com.google.common.collect.ImmutableList.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -28,6 +31,7 @@ import com.celements.search.lucene.observation.event.LuceneQueueIndexEvent;
 import com.google.common.collect.ImmutableList;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.lucene.IndexSizeReport;
 import com.xpn.xwiki.plugin.lucene.LucenePlugin;
 
 @Component
@@ -97,6 +101,9 @@ public class LuceneIndexService implements ILuceneIndexService {
   public IndexRebuildFuture rebuildIndex(EntityReference ref) {
     EntityReference filterRef = Optional.ofNullable(ref)
         .orElseGet(context::getWikiRef);
+    if (getLucenePlugin().filter(LucenePlugin::isReplica).isPresent()) {
+      throw new IllegalStateException("no index rebuild on a replica, rebuild on the primary");
+    }
     LOGGER.info("rebuildIndex - start [{}]", defer(() -> modelUtils.serializeRef(filterRef)));
     return rebuildService.startIndexRebuild(filterRef);
   }
@@ -123,6 +130,23 @@ public class LuceneIndexService implements ILuceneIndexService {
     getLucenePlugin().ifPresent(LucenePlugin::optimizeIndex);
   }
 
+  @Override
+  public Instant backupIndex(File targetDir) throws IOException {
+    LOGGER.info("backupIndex - start [{}]", targetDir);
+    Instant indexedUntil = getLucenePlugin()
+        .orElseThrow(() -> new IllegalStateException("LucenePlugin not available"))
+        .backupIndex(targetDir);
+    LOGGER.info("backupIndex - finished [{}] until {}", targetDir, indexedUntil);
+    return indexedUntil;
+  }
+
+  @Override
+  public IndexSizeReport getIndexSizeReport(int sampleSize) throws IOException {
+    return getLucenePlugin()
+        .orElseThrow(() -> new IllegalStateException("LucenePlugin not available"))
+        .getIndexSizeReport(sampleSize);
+  }
+
   private Optional<LucenePlugin> getLucenePlugin() {
     try {
       return Optional.of((LucenePlugin) getXContext().getWiki().getPlugin("lucene", getXContext()));
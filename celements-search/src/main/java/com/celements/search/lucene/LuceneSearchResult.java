@@ -1,13 +1,20 @@
 package com.celements.search.lucene;
 
+import static com.google.common.base.Preconditions.*;
+
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.queryParser.ParseException;
 import org.slf4j.Logger;
@@ -17,34 +24,55 @@ import org.xwiki.model.reference.EntityReference;
 import com.celements.model.context.ModelContext;
 import com.celements.model.util.References;
 import com.celements.search.lucene.query.LuceneQuery;
+import com.celements.search.lucene.query.LuceneQueryCompiler;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.lucene.IndexFields;
 import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.plugin.lucene.SearchRequest;
 import com.xpn.xwiki.plugin.lucene.SearchResult;
 import com.xpn.xwiki.plugin.lucene.SearchResults;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
 import com.xpn.xwiki.web.Utils;
 
-public class LuceneSearchResult {
+/**
+ * Lazily executed search, the results are cached until a parameter affecting them changes. The
+ * cached results keep the index searcher open until all hits are loaded, so results which may be
+ * abandoned earlier should be closed, preferably in a try-with-resource statement.
+ */
+public class LuceneSearchResult implements AutoCloseable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LuceneSearchResult.class);
 
   SearchResults searchResultsCache;
   LucenePlugin lucenePlugin;
 
-  private final String queryString;
+  private final LuceneQuery query;
+  private String queryString;
   private final List<String> sortFields;
   private final List<String> languages;
   private final boolean skipChecks;
 
   private int offset = 0;
   private int limit = 0;
+  private boolean lazyChecks = false;
+  private String cursor = null;
+  private Duration timeout = null;
+  private boolean compiled = false;
+  private List<String> facetFields = Collections.emptyList();
 
   LuceneSearchResult(LuceneQuery query, List<String> sortFields, List<String> languages,
       boolean skipChecks) {
-    this(query.getQueryString(), sortFields, languages, skipChecks);
+    this(query.copy(), null, sortFields, languages, skipChecks);
   }
 
   LuceneSearchResult(String queryString, List<String> sortFields, List<String> languages,
       boolean skipChecks) {
+    this(null, queryString, sortFields, languages, skipChecks);
+  }
+
+  private LuceneSearchResult(LuceneQuery query, String queryString, List<String> sortFields,
+      List<String> languages, boolean skipChecks) {
+    this.query = query;
     this.queryString = queryString;
     this.sortFields = getList(sortFields);
     this.languages = getList(languages);
@@ -60,6 +88,9 @@ public class LuceneSearchResult {
   }
 
   public String getQueryString() {
+    if (queryString == null) {
+      queryString = query.getQueryString();
+    }
     return queryString;
   }
 
@@ -83,6 +114,99 @@ public class LuceneSearchResult {
     return skipChecks;
   }
 
+  public boolean isLazyChecks() {
+    return lazyChecks;
+  }
+
+  /**
+   * In lazy mode hits are only checked until the requested page is filled, offsets count viewable
+   * results only and {@link #getSize()} is an estimate, see {@link #isSizeExact()}. Has no effect
+   * if checks are skipped.
+   */
+  public LuceneSearchResult setLazyChecks(boolean lazyChecks) {
+    if (this.lazyChecks != lazyChecks) {
+      this.lazyChecks = lazyChecks;
+      resetCache();
+    }
+    return this;
+  }
+
+  public String getCursor() {
+    return cursor;
+  }
+
+  /**
+   * Enables cursor paging: only the page of {@link #getLimit()} hits following the cursor is
+   * collected and the offset is ignored. Pass an empty string for the first page and
+   * {@link #getNextCursor()} for the following ones, null disables cursor paging.
+   */
+  public LuceneSearchResult setCursor(String cursor) {
+    if (!Objects.equals(this.cursor, cursor)) {
+      this.cursor = cursor;
+      resetCache();
+    }
+    return this;
+  }
+
+  private boolean isCursorPaging() {
+    return cursor != null;
+  }
+
+  /**
+   * @return the cursor for the page following the current one, null if there is none
+   */
+  public String getNextCursor() throws LuceneSearchException {
+    return isCursorPaging() ? luceneSearch().getNextCursor() : null;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Bounds the time spent collecting the hits, overriding the configured default. Once exceeded
+   * the best hits collected so far are returned, see {@link #isTimedOut()}. Null uses the
+   * configured default, zero disables the time budget.
+   */
+  public LuceneSearchResult setTimeout(Duration timeout) {
+    if (!Objects.equals(this.timeout, timeout)) {
+      this.timeout = timeout;
+      resetCache();
+    }
+    return this;
+  }
+
+  /**
+   * @return true if the search exceeded its time budget and the results are partial
+   */
+  public boolean isTimedOut() throws LuceneSearchException {
+    return luceneSearch().isTimedOut();
+  }
+
+  public boolean isCompiled() {
+    return compiled;
+  }
+
+  /**
+   * Compiles the restrictions of the query directly into a Lucene query with the
+   * {@link LuceneQueryCompiler} instead of serializing them to a query string parsed again by the
+   * plugin. Only supported for results of a {@link LuceneQuery}. Its doc types, wikis and
+   * constraints are then applied as cached filters, while the query string scores them like any
+   * other restriction.
+   */
+  public LuceneSearchResult setCompiled(boolean compiled) {
+    checkState(!compiled || (query != null), "only a LuceneQuery can be compiled");
+    if (this.compiled != compiled) {
+      this.compiled = compiled;
+      resetCache();
+    }
+    return this;
+  }
+
+  private boolean isLazy() {
+    return lazyChecks && !skipChecks;
+  }
+
   public int getOffset() {
     return offset;
   }
@@ -90,8 +214,10 @@ public class LuceneSearchResult {
   public LuceneSearchResult setOffset(int offset) {
     if (this.offset != offset) {
       this.offset = offset;
-      // internal SearchResults.results.topDocs may only be called once with the same offset/limit
-      searchResultsCache = null;
+      // SearchResults only check hits once, except in lazy mode continuing with further pages
+      if (!isLazy()) {
+        resetCache();
+      }
     }
     return this;
   }
@@ -103,8 +229,10 @@ public class LuceneSearchResult {
   public LuceneSearchResult setLimit(int limit) {
     if (this.limit != limit) {
       this.limit = limit;
-      // internal SearchResults.results.topDocs may only be called once with the same offset/limit
-      searchResultsCache = null;
+      // SearchResults only check hits once, except in lazy mode continuing with further pages
+      if (!isLazy()) {
+        resetCache();
+      }
     }
     return this;
   }
@@ -153,15 +281,28 @@ public class LuceneSearchResult {
 
   private List<SearchResult> getSearchResultList() throws LuceneSearchException {
     SearchResults results = luceneSearch();
+    if (isCursorPaging()) {
+      return results.getResults(1, getLimit());
+    }
     int offset = (getOffset() <= 0 ? 1 : getOffset() + 1);
+    if (isLazy()) {
+      return results.getViewableResults(offset, (getLimit() <= 0) ? Integer.MAX_VALUE
+          : getLimit());
+    }
     int limit = (getLimit() <= 0 ? getSize() : getLimit());
     return results.getResults(offset, limit);
   }
 
+  /**
+   * @return the number of results, estimated from the checked hits in lazy mode, all hits
+   *         including unallowed ones with cursor paging
+   */
   public int getSize() throws LuceneSearchException {
     int hitcount;
-    if (skipChecks) {
+    if (skipChecks || isCursorPaging()) {
       hitcount = luceneSearch().getTotalHitcount();
+    } else if (isLazy()) {
+      hitcount = luceneSearch().getEstimatedViewableHitcount();
     } else {
       hitcount = luceneSearch().getHitcount();
     }
@@ -169,16 +310,76 @@ public class LuceneSearchResult {
     return hitcount;
   }
 
+  /**
+   * @return false if {@link #getSize()} is an estimate, see {@link #setLazyChecks(boolean)}
+   */
+  public boolean isSizeExact() throws LuceneSearchException {
+    return !isLazy() || luceneSearch().isViewableHitcountExact();
+  }
+
+  public List<String> getFacetFields() {
+    return facetFields;
+  }
+
+  /**
+   * Sets the keyword fields counted by {@link #getFacetCounts(List)} while the hits are collected,
+   * e.g. {@link IndexFields#DOCUMENT_SPACE_S}, {@link IndexFields#DOCUMENT_TYPE},
+   * {@link IndexFields#OBJECT} or tag fields. Set them before accessing the results to have the
+   * facets counted in the same search.
+   */
+  public LuceneSearchResult setFacetFields(List<String> facetFields) {
+    List<String> fields = getList(facetFields);
+    if (!this.facetFields.equals(fields)) {
+      this.facetFields = fields;
+      resetCache();
+    }
+    return this;
+  }
+
+  /**
+   * Counts the terms of all hits for the given keyword fields in the same pass as the hits are
+   * collected, with the same query mode, cursor and timeout. The search only executes anew if the
+   * fields differ from {@link #getFacetFields()}. Like the hitcount the counts include hits failing
+   * the exists and access checks.
+   *
+   * @return term counts per field, each ordered by descending count
+   */
+  public Map<String, Map<String, Integer>> getFacetCounts(List<String> fields)
+      throws LuceneSearchException {
+    return setFacetFields(fields).luceneSearch().getFacetCounts();
+  }
+
   SearchResults luceneSearch() throws LuceneSearchException {
+    XWikiContext context = getContext();
+    return luceneSearch(getLucenePlugin(context), null, context);
+  }
+
+  /**
+   * Executes the search unless the results are cached already, e.g. ahead on another thread.
+   *
+   * @param plugin
+   *          the plugin to search with, also used by the searches following a parameter change
+   * @param handle
+   *          searchers to search with, null to acquire the current ones
+   * @param context
+   *          the context of the request, passed explicitly since the execution context is bound
+   *          to the request thread
+   */
+  LuceneSearchResult execute(@NotNull LucenePlugin plugin, @Nullable SearcherHandle handle,
+      @NotNull XWikiContext context) throws LuceneSearchException {
+    lucenePlugin = checkNotNull(plugin);
+    luceneSearch(plugin, handle, context);
+    return this;
+  }
+
+  private SearchResults luceneSearch(LucenePlugin plugin, SearcherHandle handle,
+      XWikiContext context) throws LuceneSearchException {
     try {
       if (searchResultsCache == null) {
-        if (skipChecks) {
-          searchResultsCache = getLucenePlugin().getSearchResultsWithoutChecks(queryString,
-              getSortFieldsArray(), null, getLanguageString(), getContext());
-        } else {
-          searchResultsCache = getLucenePlugin().getSearchResults(queryString, getSortFieldsArray(),
-              null, getLanguageString(), getContext());
-        }
+        searchResultsCache = plugin.getSearchResults(buildSearchRequest(plugin, handle),
+            context);
+        // only references and scores are read from the results
+        searchResultsCache.setReferencesOnly(true);
         LOGGER.trace("luceneSearch: new searchResults for: {}", this);
       } else {
         LOGGER.trace("luceneSearch: returning cached searchResults");
@@ -186,26 +387,60 @@ public class LuceneSearchResult {
       return searchResultsCache;
     } catch (IOException ioe) {
       throw newLuceneSearchException(ioe);
-    } catch (ParseException exc) {
+    } catch (ParseException | IllegalArgumentException exc) {
       throw newLuceneSearchException(exc);
     }
   }
 
+  private SearchRequest buildSearchRequest(LucenePlugin plugin, SearcherHandle handle)
+      throws ParseException {
+    SearchRequest.Builder builder = compiled
+        ? new SearchRequest.Builder(new LuceneQueryCompiler(LucenePlugin.VERSION,
+            plugin.getAnalyzer(), plugin::getCachedFilter).compile(query))
+        : new SearchRequest.Builder(getQueryString());
+    if (isCursorPaging()) {
+      builder.page(cursor, getLimit());
+    }
+    return builder.sortFields(getSortFieldsArray())
+        .languages(getLanguageString())
+        .handle(handle)
+        .skipChecks(skipChecks)
+        .timeout(timeout)
+        .facetFields(facetFields)
+        .build();
+  }
+
+  private void resetCache() {
+    if (searchResultsCache != null) {
+      searchResultsCache.release();
+      searchResultsCache = null;
+    }
+  }
+
+  /**
+   * releases the index searcher held by the cached results, a following search executes anew
+   */
+  @Override
+  public void close() {
+    resetCache();
+  }
+
   private LuceneSearchException newLuceneSearchException(Throwable cause) {
-    return new LuceneSearchException("Error while executing lucene search query:" + queryString,
-        cause);
+    return new LuceneSearchException("Error while executing lucene search query:"
+        + getQueryString(), cause);
   }
 
   @Override
   public String toString() {
-    return "LuceneSearchResult [queryString=" + queryString + ", sortFields=" + sortFields
+    return "LuceneSearchResult [queryString=" + getQueryString() + ", sortFields=" + sortFields
         + ", languages=" + languages + ", skipChecks=" + skipChecks + ", offset=" + offset
-        + ", limit=" + limit + "]";
+        + ", limit=" + limit + ", lazyChecks=" + lazyChecks + ", cursor=" + cursor + ", timeout="
+        + timeout + ", compiled=" + compiled + ", facetFields=" + facetFields + "]";
   }
 
-  private LucenePlugin getLucenePlugin() {
+  private LucenePlugin getLucenePlugin(XWikiContext context) {
     if (lucenePlugin == null) {
-      lucenePlugin = (LucenePlugin) getContext().getWiki().getPlugin("lucene", getContext());
+      lucenePlugin = (LucenePlugin) context.getWiki().getPlugin("lucene", context);
     }
     return lucenePlugin;
   }
@@ -4,10 +4,14 @@ import static com.google.common.collect.ImmutableMap.*;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang.StringUtils;
@@ -215,6 +219,61 @@ public class LuceneSearchScriptService implements ScriptService {
     return searchService.search(queryString, sortFields, languages);
   }
 
+  /**
+   * Executes the queries in parallel, e.g. for the independent searches of a page which then take
+   * as long as the slowest one instead of the sum.
+   *
+   * @return the results in the order of the queries
+   */
+  public List<LuceneSearchResult> searchAll(List<LuceneQuery> queries, List<String> sortFields) {
+    return searchAll(queries, sortFields, null);
+  }
+
+  public List<LuceneSearchResult> searchAll(List<LuceneQuery> queries, List<String> sortFields,
+      List<String> languages) {
+    List<CompletableFuture<LuceneSearchResult>> futures = searchService.searchAsync(queries,
+        sortFields, languages);
+    List<LuceneSearchResult> results = new ArrayList<>();
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        results.add(futures.get(i).join());
+      } catch (CompletionException | CancellationException exc) {
+        LOGGER.warn("searchAll - failed for [{}]", queries.get(i), exc);
+        // executed again lazily, failing like any other search once its results are read
+        results.add(searchService.search(queries.get(i), sortFields, languages));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return number of documents matching the query, counted without rights checks and therefore
+   *         only for admins, else 0
+   */
+  public int count(LuceneQuery query) {
+    int count = 0;
+    if (rightsAccess.isAdmin()) {
+      try {
+        count = searchService.count(query);
+      } catch (LuceneSearchException exc) {
+        LOGGER.warn("count - failed for [{}]", query, exc);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return true if any document viewable by the current user matches the query
+   */
+  public boolean exists(LuceneQuery query) {
+    try {
+      return searchService.existsViewable(query);
+    } catch (LuceneSearchException exc) {
+      LOGGER.warn("exists - failed for [{}]", query, exc);
+      return false;
+    }
+  }
+
   public int getResultLimit() {
     return searchService.getResultLimit();
   }
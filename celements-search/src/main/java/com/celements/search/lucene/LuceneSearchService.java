@@ -8,16 +8,24 @@ import static com.celements.search.lucene.LuceneUtils.*;
 import static com.google.common.base.MoreObjects.*;
 import static java.util.stream.Collectors.*;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -51,12 +59,15 @@ import com.celements.search.lucene.query.QueryRestrictionGroup;
 import com.celements.search.lucene.query.QueryRestrictionGroup.Type;
 import com.celements.search.lucene.query.QueryRestrictionString;
 import com.google.common.collect.BoundType;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.plugin.lucene.IndexFields;
 import com.xpn.xwiki.plugin.lucene.LucenePlugin;
 import com.xpn.xwiki.plugin.lucene.indexExtension.IndexExtensionField;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
 
 @Component
 public class LuceneSearchService implements ILuceneSearchService {
@@ -69,6 +80,22 @@ public class LuceneSearchService implements ILuceneSearchService {
   private static final boolean DEFAULT_TOKENIZE = true;
   private static final boolean DEFAULT_FUZZY = false;
 
+  /**
+   * number of threads executing the queries of {@link #searchAsync}, defaults to the number of
+   * available processors, at least one
+   */
+  static final String CFG_ASYNC_THREADS = "lucene.search.async.threads";
+
+  /**
+   * queries waiting for a thread, further ones are executed by the calling thread
+   */
+  static final int ASYNC_QUEUE_SIZE = 100;
+
+  /**
+   * idle threads of {@link #searchAsync} end after this many seconds
+   */
+  private static final int ASYNC_KEEP_ALIVE = 60;
+
   @Requirement
   private ILuceneIndexService luceneIndexService;
 
@@ -81,6 +108,8 @@ public class LuceneSearchService implements ILuceneSearchService {
   @Requirement
   private ModelContext context;
 
+  private ThreadPoolExecutor asyncExecutor;
+
   @Override
   public java.text.DateFormat getSDF() {
     return new SimpleDateFormat("yyyyMMddHHmm");
@@ -401,6 +430,35 @@ public class LuceneSearchService implements ILuceneSearchService {
     return createRangeRestriction(field, mapRange(range, IndexFields::numberToString));
   }
 
+  @Override
+  public QueryRestriction createNumericRangeRestriction(String field,
+      Range<? extends Number> range) {
+    // numbers are discrete, so all bounds can be closed as required by the Lucene 3 syntax
+    Range<Long> closed = mapRange(range, Number::longValue).canonical(DiscreteDomain.longs());
+    String value = "["
+        + (range.hasLowerBound() ? Long.toString(closed.lowerEndpoint()) : "*")
+        + " TO "
+        + (range.hasUpperBound() ? Long.toString(closed.upperEndpoint() - 1) : "*")
+        + "]";
+    return createRestriction(IndexFields.numericField(field), value, false).setAnalyzer(null);
+  }
+
+  @Override
+  public QueryRestriction createNumericDateRangeRestriction(String field,
+      Range<LocalDateTime> range) {
+    return createNumericRangeRestriction(field, mapRange(range,
+        date -> IndexFields.dateToLong(date)));
+  }
+
+  @Override
+  public QueryRestrictionGroup createNumericDateRangeRestriction(String startField,
+      String endField, Range<LocalDateTime> range) {
+    QueryRestrictionGroup grp = createRestrictionGroup(Type.AND);
+    grp.add(createNumericDateRangeRestriction(endField, withoutUpperBound(range)));
+    grp.add(createNumericDateRangeRestriction(startField, withoutLowerBound(range)));
+    return grp;
+  }
+
   @Override
   public QueryRestrictionGroup createAttachmentRestrictionGroup(List<String> mimeTypes,
       List<String> mimeTypesBlackList, List<String> filenamePrefs) {
@@ -450,6 +508,139 @@ public class LuceneSearchService implements ILuceneSearchService {
     return new LuceneSearchResult(queryString, sortFields, languages, true);
   }
 
+  @Override
+  public List<CompletableFuture<LuceneSearchResult>> searchAsync(List<LuceneQuery> queries,
+      List<String> sortFields, List<String> languages) {
+    return searchAsync(queries, sortFields, languages, false);
+  }
+
+  @Override
+  public List<CompletableFuture<LuceneSearchResult>> searchAsyncWithoutChecks(
+      List<LuceneQuery> queries, List<String> sortFields, List<String> languages) {
+    return searchAsync(queries, sortFields, languages, true);
+  }
+
+  private List<CompletableFuture<LuceneSearchResult>> searchAsync(List<LuceneQuery> queries,
+      List<String> sortFields, List<String> languages, boolean skipChecks) {
+    List<LuceneSearchResult> results = queries.stream()
+        .map(query -> new LuceneSearchResult(query, sortFields, languages, skipChecks))
+        .collect(toList());
+    LucenePlugin plugin;
+    SearcherHandle handle;
+    try {
+      plugin = getRequiredLucenePlugin();
+      handle = plugin.acquireSearcher();
+    } catch (IOException | LuceneSearchException exc) {
+      LuceneSearchException lse = (exc instanceof LuceneSearchException)
+          ? (LuceneSearchException) exc
+          : new LuceneSearchException("Error while acquiring lucene searchers", exc);
+      return results.stream()
+          .map(result -> CompletableFuture.<LuceneSearchResult>failedFuture(lse))
+          .collect(toList());
+    }
+    // the execution context is bound to the request thread
+    XWikiContext xContext = getXContext();
+    List<CompletableFuture<LuceneSearchResult>> futures = new ArrayList<>();
+    try {
+      for (LuceneSearchResult result : results) {
+        // each search holds its own handle until it completes, see execute
+        SearcherHandle searchHandle = handle.acquireAnother();
+        futures.add(CompletableFuture.supplyAsync(() -> execute(result, plugin, searchHandle,
+            xContext), getAsyncExecutor()));
+      }
+    } finally {
+      release(handle);
+    }
+    return futures;
+  }
+
+  private LuceneSearchResult execute(LuceneSearchResult result, LucenePlugin plugin,
+      SearcherHandle handle, XWikiContext xContext) {
+    try {
+      return result.execute(plugin, handle, xContext);
+    } catch (LuceneSearchException exc) {
+      throw new CompletionException(exc);
+    } finally {
+      release(handle);
+    }
+  }
+
+  private void release(SearcherHandle handle) {
+    try {
+      handle.release();
+    } catch (IOException exc) {
+      LOGGER.error("failed to release {}", handle, exc);
+    }
+  }
+
+  /**
+   * Searches exceeding the threads and queue run on the calling thread, even after the executor
+   * was shut down with the JVM, so every future completes.
+   */
+  synchronized ThreadPoolExecutor getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      int threads = Math.max(1, cfgSrc.getProperty(CFG_ASYNC_THREADS,
+          Runtime.getRuntime().availableProcessors()));
+      asyncExecutor = new ThreadPoolExecutor(threads, threads, ASYNC_KEEP_ALIVE, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(ASYNC_QUEUE_SIZE), new ThreadFactoryBuilder()
+              .setNameFormat("LuceneSearchAsync-%d").setDaemon(true).build(),
+          (task, executor) -> task.run());
+      asyncExecutor.allowCoreThreadTimeOut(true);
+      Runtime.getRuntime().addShutdownHook(new Thread(asyncExecutor::shutdown,
+          "LuceneSearchAsync-shutdown"));
+      LOGGER.info("getAsyncExecutor: {} threads", threads);
+    }
+    return asyncExecutor;
+  }
+
+  @Override
+  public Stream<EntityReference> streamWithoutChecks(LuceneQuery query, List<String> languages)
+      throws LuceneSearchException {
+    String queryString = query.getQueryString();
+    String languageString = (languages != null) ? StringUtils.join(languages, ",") : null;
+    try {
+      return getRequiredLucenePlugin().streamReferences(queryString, null, languageString);
+    } catch (IOException | ParseException exc) {
+      throw new LuceneSearchException("Error while streaming lucene search query:" + queryString,
+          exc);
+    }
+  }
+
+  @Override
+  public int count(LuceneQuery query) throws LuceneSearchException {
+    String queryString = query.getQueryString();
+    try {
+      return getRequiredLucenePlugin().count(queryString, null, null);
+    } catch (IOException | ParseException exc) {
+      throw newLuceneSearchException(queryString, exc);
+    }
+  }
+
+  @Override
+  public boolean exists(LuceneQuery query) throws LuceneSearchException {
+    String queryString = query.getQueryString();
+    try {
+      return getRequiredLucenePlugin().exists(queryString, null, null);
+    } catch (IOException | ParseException exc) {
+      throw newLuceneSearchException(queryString, exc);
+    }
+  }
+
+  @Override
+  public boolean existsViewable(LuceneQuery query) throws LuceneSearchException {
+    String queryString = query.getQueryString();
+    try {
+      return getRequiredLucenePlugin().existsViewable(queryString, null, null, getXContext());
+    } catch (IOException | ParseException exc) {
+      throw newLuceneSearchException(queryString, exc);
+    }
+  }
+
+  private LuceneSearchException newLuceneSearchException(String queryString, Throwable cause) {
+    return new LuceneSearchException("Error while executing lucene search query:" + queryString,
+        cause);
+  }
+
   @Override
   public int getResultLimit() {
     return getResultLimit(false);
@@ -484,6 +675,11 @@ public class LuceneSearchService implements ILuceneSearchService {
     }
   }
 
+  private LucenePlugin getRequiredLucenePlugin() throws LuceneSearchException {
+    return getLucenePlugin().orElseThrow(() -> new LuceneSearchException(
+        "LucenePlugin not available"));
+  }
+
   private XWikiContext getXContext() {
     return context.getXWikiContext();
   }
@@ -26,6 +26,7 @@ public class LuceneQuery extends QueryRestrictionGroup {
 
   private List<LuceneDocType> docTypes = ImmutableList.of();
   private List<WikiReference> wikis = ImmutableList.of();
+  private List<IQueryRestriction> constraints = ImmutableList.of();
 
   public LuceneQuery() {
     super(Type.AND);
@@ -109,12 +110,53 @@ public class LuceneQuery extends QueryRestrictionGroup {
     }
   }
 
+  /**
+   * Adds a restriction which doesn't need scoring and repeats across many queries, e.g. on page
+   * types. Compiled queries apply it with the doc types and wikis as cached filter, else it's
+   * searched like any other restriction.
+   */
+  public LuceneQuery addConstraint(IQueryRestriction constraint) {
+    if (constraint != null) {
+      constraints = ImmutableList.<IQueryRestriction>builder().addAll(constraints).add(constraint)
+          .build();
+    }
+    return this;
+  }
+
   @Override
   public String getQueryString() {
-    QueryRestrictionGroup restrGrp = super.copy();
-    restrGrp.add(0, getAsRestrGrp(wikis));
-    restrGrp.add(0, getAsRestrGrp(docTypes));
-    return restrGrp.getQueryString();
+    return toRestrictionGroup().getQueryString();
+  }
+
+  /**
+   * @return a copy of the restrictions, preceded by the ones of the doc types and wikis and the
+   *         constraints
+   */
+  QueryRestrictionGroup toRestrictionGroup() {
+    QueryRestrictionGroup restrGrp = copyRestrictions();
+    restrGrp.addAll(0, getConstraints());
+    return restrGrp;
+  }
+
+  /**
+   * @return a copy of the restrictions without the ones of the doc types, wikis and constraints
+   */
+  QueryRestrictionGroup copyRestrictions() {
+    return super.copy();
+  }
+
+  /**
+   * @return the restrictions of the doc types and wikis and the constraints, repeating across most
+   *         queries
+   */
+  QueryRestrictionGroup getConstraints() {
+    QueryRestrictionGroup restrGrp = new QueryRestrictionGroup(Type.AND);
+    restrGrp.add(getAsRestrGrp(docTypes));
+    restrGrp.add(getAsRestrGrp(wikis));
+    for (IQueryRestriction constraint : constraints) {
+      restrGrp.add(constraint.copy());
+    }
+    return restrGrp;
   }
 
   @Override
@@ -122,6 +164,7 @@ public class LuceneQuery extends QueryRestrictionGroup {
     LuceneQuery copy = new LuceneQuery();
     copy.docTypes = docTypes;
     copy.wikis = wikis;
+    copy.constraints = constraints;
     copy.addAll(super.copy());
     return copy;
   }
@@ -191,7 +234,8 @@ public class LuceneQuery extends QueryRestrictionGroup {
 
   @Override
   public int hashCode() {
-    return new HashCodeBuilder().append(super.hashCode()).append(docTypes).append(wikis).hashCode();
+    return new HashCodeBuilder().append(super.hashCode()).append(docTypes).append(wikis)
+        .append(constraints).hashCode();
   }
 
   @Override
@@ -199,7 +243,8 @@ public class LuceneQuery extends QueryRestrictionGroup {
     if (obj instanceof LuceneQuery) {
       LuceneQuery other = (LuceneQuery) obj;
       return super.equals(obj) && ObjectUtils.equals(docTypes, other.docTypes)
-          && ObjectUtils.equals(wikis, other.wikis);
+          && ObjectUtils.equals(wikis, other.wikis)
+          && ObjectUtils.equals(constraints, other.constraints);
     } else {
       return false;
     }
@@ -207,8 +252,8 @@ public class LuceneQuery extends QueryRestrictionGroup {
 
   @Override
   public String toString() {
-    return "LuceneQuery [docTypes=" + docTypes + ", wikis=" + wikis + ", queryString()="
-        + getQueryString() + "]";
+    return "LuceneQuery [docTypes=" + docTypes + ", wikis=" + wikis + ", constraints="
+        + constraints + ", queryString()=" + getQueryString() + "]";
   }
 
 }
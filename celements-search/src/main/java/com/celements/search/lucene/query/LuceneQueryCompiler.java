@@ -0,0 +1,417 @@
+package com.celements.search.lucene.query;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Version;
+
+import com.celements.search.lucene.query.QueryRestrictionGroup.Type;
+import com.google.common.base.Joiner;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.plugin.lucene.NumericQueryParser;
+
+/**
+ * Compiles restriction trees directly into Lucene queries instead of serializing them with
+ * {@link IQueryRestriction#getQueryString()} to have them parsed again. The result matches the
+ * same documents as the parsed query string, terms are analyzed and numeric fields handled like
+ * the {@link NumericQueryParser} does. Raw query syntax, i.e. {@link QueryRestrictionString}s and
+ * {@link QueryRestriction.QueryMode#DEFAULT} values which aren't a plain term, prefix or range, is
+ * still parsed, but only per restriction.<br>
+ * <br>
+ * If a filter factory is given, the doc type and wiki restrictions and the constraints of a
+ * {@link LuceneQuery} are applied as non-scoring filter instead of query clauses, see
+ * {@link LuceneQuery#addConstraint(IQueryRestriction)} and
+ * {@link LucenePlugin#getCachedFilter(Query)}.
+ */
+public class LuceneQueryCompiler {
+
+  private static final Pattern RANGE_PATTERN = Pattern.compile(
+      "^([\\[{])\\s*(\\S+)\\s+TO\\s+(\\S+)\\s*([\\]}])$");
+
+  private final Version version;
+  private final Analyzer analyzer;
+  private final Function<Query, Filter> filterFactory;
+
+  public LuceneQueryCompiler(@NotNull Version version, @NotNull Analyzer analyzer) {
+    this(version, analyzer, null);
+  }
+
+  /**
+   * @param filterFactory
+   *          creates the filters for the doc type and wiki restrictions and the constraints, may
+   *          be null to compile them as query clauses
+   */
+  public LuceneQueryCompiler(@NotNull Version version, @NotNull Analyzer analyzer,
+      @Nullable Function<Query, Filter> filterFactory) {
+    this.version = checkNotNull(version);
+    this.analyzer = checkNotNull(analyzer);
+    this.filterFactory = filterFactory;
+  }
+
+  /**
+   * @throws ParseException
+   *           if the restriction is empty or contains invalid raw query syntax
+   */
+  @NotNull
+  public Query compile(@NotNull IQueryRestriction restriction) throws ParseException {
+    BooleanClause clause = new Compilation().compile(checkNotNull(restriction));
+    if (clause == null) {
+      throw new ParseException("empty query: " + restriction);
+    } else if (clause.isProhibited()) {
+      BooleanQuery bQuery = new BooleanQuery();
+      bQuery.add(clause);
+      return bQuery;
+    }
+    return clause.getQuery();
+  }
+
+  /**
+   * state of a single compilation, the protected query factory methods of the parser aren't
+   * thread safe
+   */
+  private class Compilation {
+
+    private final TermFactory factory = new TermFactory(version, analyzer);
+
+    @Nullable
+    BooleanClause compile(IQueryRestriction restr) throws ParseException {
+      if (restr instanceof LuceneQuery) {
+        return compileLuceneQuery((LuceneQuery) restr);
+      } else if (restr instanceof QueryRestrictionGroup) {
+        return compileGroup(((QueryRestrictionGroup) restr).copy().cleanup());
+      } else if (restr instanceof QueryRestriction) {
+        return compileRestriction((QueryRestriction) restr);
+      } else if (restr.isEmpty()) {
+        return null;
+      } else {
+        boolean negate = restr.getNegate();
+        Query query = parse(restr.copy().setNegate(false).getQueryString(),
+            LucenePlugin.DEFAULT_SEARCH_FIELDS);
+        return new BooleanClause(query, negate ? Occur.MUST_NOT : Occur.MUST);
+      }
+    }
+
+    private BooleanClause compileLuceneQuery(LuceneQuery luceneQuery) throws ParseException {
+      BooleanClause constraints = null;
+      if ((filterFactory != null) && !luceneQuery.getNegate()) {
+        constraints = compileGroup(luceneQuery.getConstraints().cleanup());
+      }
+      if (constraints == null) {
+        return compileGroup(luceneQuery.toRestrictionGroup().cleanup());
+      }
+      Filter filter = filterFactory.apply(toQuery(constraints));
+      BooleanClause clause = compileGroup(luceneQuery.copyRestrictions().cleanup());
+      Query query;
+      if (clause == null) {
+        // unlike a constant score query it never returns deleted documents
+        query = new FilteredQuery(new MatchAllDocsQuery(), filter);
+      } else if (clause.isProhibited()) {
+        query = new FilteredQuery(toQuery(clause), filter);
+      } else {
+        query = new FilteredQuery(clause.getQuery(), filter);
+      }
+      return new BooleanClause(query, Occur.MUST);
+    }
+
+    /**
+     * a prohibited clause matches all documents but the ones of its query
+     */
+    private Query toQuery(BooleanClause clause) {
+      if (!clause.isProhibited()) {
+        return clause.getQuery();
+      }
+      BooleanQuery bQuery = new BooleanQuery();
+      bQuery.add(new MatchAllDocsQuery(), Occur.MUST);
+      bQuery.add(clause);
+      return bQuery;
+    }
+
+    private BooleanClause compileGroup(QueryRestrictionGroup group) throws ParseException {
+      List<BooleanClause> clauses = new ArrayList<>();
+      for (IQueryRestriction restr : group) {
+        BooleanClause clause = compile(restr);
+        if (clause != null) {
+          clauses.add(clause);
+        }
+      }
+      if (clauses.isEmpty()) {
+        return null;
+      } else if (clauses.size() == 1) {
+        BooleanClause clause = clauses.get(0);
+        boolean negate = clause.isProhibited() != group.getNegate();
+        return new BooleanClause(clause.getQuery(), negate ? Occur.MUST_NOT : Occur.MUST);
+      }
+      Occur occur = (group.getType() == Type.AND) ? Occur.MUST : Occur.SHOULD;
+      BooleanQuery bQuery = new BooleanQuery();
+      for (BooleanClause clause : clauses) {
+        bQuery.add(clause.getQuery(), clause.isProhibited() ? Occur.MUST_NOT : occur);
+      }
+      return new BooleanClause(bQuery, group.getNegate() ? Occur.MUST_NOT : Occur.MUST);
+    }
+
+    private BooleanClause compileRestriction(QueryRestriction restr) throws ParseException {
+      if (restr.getSpecifier().isEmpty()) {
+        return null;
+      }
+      Query query;
+      switch (restr.getMode()) {
+        case TOKENIZED:
+          query = compileTokens(restr, Occur.MUST);
+          break;
+        case TOKENIZED_OR:
+          query = compileTokens(restr, Occur.SHOULD);
+          break;
+        case EXACT:
+          query = compileExact(restr);
+          break;
+        default:
+          query = compileDefault(restr);
+      }
+      if (query == null) {
+        return null;
+      }
+      return new BooleanClause(query, restr.getNegate() ? Occur.MUST_NOT : Occur.MUST);
+    }
+
+    private Query compileTokens(QueryRestriction restr, Occur occur) throws ParseException {
+      String field = restr.getSpecifier();
+      List<Token> tokens = tokenize(restr);
+      if (tokens.isEmpty()) {
+        return null;
+      }
+      int proximity = restr.getProximity().or(0);
+      if (proximity > 1) {
+        return boost(factory.phrase(field, Joiner.on(' ').join(tokens), proximity), restr);
+      }
+      // fuzzy terms are always combined with AND
+      Occur defaultOccur = restr.getFuzzy().isPresent() ? Occur.MUST : occur;
+      BooleanQuery bQuery = new BooleanQuery();
+      for (Token token : tokens) {
+        Query query = token.phrase ? factory.term(field, token.text, true) : compileTerm(field,
+            token.text, restr.getFuzzy().orNull());
+        if (query != null) {
+          bQuery.add(query, token.getOccur(defaultOccur));
+        }
+      }
+      BooleanClause[] clauses = bQuery.getClauses();
+      if (clauses.length == 0) {
+        return null;
+      } else if ((clauses.length == 1) && !clauses[0].isProhibited()) {
+        return boost(clauses[0].getQuery(), restr);
+      }
+      return boost(bQuery, restr);
+    }
+
+    /**
+     * tokens are matched as prefix, additionally fuzzy if requested
+     */
+    private Query compileTerm(String field, String text, @Nullable Float fuzzy)
+        throws ParseException {
+      String term = text.endsWith("*") ? text.substring(0, text.length() - 1) : text;
+      Query query;
+      if ((term.indexOf('*') >= 0) || (term.indexOf('?') >= 0)) {
+        query = factory.wildcard(field, term + "*");
+      } else {
+        query = factory.prefix(field, term);
+      }
+      if (fuzzy != null) {
+        BooleanQuery bQuery = new BooleanQuery();
+        bQuery.add(query, Occur.SHOULD);
+        bQuery.add(factory.fuzzy(field, term, getMinSimilarity(fuzzy)), Occur.SHOULD);
+        query = bQuery;
+      }
+      return query;
+    }
+
+    private float getMinSimilarity(float fuzzy) throws ParseException {
+      if ((fuzzy < 0) || (fuzzy > 1)) {
+        return FuzzyQuery.defaultMinSimilarity;
+      } else if (fuzzy == 1) {
+        throw new ParseException("Minimum similarity for a FuzzyQuery has to be between 0.0f "
+            + "and 1.0f !");
+      }
+      return fuzzy;
+    }
+
+    private Query compileExact(QueryRestriction restr) throws ParseException {
+      String text = unquote(restr.filterToken(restr.getQuery()));
+      if (text.isEmpty()) {
+        return null;
+      }
+      int proximity = restr.getProximity().or(0);
+      Query query = (proximity > 1) ? factory.phrase(restr.getSpecifier(), text, proximity)
+          : factory.term(restr.getSpecifier(), text, true);
+      return boost(query, restr);
+    }
+
+    private Query compileDefault(QueryRestriction restr) throws ParseException {
+      String field = restr.getSpecifier();
+      String value = restr.filterToken(restr.getQuery());
+      if (value.isEmpty()) {
+        return null;
+      }
+      Query query = null;
+      if (!restr.getFuzzy().isPresent() && (restr.getProximity().or(0) <= 1)) {
+        Matcher m = RANGE_PATTERN.matcher(value);
+        if (m.matches()) {
+          boolean inclusive = m.group(1).equals("[");
+          if (inclusive == m.group(4).equals("]")) {
+            query = factory.range(field, unquote(m.group(2)), unquote(m.group(3)), inclusive);
+          }
+        } else if (isQuoted(value)) {
+          query = factory.term(field, unquote(value), true);
+        } else if (isPlainTerm(value)) {
+          query = factory.term(field, value, false);
+        } else if (value.endsWith("*") && isPlainTerm(value.substring(0, value.length() - 1))) {
+          query = factory.prefix(field, value.substring(0, value.length() - 1));
+        }
+      }
+      if (query == null) {
+        // raw query syntax, parse the restriction on its own
+        return parse(restr.copy().setNegate(false).getQueryString(), new String[] { field });
+      }
+      return boost(query, restr);
+    }
+
+    /**
+     * a single quoted phrase, e.g. <tt>"foo bar"</tt> but not <tt>"foo" "bar"</tt>
+     */
+    private boolean isQuoted(String value) {
+      return (value.length() > 2) && value.startsWith("\"") && value.endsWith("\"")
+          && (value.indexOf('"', 1) == (value.length() - 1));
+    }
+
+    private boolean isPlainTerm(String value) {
+      return !value.isEmpty() && QueryParser.escape(value).equals(value)
+          && !value.matches(".*\\s.*") && !value.matches("AND|OR|NOT");
+    }
+
+    private Query parse(String queryString, List<String> fields) throws ParseException {
+      return parse(queryString, fields.toArray(new String[fields.size()]));
+    }
+
+    private Query parse(String queryString, String[] fields) throws ParseException {
+      return new NumericQueryParser(version, fields, analyzer).parse(queryString);
+    }
+
+    private Query boost(@Nullable Query query, QueryRestriction restr) {
+      if ((query != null) && restr.getBoost().isPresent() && (restr.getBoost().get() > 0)) {
+        query.setBoost(restr.getBoost().get());
+      }
+      return query;
+    }
+
+  }
+
+  static List<Token> tokenize(QueryRestriction restr) {
+    List<Token> tokens = new ArrayList<>();
+    Matcher m = QueryRestriction.TOKEN_PATTERN.matcher(restr.getQuery());
+    while (m.find()) {
+      String token = restr.filterToken(m.group(0).trim());
+      char operator = 0;
+      if (!token.isEmpty() && ((token.charAt(0) == '+') || (token.charAt(0) == '-'))) {
+        operator = token.charAt(0);
+        token = token.substring(1);
+      }
+      boolean phrase = (token.length() > 1) && token.startsWith("\"") && token.endsWith("\"");
+      token = unquote(token).trim();
+      if (!token.isEmpty()) {
+        tokens.add(new Token(operator, token, phrase));
+      }
+    }
+    return tokens;
+  }
+
+  private static String unquote(String value) {
+    int start = value.startsWith("\"") ? 1 : 0;
+    int end = value.length() - (value.endsWith("\"") ? 1 : 0);
+    return (start < end) ? value.substring(start, end) : "";
+  }
+
+  static class Token {
+
+    final char operator;
+    final String text;
+    final boolean phrase;
+
+    Token(char operator, String text, boolean phrase) {
+      this.operator = operator;
+      this.text = text;
+      this.phrase = phrase;
+    }
+
+    Occur getOccur(Occur defaultOccur) {
+      switch (operator) {
+        case '+':
+          return Occur.MUST;
+        case '-':
+          return Occur.MUST_NOT;
+        default:
+          return defaultOccur;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+
+  }
+
+  /**
+   * exposes the query factory methods of the parser, e.g. to analyze terms and create numeric
+   * queries for numeric fields
+   */
+  private static class TermFactory extends NumericQueryParser {
+
+    TermFactory(Version version, Analyzer analyzer) {
+      super(version, new String[0], analyzer);
+    }
+
+    Query term(String field, String text, boolean quoted) throws ParseException {
+      return getFieldQuery(field, text, quoted);
+    }
+
+    Query phrase(String field, String text, int slop) throws ParseException {
+      return getFieldQuery(field, text, slop);
+    }
+
+    Query prefix(String field, String text) throws ParseException {
+      return getPrefixQuery(field, text);
+    }
+
+    Query wildcard(String field, String text) throws ParseException {
+      return getWildcardQuery(field, text);
+    }
+
+    Query fuzzy(String field, String text, float minSimilarity) throws ParseException {
+      return getFuzzyQuery(field, text, minSimilarity);
+    }
+
+    Query range(String field, String part1, String part2, boolean inclusive)
+        throws ParseException {
+      return getRangeQuery(field, part1, part2, inclusive);
+    }
+
+  }
+
+}
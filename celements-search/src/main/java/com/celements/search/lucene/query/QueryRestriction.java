@@ -29,7 +29,7 @@ public class QueryRestriction implements IQueryRestriction {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(QueryRestriction.class);
 
-  private static final Pattern TOKEN_PATTERN = Pattern.compile("( ?\"[^\"]*\" ?)|[^ ]+");
+  static final Pattern TOKEN_PATTERN = Pattern.compile("( ?\"[^\"]*\" ?)|[^ ]+");
 
   private boolean negate = false;
   private String specifier = null;
@@ -83,6 +83,10 @@ public class QueryRestriction implements IQueryRestriction {
     return this;
   }
 
+  public QueryMode getMode() {
+    return mode;
+  }
+
   public QueryRestriction setMode(@Nullable QueryMode mode) {
     this.mode = firstNonNull(mode, DEFAULT);
     return this;
@@ -152,6 +156,10 @@ public class QueryRestriction implements IQueryRestriction {
     return this;
   }
 
+  public Optional<Integer> getProximity() {
+    return Optional.fromNullable(proximity);
+  }
+
   public QueryRestriction setProximity(int proximity) {
     this.proximity = proximity;
     return this;
@@ -174,6 +182,10 @@ public class QueryRestriction implements IQueryRestriction {
     return this;
   }
 
+  public Optional<Float> getBoost() {
+    return Optional.fromNullable(boost);
+  }
+
   public QueryRestriction setBoost(float boost) {
     this.boost = boost;
     return this;
@@ -186,8 +186,8 @@ public class DefaultWebSearchQueryBuilder implements WebSearchQueryBuilder {
     query.add(getRestrSpaces(true));
     query.add(getRestrDocs(false));
     query.add(getRestrDocs(true));
-    query.add(getRestrPageTypes(false));
-    query.add(getRestrPageTypes(true));
+    query.addConstraint(getRestrPageTypes(false));
+    query.addConstraint(getRestrPageTypes(true));
     Collection<WebSearchPackage> searchPackages = getPackages();
     query.add(getRestrPackages(searchPackages));
     query.add(getRestrLinkedDocsOnly(searchPackages));
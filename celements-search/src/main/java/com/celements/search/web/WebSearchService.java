@@ -119,7 +119,8 @@ public class WebSearchService implements IWebSearchService {
           .forEach(sortFields::add);
     }
     LuceneQuery query = builder.build();
-    return luceneSearchService.search(query, sortFields, languages);
+    // compiled to filter by the doc types, wikis and page types instead of scoring them
+    return luceneSearchService.search(query, sortFields, languages).setCompiled(true);
   }
 
 }
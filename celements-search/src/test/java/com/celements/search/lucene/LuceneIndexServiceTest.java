@@ -1,5 +1,6 @@
 package com.celements.search.lucene;
 
+import static com.celements.common.test.CelementsTestUtils.*;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
@@ -17,6 +18,7 @@ import com.celements.search.lucene.index.queue.IndexQueuePriority;
 import com.celements.search.lucene.observation.event.LuceneQueueDeleteEvent;
 import com.celements.search.lucene.observation.event.LuceneQueueEvent;
 import com.celements.search.lucene.observation.event.LuceneQueueIndexEvent;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
 import com.xpn.xwiki.web.Utils;
 
 public class LuceneIndexServiceTest extends AbstractComponentTest {
@@ -142,6 +144,22 @@ public class LuceneIndexServiceTest extends AbstractComponentTest {
     assertEquals(new LuceneQueueEvent.Data(prio, true), data.getValue());
   }
 
+  @Test
+  public void test_rebuildIndex_replica() {
+    LucenePlugin pluginMock = createDefaultMock(LucenePlugin.class);
+    expect(getWikiMock().getPlugin(eq("lucene"), same(getContext()))).andReturn(pluginMock)
+        .anyTimes();
+    expect(pluginMock.isReplica()).andReturn(true);
+    replayDefault();
+    try {
+      service.rebuildIndex(ref);
+      fail("expecting IllegalStateException on replica");
+    } catch (IllegalStateException ise) {
+      // expected
+    }
+    verifyDefault();
+  }
+
   private void setExecParam(String key, Object value) {
     Utils.getComponent(Execution.class).getContext().setProperty(key, value);
   }
@@ -5,6 +5,7 @@ import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -12,7 +13,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.IndexSearcher;
 import org.easymock.Capture;
+import org.easymock.IExpectationSetters;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.model.reference.AttachmentReference;
@@ -24,10 +27,16 @@ import com.celements.common.test.AbstractComponentTest;
 import com.celements.search.lucene.query.LuceneDocType;
 import com.celements.search.lucene.query.LuceneQuery;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.lucene.IndexFields;
 import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.plugin.lucene.SearchRequest;
 import com.xpn.xwiki.plugin.lucene.SearchResult;
 import com.xpn.xwiki.plugin.lucene.SearchResults;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.ISearcherProviderRole;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherHandle;
+import com.xpn.xwiki.web.Utils;
 
 public class LuceneSearchResultTest extends AbstractComponentTest {
 
@@ -216,6 +225,54 @@ public class LuceneSearchResultTest extends AbstractComponentTest {
     assertEquals(1234, ret);
   }
 
+  @Test
+  public void test_getResults_lazyChecks() throws Exception {
+    LuceneSearchResult result = newResult(new LuceneQuery(), null, null, false);
+    result.setLazyChecks(true);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+    result.searchResultsCache = sResultsMock;
+    SearchResult resultMock = createDefaultMock(SearchResult.class);
+    DocumentReference docRef = new DocumentReference("db", "space", "doc");
+    expect(sResultsMock.getViewableResults(eq(1), eq(10))).andReturn(Arrays.asList(resultMock));
+    expect(sResultsMock.getViewableResults(eq(11), eq(10))).andReturn(Arrays.asList(resultMock));
+    expect(resultMock.getReference()).andReturn(docRef).times(2);
+
+    replayDefault();
+    assertEquals(Arrays.asList(docRef), result.getResults(0, 10));
+    assertSame("next page continues on the same results", sResultsMock,
+        result.setOffset(10).searchResultsCache);
+    assertEquals(Arrays.asList(docRef), result.getResults(10, 10));
+    verifyDefault();
+  }
+
+  @Test
+  public void test_setLazyChecks_resetsCache() throws Exception {
+    LuceneSearchResult result = newResult(new LuceneQuery(), null, null, false);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+    result.searchResultsCache = sResultsMock;
+    sResultsMock.release();
+
+    replayDefault();
+    assertSame(sResultsMock, result.setLazyChecks(false).searchResultsCache);
+    assertNull(result.setLazyChecks(true).searchResultsCache);
+    verifyDefault();
+  }
+
+  @Test
+  public void test_getSize_lazyChecks() throws Exception {
+    LuceneSearchResult result = newResult(new LuceneQuery(), null, null, false);
+    result.setLazyChecks(true);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+    result.searchResultsCache = sResultsMock;
+    expect(sResultsMock.getEstimatedViewableHitcount()).andReturn(1234);
+    expect(sResultsMock.isViewableHitcountExact()).andReturn(false);
+
+    replayDefault();
+    assertEquals(1234, result.getSize());
+    assertFalse(result.isSizeExact());
+    verifyDefault();
+  }
+
   @Test
   public void test_getSize_skipChecks() throws Exception {
     LuceneQuery query = new LuceneQuery();
@@ -255,48 +312,141 @@ public class LuceneSearchResultTest extends AbstractComponentTest {
     List<String> languages = Arrays.asList("lang1", "lang2");
     boolean skipChecks = false;
     LuceneSearchResult result = newResult(query, sortFields, languages, skipChecks);
-    Capture<String[]> sortFieldsCapture = newCapture();
+    Capture<SearchRequest> requestCapture = newCapture();
     SearchResults sResultsMock = createDefaultMock(SearchResults.class);
 
-    expect(lucenePluginMock.getSearchResults(eq(query.getQueryString()), capture(sortFieldsCapture),
-        isNull(String.class), eq("lang1,lang2"), same(context))).andReturn(sResultsMock).once();
+    expectSearch(requestCapture).andReturn(sResultsMock).once();
+    sResultsMock.setReferencesOnly(true);
 
     replayDefault();
     SearchResults ret = result.luceneSearch();
     verifyDefault();
 
-    assertEquals(sortFields, Arrays.asList(sortFieldsCapture.getValue()));
+    SearchRequest request = requestCapture.getValue();
+    assertEquals(query.getQueryString(), request.getQueryString().get());
+    assertEquals(sortFields, Arrays.asList(request.getSortFields()));
+    assertNull(request.getVirtualWikiNames());
+    assertEquals("lang1,lang2", request.getLanguages());
+    assertFalse(request.isSkipChecks());
+    assertNull(request.getTimeout());
+    assertFalse(request.getHandle().isPresent());
+    assertFalse(request.getCursor().isPresent());
     assertSame(sResultsMock, ret);
   }
 
+  @Test
+  public void test_LuceneSearch_timeout() throws Exception {
+    LuceneQuery query = new LuceneQuery();
+    boolean skipChecks = false;
+    Duration timeout = Duration.ofSeconds(2);
+    LuceneSearchResult result = newResult(query, null, null, skipChecks).setTimeout(timeout);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+
+    Capture<SearchRequest> requestCapture = newCapture();
+    expectSearch(requestCapture).andReturn(sResultsMock).once();
+    sResultsMock.setReferencesOnly(true);
+    expect(sResultsMock.isTimedOut()).andReturn(true).once();
+
+    replayDefault();
+    assertTrue(result.isTimedOut());
+    verifyDefault();
+    assertEquals(timeout, requestCapture.getValue().getTimeout());
+  }
+
   @Test
   public void test_LuceneSearch_withoutChecks() throws Exception {
     LuceneQuery query = new LuceneQuery();
     boolean skipChecks = true;
     LuceneSearchResult result = newResult(query, null, null, skipChecks);
-    Capture<String[]> sortFieldsCapture = newCapture();
+    Capture<SearchRequest> requestCapture = newCapture();
     SearchResults sResultsMock = createDefaultMock(SearchResults.class);
 
-    expect(lucenePluginMock.getSearchResultsWithoutChecks(eq(query.getQueryString()), capture(
-        sortFieldsCapture), isNull(String.class), eq(""), same(context))).andReturn(
-            sResultsMock).once();
+    expectSearch(requestCapture).andReturn(sResultsMock).once();
+    sResultsMock.setReferencesOnly(true);
 
     replayDefault();
     SearchResults ret = result.luceneSearch();
     verifyDefault();
 
-    assertEquals(Collections.emptyList(), Arrays.asList(sortFieldsCapture.getValue()));
+    assertEquals(Collections.emptyList(), Arrays.asList(requestCapture.getValue()
+        .getSortFields()));
+    assertTrue(requestCapture.getValue().isSkipChecks());
+    assertEquals("", requestCapture.getValue().getLanguages());
     assertSame(sResultsMock, ret);
   }
 
+  @Test
+  public void test_execute_handle() throws Exception {
+    LuceneQuery query = new LuceneQuery();
+    LuceneSearchResult result = newResult(query, null, null, false);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+    SearcherHandle handle = Utils.getComponent(ISearcherProviderRole.class).createSearchProvider(
+        Arrays.asList(createDefaultMock(IndexSearcher.class))).acquire();
+
+    Capture<SearchRequest> requestCapture = newCapture();
+    expectSearch(requestCapture).andReturn(sResultsMock).once();
+    sResultsMock.setReferencesOnly(true);
+
+    replayDefault();
+    assertSame(result, result.execute(lucenePluginMock, handle, context));
+    assertSame("cached by execute", sResultsMock, result.luceneSearch());
+    verifyDefault();
+    assertSame(handle, requestCapture.getValue().getHandle().get());
+    assertFalse(requestCapture.getValue().getCursor().isPresent());
+    handle.release();
+  }
+
+  @Test
+  public void test_execute_handle_cursor() throws Exception {
+    LuceneQuery query = new LuceneQuery();
+    LuceneSearchResult result = newResult(query, null, null, false).setCursor("").setLimit(10);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+    SearcherHandle handle = Utils.getComponent(ISearcherProviderRole.class).createSearchProvider(
+        Arrays.asList(createDefaultMock(IndexSearcher.class))).acquire();
+
+    Capture<SearchRequest> requestCapture = newCapture();
+    expectSearch(requestCapture).andReturn(sResultsMock).once();
+    sResultsMock.setReferencesOnly(true);
+
+    replayDefault();
+    assertSame(result, result.execute(lucenePluginMock, handle, context));
+    verifyDefault();
+    SearchRequest request = requestCapture.getValue();
+    assertSame(handle, request.getHandle().get());
+    assertEquals("", request.getCursor().get());
+    assertEquals(10, request.getLimit());
+    handle.release();
+  }
+
+  @Test
+  public void test_getFacetCounts_singlePass() throws Exception {
+    LuceneQuery query = new LuceneQuery();
+    LuceneSearchResult result = newResult(query, null, null, false);
+    List<String> fields = Arrays.asList(IndexFields.DOCUMENT_SPACE_S);
+    SearchResults sResultsMock = createDefaultMock(SearchResults.class);
+    Map<String, Map<String, Integer>> counts = ImmutableMap.of(IndexFields.DOCUMENT_SPACE_S,
+        ImmutableMap.of("space", 5));
+
+    Capture<SearchRequest> requestCapture = newCapture();
+    expectSearch(requestCapture).andReturn(sResultsMock).once();
+    sResultsMock.setReferencesOnly(true);
+    expect(sResultsMock.getHitcount()).andReturn(5);
+    expect(sResultsMock.getFacetCounts()).andReturn(counts);
+
+    replayDefault();
+    assertEquals(5, result.setFacetFields(fields).getSize());
+    assertSame("counted by the same search", counts, result.getFacetCounts(fields));
+    verifyDefault();
+    assertEquals(fields, requestCapture.getValue().getFacetFields());
+  }
+
   @Test
   public void test_LuceneSearch_IOException() throws Exception {
     LuceneQuery query = new LuceneQuery();
     boolean skipChecks = false;
     LuceneSearchResult result = newResult(query, null, null, skipChecks);
 
-    expect(lucenePluginMock.getSearchResults(eq(query.getQueryString()), anyObject(String[].class),
-        isNull(String.class), eq(""), same(context))).andThrow(new IOException()).once();
+    expectSearch(newCapture()).andThrow(new IOException()).once();
 
     replayDefault();
     try {
@@ -314,8 +464,7 @@ public class LuceneSearchResultTest extends AbstractComponentTest {
     boolean skipChecks = false;
     LuceneSearchResult result = newResult(query, null, null, skipChecks);
 
-    expect(lucenePluginMock.getSearchResults(eq(query.getQueryString()), anyObject(String[].class),
-        isNull(String.class), eq(""), same(context))).andThrow(new ParseException()).once();
+    expectSearch(newCapture()).andThrow(new ParseException()).once();
 
     replayDefault();
     try {
@@ -327,6 +476,11 @@ public class LuceneSearchResultTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  private IExpectationSetters<SearchResults> expectSearch(Capture<SearchRequest> requestCapture)
+      throws IOException, ParseException {
+    return expect(lucenePluginMock.getSearchResults(capture(requestCapture), same(context)));
+  }
+
   private LuceneSearchResult newResult(LuceneQuery query, List<String> sortFields,
       List<String> languages, boolean skipChecks) {
     query.setDocTypes(ImmutableList.of(LuceneDocType.DOC));
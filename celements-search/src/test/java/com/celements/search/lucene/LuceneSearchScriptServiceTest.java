@@ -1,13 +1,27 @@
 package com.celements.search.lucene;
 
+import static com.celements.common.test.CelementsTestUtils.*;
+import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.search.IndexSearcher;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.script.service.ScriptService;
 
 import com.celements.common.test.AbstractComponentTest;
+import com.celements.search.lucene.query.LuceneQuery;
 import com.celements.search.lucene.query.QueryRestriction;
+import com.google.common.collect.ImmutableMap;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.plugin.lucene.SearchRequest;
+import com.xpn.xwiki.plugin.lucene.SearchResults;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.ISearcherProviderRole;
 import com.xpn.xwiki.web.Utils;
 
 public class LuceneSearchScriptServiceTest extends AbstractComponentTest {
@@ -62,4 +76,71 @@ public class LuceneSearchScriptServiceTest extends AbstractComponentTest {
     assertEquals("object:(+\"XWiki.XWikiUsers\")", restr.getQueryString());
   }
 
+  @Test
+  public void test_searchAll_order() throws Exception {
+    List<LuceneQuery> queries = Arrays.asList(createQuery("a"), createQuery("b"));
+    SearchResults resultsA = createResultsMock();
+    SearchResults resultsB = createResultsMock();
+    expectSearches(ImmutableMap.of(queries.get(0).getQueryString(), resultsA,
+        queries.get(1).getQueryString(), resultsB), null);
+
+    replayDefault();
+    List<LuceneSearchResult> results = scriptService.searchAll(queries, null);
+    assertEquals(2, results.size());
+    assertSame(resultsA, results.get(0).luceneSearch());
+    assertSame(resultsB, results.get(1).luceneSearch());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_searchAll_fallback() throws Exception {
+    List<LuceneQuery> queries = Arrays.asList(createQuery("a"), createQuery("b"));
+    SearchResults resultsA = createResultsMock();
+    SearchResults resultsB = createResultsMock();
+    expectSearches(ImmutableMap.of(queries.get(0).getQueryString(), resultsA,
+        queries.get(1).getQueryString(), resultsB), queries.get(0).getQueryString());
+
+    replayDefault();
+    List<LuceneSearchResult> results = scriptService.searchAll(queries, null);
+    assertEquals(2, results.size());
+    assertSame("searched again on reading", resultsA, results.get(0).luceneSearch());
+    assertSame(resultsB, results.get(1).luceneSearch());
+    verifyDefault();
+  }
+
+  /**
+   * @param failingAsync
+   *          query string whose search on the batch searchers fails, succeeds if searched again
+   */
+  private void expectSearches(Map<String, SearchResults> results, String failingAsync)
+      throws Exception {
+    LucenePlugin pluginMock = createDefaultMock(LucenePlugin.class);
+    expect(getWikiMock().getPlugin(eq("lucene"), same(getContext()))).andReturn(pluginMock)
+        .anyTimes();
+    expect(pluginMock.acquireSearcher()).andReturn(Utils.getComponent(
+        ISearcherProviderRole.class).createSearchProvider(Arrays.asList(createDefaultMock(
+            IndexSearcher.class))).acquire());
+    expect(pluginMock.getSearchResults(anyObject(SearchRequest.class), same(getContext())))
+        .andAnswer(() -> {
+          SearchRequest request = (SearchRequest) getCurrentArguments()[0];
+          String queryString = request.getQueryString().get();
+          if (queryString.equals(failingAsync) && request.getHandle().isPresent()) {
+            throw new IOException("failing search");
+          }
+          return results.get(queryString);
+        }).times(results.size() + ((failingAsync != null) ? 1 : 0));
+  }
+
+  private SearchResults createResultsMock() {
+    SearchResults results = createDefaultMock(SearchResults.class);
+    results.setReferencesOnly(true);
+    return results;
+  }
+
+  private LuceneQuery createQuery(String value) {
+    LuceneQuery query = new LuceneQuery();
+    query.add(new QueryRestriction("f", value));
+    return query;
+  }
+
 }
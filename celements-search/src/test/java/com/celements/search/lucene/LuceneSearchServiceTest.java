@@ -4,13 +4,23 @@ import static com.celements.common.test.CelementsTestUtils.*;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.easymock.IArgumentMatcher;
+import org.easymock.IExpectationSetters;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.model.reference.DocumentReference;
@@ -26,10 +36,16 @@ import com.celements.search.lucene.query.LuceneQuery;
 import com.celements.search.lucene.query.QueryRestriction;
 import com.celements.search.lucene.query.QueryRestrictionGroup;
 import com.celements.search.lucene.query.QueryRestrictionGroup.Type;
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.plugin.lucene.IndexFields;
 import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.plugin.lucene.SearchRequest;
+import com.xpn.xwiki.plugin.lucene.SearchResults;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.ISearcherProviderRole;
+import com.xpn.xwiki.plugin.lucene.searcherProvider.SearcherProvider;
 import com.xpn.xwiki.web.Utils;
 
 public class LuceneSearchServiceTest extends AbstractComponentTest {
@@ -323,6 +339,35 @@ public class LuceneSearchServiceTest extends AbstractComponentTest {
     verifyDefault();
   }
 
+  @Test
+  public void test_createNumericRangeRestriction() {
+    expect(plugin.getAnalyzer()).andReturn(null).anyTimes();
+    replayDefault();
+    assertEquals("XWiki.XWikiUsers.age_n:([18 TO 65])", searchService
+        .createNumericRangeRestriction("XWiki.XWikiUsers.age", Range.closed(18, 65))
+        .getQueryString());
+    assertEquals("XWiki.XWikiUsers.age_n:([19 TO 64])", searchService
+        .createNumericRangeRestriction("XWiki.XWikiUsers.age", Range.open(18, 65))
+        .getQueryString());
+    assertEquals("XWiki.XWikiUsers.age_n:([18 TO *])", searchService
+        .createNumericRangeRestriction("XWiki.XWikiUsers.age", Range.atLeast(18L))
+        .getQueryString());
+    assertEquals("XWiki.XWikiUsers.age_n:([* TO 64])", searchService
+        .createNumericRangeRestriction("XWiki.XWikiUsers.age", Range.lessThan(65))
+        .getQueryString());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_createNumericDateRangeRestriction() {
+    expect(plugin.getAnalyzer()).andReturn(null).anyTimes();
+    replayDefault();
+    QueryRestriction restr = searchService.createNumericDateRangeRestriction("date",
+        Range.closedOpen(LocalDateTime.of(2020, 1, 1, 0, 0), LocalDateTime.of(2021, 1, 1, 0, 0)));
+    assertEquals("date_n:([202001010000 TO 202101009999])", restr.getQueryString());
+    verifyDefault();
+  }
+
   @Test
   public void test_createDateRestriction() throws Exception {
     expect(plugin.getAnalyzer()).andReturn(null).anyTimes();
@@ -470,6 +515,102 @@ public class LuceneSearchServiceTest extends AbstractComponentTest {
     assertEquals(limit, ret);
   }
 
+  @Test
+  public void test_searchAsync_order() throws Exception {
+    SearcherProvider provider = createSearcherProvider();
+    expect(plugin.acquireSearcher()).andReturn(provider.acquire());
+    List<LuceneQuery> queries = Arrays.asList(createAsyncQuery("a"), createAsyncQuery("b"));
+    SearchResults resultsA = expectAsyncSearch(queries.get(0));
+    SearchResults resultsB = expectAsyncSearch(queries.get(1));
+
+    replayDefault();
+    List<CompletableFuture<LuceneSearchResult>> futures = searchService.searchAsync(queries, null,
+        null);
+    assertEquals(2, futures.size());
+    assertSame(resultsA, futures.get(0).join().luceneSearch());
+    assertSame(resultsB, futures.get(1).join().luceneSearch());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_searchAsync_failure() throws Exception {
+    SearcherProvider provider = createSearcherProvider();
+    expect(plugin.acquireSearcher()).andReturn(provider.acquire());
+    List<LuceneQuery> queries = Arrays.asList(createAsyncQuery("a"), createAsyncQuery("b"));
+    expectSearch(queries.get(0)).andThrow(new IOException());
+    SearchResults resultsB = expectAsyncSearch(queries.get(1));
+
+    replayDefault();
+    List<CompletableFuture<LuceneSearchResult>> futures = searchService.searchAsync(queries, null,
+        null);
+    try {
+      futures.get(0).join();
+      fail("expecting CompletionException");
+    } catch (CompletionException exc) {
+      assertTrue(exc.getCause() instanceof LuceneSearchException);
+    }
+    assertSame("other searches unaffected", resultsB, futures.get(1).join().luceneSearch());
+    assertTrue(provider.isIdle());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_searchAsync_releasesHandles() throws Exception {
+    SearcherProvider provider = createSearcherProvider();
+    expect(plugin.acquireSearcher()).andReturn(provider.acquire());
+    LuceneQuery query = createAsyncQuery("a");
+    SearchResults results = createDefaultMock(SearchResults.class);
+    results.setReferencesOnly(true);
+    CountDownLatch latch = new CountDownLatch(1);
+    expectSearch(query).andAnswer(() -> {
+      Uninterruptibles.awaitUninterruptibly(latch);
+      return results;
+    });
+
+    replayDefault();
+    CompletableFuture<LuceneSearchResult> future = searchService.searchAsync(Arrays.asList(query),
+        null, null).get(0);
+    assertFalse("searchers held until the search completes", provider.isIdle());
+    latch.countDown();
+    assertSame(results, future.join().luceneSearch());
+    assertTrue("searchers released once completed", provider.isIdle());
+    verifyDefault();
+  }
+
+  @Test
+  public void test_searchAsync_callerRuns() throws Exception {
+    SearcherProvider provider = createSearcherProvider();
+    expect(plugin.acquireSearcher()).andReturn(provider.acquire());
+    LuceneQuery query = createAsyncQuery("a");
+    SearchResults results = createDefaultMock(SearchResults.class);
+    results.setReferencesOnly(true);
+    Thread caller = Thread.currentThread();
+    expectSearch(query).andAnswer(() -> {
+      assertSame("executed by the calling thread", caller, Thread.currentThread());
+      return results;
+    });
+
+    replayDefault();
+    ThreadPoolExecutor executor = ((LuceneSearchService) searchService).getAsyncExecutor();
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      for (int i = 0; i < executor.getMaximumPoolSize(); i++) {
+        executor.execute(() -> Uninterruptibles.awaitUninterruptibly(latch));
+      }
+      for (int i = 0; i < LuceneSearchService.ASYNC_QUEUE_SIZE; i++) {
+        executor.execute(() -> {});
+      }
+      CompletableFuture<LuceneSearchResult> future = searchService.searchAsync(Arrays.asList(
+          query), null, null).get(0);
+      assertTrue("completed by the calling thread", future.isDone());
+      assertSame(results, future.join().luceneSearch());
+    } finally {
+      latch.countDown();
+    }
+    assertTrue(provider.isIdle());
+    verifyDefault();
+  }
+
   @Test
   public void test_date_pattern() {
     assertFalse(LuceneSearchService.DATE_PATTERN.matcher("asdf").matches());
@@ -478,4 +619,46 @@ public class LuceneSearchServiceTest extends AbstractComponentTest {
     assertTrue(LuceneSearchService.DATE_PATTERN.matcher("201701012015").matches());
   }
 
+  private SearcherProvider createSearcherProvider() {
+    return Utils.getComponent(ISearcherProviderRole.class).createSearchProvider(Arrays.asList(
+        createDefaultMock(IndexSearcher.class)));
+  }
+
+  private LuceneQuery createAsyncQuery(String value) {
+    LuceneQuery query = new LuceneQuery();
+    query.add(new QueryRestriction("f", value));
+    return query;
+  }
+
+  private SearchResults expectAsyncSearch(LuceneQuery query) throws Exception {
+    SearchResults results = createDefaultMock(SearchResults.class);
+    results.setReferencesOnly(true);
+    expectSearch(query).andReturn(results);
+    return results;
+  }
+
+  private IExpectationSetters<SearchResults> expectSearch(LuceneQuery query) throws Exception {
+    return expect(plugin.getSearchResults(searchRequestOnHandle(query.getQueryString()),
+        same(context)));
+  }
+
+  private static SearchRequest searchRequestOnHandle(String queryString) {
+    reportMatcher(new IArgumentMatcher() {
+
+      @Override
+      public boolean matches(Object argument) {
+        SearchRequest request = (SearchRequest) argument;
+        return request.getHandle().isPresent()
+            && request.getQueryString().equals(Optional.of(queryString))
+            && !request.isSkipChecks() && (request.getTimeout() == null);
+      }
+
+      @Override
+      public void appendTo(StringBuffer buffer) {
+        buffer.append("searchRequestOnHandle(").append(queryString).append(")");
+      }
+    });
+    return null;
+  }
+
 }
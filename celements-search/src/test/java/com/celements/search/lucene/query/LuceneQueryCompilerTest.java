@@ -0,0 +1,238 @@
+package com.celements.search.lucene.query;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.reference.WikiReference;
+
+import com.celements.search.lucene.query.QueryRestriction.QueryMode;
+import com.celements.search.lucene.query.QueryRestrictionGroup.Type;
+import com.xpn.xwiki.plugin.lucene.LucenePlugin;
+import com.xpn.xwiki.plugin.lucene.NumericQueryParser;
+
+public class LuceneQueryCompilerTest {
+
+  private Analyzer analyzer;
+  private LuceneQueryCompiler compiler;
+
+  @Before
+  public void setUp_LuceneQueryCompilerTest() throws Exception {
+    analyzer = new StandardAnalyzer(LucenePlugin.VERSION);
+    compiler = new LuceneQueryCompiler(LucenePlugin.VERSION, analyzer);
+  }
+
+  @Test
+  public void test_tokenized() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans Peter");
+    assertCompiled("+f:hans* +f:peter*", restr);
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_tokenized_single() throws Exception {
+    assertCompiled("f:hans*", new QueryRestriction("f", "Hans"));
+  }
+
+  @Test
+  public void test_tokenized_operators() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "+Hans -Peter - Muster");
+    assertCompiled("+f:hans* -f:peter* +f:muster*", restr);
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_tokenizedOr_phrase() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans \"Robert Peter\"").setMode(
+        QueryMode.TOKENIZED_OR);
+    assertCompiled("f:hans* f:\"robert peter\"", restr);
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_tokenized_wildcard() throws Exception {
+    assertCompiled("f:ha?s*", new QueryRestriction("f", "Ha?s"));
+  }
+
+  @Test
+  public void test_tokenized_proximity() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans Peter").setProximity(5);
+    assertCompiled("f:\"hans peter\"~5", restr);
+  }
+
+  @Test
+  public void test_tokenized_fuzzyBoost() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans").setFuzzy(0.7f).setBoost(2);
+    assertCompiled("(f:hans* f:hans~0.7)^2.0", restr);
+  }
+
+  @Test
+  public void test_exact() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans Peter").setMode(QueryMode.EXACT);
+    assertCompiled("f:\"hans peter\"", restr);
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_default_term() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans").setMode(QueryMode.DEFAULT);
+    assertCompiled("f:hans", restr);
+  }
+
+  @Test
+  public void test_default_quoted() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "\"Hans Peter\"").setMode(
+        QueryMode.DEFAULT);
+    assertCompiled("f:\"hans peter\"", restr);
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_default_numericRange() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f_n", "[1 TO 5]").setMode(QueryMode.DEFAULT);
+    assertEquals(parse("f_n:[1 TO 5]"), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_default_rawSyntax() throws Exception {
+    QueryRestriction restr = new QueryRestriction("f", "Hans OR Peter").setMode(
+        QueryMode.DEFAULT);
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_restrictionString() throws Exception {
+    QueryRestrictionString restr = new QueryRestrictionString("f:Hans OR g:Peter");
+    assertEquals(parse(restr.getQueryString()), compiler.compile(restr));
+  }
+
+  @Test
+  public void test_group() throws Exception {
+    QueryRestrictionGroup grp = new QueryRestrictionGroup(Type.AND);
+    grp.add(new QueryRestriction("f", "Hans"));
+    grp.add(new QueryRestriction("g", "Peter").setNegate(true));
+    assertCompiled("+f:hans* -g:peter*", grp);
+  }
+
+  @Test
+  public void test_group_onlyNegated() throws Exception {
+    QueryRestrictionGroup grp = new QueryRestrictionGroup(Type.AND);
+    grp.add(new QueryRestriction("f", "Hans").setNegate(true));
+    grp.add(new QueryRestriction("g", "Peter").setNegate(true));
+    assertCompiled("-(f:hans* g:peter*)", grp);
+    assertTrue("restrictions not modified", grp.get(0).getNegate());
+  }
+
+  @Test
+  public void test_group_nestedSingle() throws Exception {
+    QueryRestrictionGroup inner = new QueryRestrictionGroup(Type.OR);
+    inner.add(new QueryRestriction("g", "Peter"));
+    inner.setNegate(true);
+    QueryRestrictionGroup grp = new QueryRestrictionGroup(Type.AND);
+    grp.add(new QueryRestriction("f", "Hans"));
+    grp.add(inner);
+    assertCompiled("+f:hans* -g:peter*", grp);
+  }
+
+  @Test
+  public void test_luceneQuery_constraintsFiltered() throws Exception {
+    List<Query> constraints = new ArrayList<>();
+    compiler = new LuceneQueryCompiler(LucenePlugin.VERSION, analyzer, query -> {
+      constraints.add(query);
+      return new QueryWrapperFilter(query);
+    });
+    LuceneQuery luceneQuery = new LuceneQuery();
+    luceneQuery.setDocTypes(Arrays.asList(LuceneDocType.DOC));
+    luceneQuery.setWiki(new WikiReference("mywiki"));
+    luceneQuery.add(new QueryRestriction("f", "Hans"));
+    Query query = compiler.compile(luceneQuery);
+    assertTrue(query instanceof FilteredQuery);
+    assertEquals("f:hans*", ((FilteredQuery) query).getQuery().toString());
+    assertEquals(1, constraints.size());
+    assertEquals("+type:wikipage +wiki:mywiki", constraints.get(0).toString());
+  }
+
+  @Test
+  public void test_luceneQuery_onlyConstraints() throws Exception {
+    compiler = new LuceneQueryCompiler(LucenePlugin.VERSION, analyzer, QueryWrapperFilter::new);
+    LuceneQuery luceneQuery = new LuceneQuery();
+    luceneQuery.setWiki(new WikiReference("mywiki"));
+    Query query = compiler.compile(luceneQuery);
+    assertTrue(query instanceof FilteredQuery);
+    assertTrue(((FilteredQuery) query).getQuery() instanceof MatchAllDocsQuery);
+  }
+
+  @Test
+  public void test_luceneQuery_constraint() throws Exception {
+    List<Query> constraints = new ArrayList<>();
+    compiler = new LuceneQueryCompiler(LucenePlugin.VERSION, analyzer, query -> {
+      constraints.add(query);
+      return new QueryWrapperFilter(query);
+    });
+    LuceneQuery luceneQuery = new LuceneQuery();
+    luceneQuery.setWiki(new WikiReference("mywiki"));
+    luceneQuery.addConstraint(new QueryRestriction("pt", "Page").setMode(QueryMode.EXACT)
+        .setNegate(true));
+    luceneQuery.add(new QueryRestriction("f", "Hans"));
+    Query query = compiler.compile(luceneQuery);
+    assertTrue(query instanceof FilteredQuery);
+    assertEquals("f:hans*", ((FilteredQuery) query).getQuery().toString());
+    assertEquals(1, constraints.size());
+    assertEquals("+wiki:mywiki -pt:page", constraints.get(0).toString());
+  }
+
+  @Test
+  public void test_luceneQuery_onlyNegatedConstraint() throws Exception {
+    List<Query> constraints = new ArrayList<>();
+    compiler = new LuceneQueryCompiler(LucenePlugin.VERSION, analyzer, query -> {
+      constraints.add(query);
+      return new QueryWrapperFilter(query);
+    });
+    LuceneQuery luceneQuery = new LuceneQuery();
+    luceneQuery.addConstraint(new QueryRestriction("pt", "Page").setMode(QueryMode.EXACT)
+        .setNegate(true));
+    luceneQuery.add(new QueryRestriction("f", "Hans"));
+    assertTrue(compiler.compile(luceneQuery) instanceof FilteredQuery);
+    assertEquals(1, constraints.size());
+    assertEquals("+*:* -pt:page", constraints.get(0).toString());
+  }
+
+  @Test
+  public void test_luceneQuery_withoutFilterFactory() throws Exception {
+    LuceneQuery luceneQuery = new LuceneQuery();
+    luceneQuery.setWiki(new WikiReference("mywiki"));
+    luceneQuery.add(new QueryRestriction("f", "Hans"));
+    assertCompiled("+wiki:mywiki +f:hans*", luceneQuery);
+  }
+
+  @Test
+  public void test_empty() throws Exception {
+    try {
+      compiler.compile(new QueryRestrictionGroup(Type.AND));
+      fail("expecting ParseException for empty query");
+    } catch (ParseException exc) {
+      // expected
+    }
+  }
+
+  private void assertCompiled(String expected, IQueryRestriction restr) throws ParseException {
+    assertEquals(expected, compiler.compile(restr).toString());
+  }
+
+  private Query parse(String queryString) throws ParseException {
+    return new NumericQueryParser(LucenePlugin.VERSION, LucenePlugin.DEFAULT_SEARCH_FIELDS.toArray(
+        new String[0]), analyzer).parse(queryString);
+  }
+
+}
@@ -130,6 +130,15 @@ public class LuceneQueryTest extends AbstractComponentTest {
     assertEquals("queryString must stay the same", queryString, query.getQueryString());
   }
 
+  @Test
+  public void testGetQueryString_constraint() {
+    query.add(new QueryRestriction("object", "XWiki.XWikiUsers"));
+    query.addConstraint(new QueryRestriction("pt", "Page"));
+    String queryString = "(wiki:(+\"xwikidb\") AND pt:(+Page*) AND object:(+XWiki.XWikiUsers*))";
+    assertEquals(queryString, query.getQueryString());
+    assertEquals(queryString, query.copy().getQueryString());
+  }
+
   @Test
   public void testGetQueryString_filled() {
     LuceneQuery query = getNewFilledQuery(Arrays.asList(LuceneDocType.DOC));
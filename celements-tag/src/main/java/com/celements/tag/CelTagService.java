@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
@@ -47,6 +48,7 @@ public class CelTagService implements ApplicationListener<CelTagService.RefreshE
   private final ListableBeanFactory beanFactory;
   private final XObjectFieldAccessor fieldAccessor;
   private final AtomicReference<Try<Multimap<String, CelTag>, CelTagsProvisionException>> cache;
+  private final AtomicLong generation;
 
   @Inject
   public CelTagService(
@@ -55,6 +57,7 @@ public class CelTagService implements ApplicationListener<CelTagService.RefreshE
     this.beanFactory = beanFactory;
     this.fieldAccessor = fieldAccessor;
     this.cache = new AtomicReference<>();
+    this.generation = new AtomicLong();
   }
 
   @NotNull
@@ -87,12 +90,20 @@ public class CelTagService implements ApplicationListener<CelTagService.RefreshE
     return ImmutableMultimap.of();
   }
 
+  /**
+   * @return a counter increased on every refresh of the tag definitions, cheap to compare
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
   private void refresh() {
     CompletableFuture.runAsync(new AbstractXWikiRunnable() {
 
       @Override
       protected void runInternal() {
         cache.set(Try.to(CelTagService.this::collectAllTags));
+        generation.incrementAndGet();
       }
     });
   }
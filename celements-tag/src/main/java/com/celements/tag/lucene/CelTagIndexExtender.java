@@ -1,6 +1,8 @@
 package com.celements.tag.lucene;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -44,6 +46,18 @@ public class CelTagIndexExtender implements ILuceneIndexExtender {
     return data instanceof DocumentData;
   }
 
+  /**
+   * the tags only change with a new document version or a refresh of the tag definitions. the
+   * creation date distinguishes a recreated document restarting its version.
+   */
+  @Override
+  public Optional<Object> getDependencyKey(AbstractIndexData data) {
+    DocumentData docData = (DocumentData) data;
+    return Optional.ofNullable(docData.getVersion())
+        .map(version -> Arrays.asList(docData.getCreationDate(), version,
+            tagService.getGeneration()));
+  }
+
   @Override
   public Collection<IndexExtensionField> getExtensionFields(AbstractIndexData data) {
     DocumentData docData = (DocumentData) data;